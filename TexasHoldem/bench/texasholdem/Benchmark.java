@@ -0,0 +1,123 @@
+package texasholdem;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A small benchmark harness. A benchmark runs its operation a given number
+ * of times, the harness warms it up so the JIT has compiled it, then times
+ * several rounds and reports the best time and the bytes allocated for
+ * each operation.
+ * @author John Wardell
+ *
+ */
+public abstract class Benchmark {
+	
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 5;
+	private static final long ROUND_NANOS = 200000000L;
+	
+	private static com.sun.management.ThreadMXBean bean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	
+	/**
+	 * Keeps the sink of each benchmark once it has been measured.
+	 */
+	private static volatile long consumed;
+	
+	private final String name;
+	/**
+	 * Results are added here so the JIT can't remove the work.
+	 */
+	protected long sink;
+	
+	/**
+	 * Constructs a Benchmark object.
+	 * @param name the name shown in the results
+	 */
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Gets the name of the benchmark.
+	 * @return the name shown in the results
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Runs the operation being measured.
+	 * @param ops the number of times to run it
+	 */
+	protected abstract void run(int ops);
+	
+	/**
+	 * Warms up and measures the benchmark.
+	 * @return the result
+	 */
+	public Result measure() {
+		//find a number of operations that takes about one round
+		int ops = 1;
+		long start;
+		do {
+			ops *= 2;
+			start = System.nanoTime();
+			run(ops);
+		} while ((System.nanoTime() - start < ROUND_NANOS / 4) && (ops < (1 << 30)));
+		
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			run(ops);
+		}
+		
+		long id = Thread.currentThread().getId();
+		double bestNanos = Double.MAX_VALUE;
+		long bytes = Long.MAX_VALUE;
+		for (int i = 0; i < ROUNDS; i++) {
+			long allocated = bean.getThreadAllocatedBytes(id);
+			start = System.nanoTime();
+			run(ops);
+			long nanos = System.nanoTime() - start;
+			bytes = Math.min(bytes, bean.getThreadAllocatedBytes(id) - allocated);
+			bestNanos = Math.min(bestNanos, (double) nanos / ops);
+		}
+		consumed += sink;
+		return new Result(name, bestNanos, (double) bytes / ops);
+	}
+	
+	/**
+	 * The measurements of one benchmark.
+	 */
+	public static class Result {
+		private final String name;
+		private final double nanosPerOp;
+		private final double bytesPerOp;
+		
+		Result(String name, double nanosPerOp, double bytesPerOp) {
+			this.name = name;
+			this.nanosPerOp = nanosPerOp;
+			this.bytesPerOp = bytesPerOp;
+		}
+		
+		/**
+		 * @return the best time for one operation in nanoseconds.
+		 */
+		public double getNanosPerOp() {
+			return nanosPerOp;
+		}
+		
+		/**
+		 * @return the bytes allocated by one operation.
+		 */
+		public double getBytesPerOp() {
+			return bytesPerOp;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%-40s %12.1f ns/op %12.1f B/op", name, nanosPerOp,
+					bytesPerOp);
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+package texasholdem;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Benchmarks for the showdown, the deck and the bot decisions. These are
+ * the baseline that changes to the engine are measured against.
+ * <p>
+ * Run the main method with the bench and src folders on the classpath.
+ * The arguments, if any, are parts of the names of the benchmarks to run.
+ * @author John Wardell
+ *
+ */
+public class HoldemBenchmarks {
+	
+	private static final int[] PLAYER_COUNTS = {2, 6, 9};
+	private static final int[] BOARD_SIZES = {0, 3, 4, 5};
+	private static final String[] STREETS = {"preflop", "flop", "turn", "river"};
+	/**
+	 * Deals are cycled through so the branches can't be learned.
+	 */
+	private static final int NUM_DEALS = 1024;
+	
+	/**
+	 * Deals the hole cards and board of a number of hands.
+	 */
+	private static class Deals {
+		final Card[][][] hands;
+		final Card[][] boards;
+		
+		Deals(int numPlayers, int boardSize, long seed) {
+			Random random = new Random(seed);
+			hands = new Card[NUM_DEALS][numPlayers][2];
+			boards = new Card[NUM_DEALS][boardSize];
+			Card[] deck = new Card[Card.DECK_SIZE];
+			for (int n = 0; n < NUM_DEALS; n++) {
+				for (int i = 0; i < deck.length; i++)
+					deck[i] = Card.getCard(i);
+				int remaining = deck.length;
+				for (int p = 0; p < numPlayers; p++) {
+					for (int c = 0; c < 2; c++) {
+						int i = random.nextInt(remaining);
+						hands[n][p][c] = deck[i];
+						deck[i] = deck[--remaining];
+					}
+				}
+				for (int c = 0; c < boardSize; c++) {
+					int i = random.nextInt(remaining);
+					boards[n][c] = deck[i];
+					deck[i] = deck[--remaining];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Builds all of the benchmarks.
+	 * @return the benchmarks
+	 */
+	public static ArrayList<Benchmark> benchmarks() {
+		ArrayList<Benchmark> benchmarks = new ArrayList<>();
+		
+		for (int numPlayers: PLAYER_COUNTS) {
+			for (int street = 0; street < STREETS.length; street++) {
+				final Deals deals = new Deals(numPlayers, BOARD_SIZES[street], street);
+				final FinalHandChecker fhc = new FinalHandChecker();
+				benchmarks.add(new Benchmark("checkAllHands " + numPlayers + " players " +
+						STREETS[street]) {
+					@Override
+					protected void run(int ops) {
+						for (int n = 0; n < ops; n++) {
+							int i = n & (NUM_DEALS - 1);
+							sink += fhc.checkAllHands(deals.boards[i], deals.hands[i]).size();
+						}
+					}
+				});
+			}
+		}
+		
+		for (final int cardsDrawn: new int[] {9, 23}) {
+			final Deck deck = new Deck();
+			benchmarks.add(new Benchmark("fillDeck + " + cardsDrawn + " drawCard") {
+				@Override
+				protected void run(int ops) {
+					for (int n = 0; n < ops; n++) {
+						deck.fillDeck();
+						for (int i = 0; i < cardsDrawn; i++)
+							sink += deck.drawCard().getIndex();
+					}
+				}
+			});
+			final int[] dealt = new int[cardsDrawn];
+			benchmarks.add(new Benchmark("fillDeck + drawIndexes " + cardsDrawn) {
+				@Override
+				protected void run(int ops) {
+					for (int n = 0; n < ops; n++) {
+						deck.fillDeck();
+						deck.drawIndexes(dealt, 0, cardsDrawn);
+						sink += dealt[cardsDrawn - 1];
+					}
+				}
+			});
+		}
+		
+		for (final int numPlayers: new int[] {2, 9}) {
+			final Deck deck = new Deck();
+			final int[] dealt = new int[Deck.dealSize(numPlayers)];
+			final Card[] dealtCards = new Card[Deck.dealSize(numPlayers)];
+			benchmarks.add(new Benchmark("dealHand int[] " + numPlayers + " players") {
+				@Override
+				protected void run(int ops) {
+					for (int n = 0; n < ops; n++) {
+						deck.dealHand(numPlayers, dealt);
+						sink += dealt[dealt.length - 1];
+					}
+				}
+			});
+			benchmarks.add(new Benchmark("dealHand Card[] " + numPlayers + " players") {
+				@Override
+				protected void run(int ops) {
+					for (int n = 0; n < ops; n++) {
+						deck.dealHand(numPlayers, dealtCards);
+						sink += dealtCards[dealtCards.length - 1].getIndex();
+					}
+				}
+			});
+		}
+		
+		for (int street = 0; street < 2 * STREETS.length; street++) {
+			final Deals deals = new Deals(1, BOARD_SIZES[street % 4], 10 + street);
+			final StubHoldemManager hm = new StubHoldemManager(6);
+			final HandAnalyzer ha = new HandAnalyzer(hm, HandEvaluators.getDefault());
+			hm.setBetting(20, 10, false);
+			if (street >= STREETS.length) {
+				ha.setEquityCalculator(EquityCalculator.getDefault());
+			}
+			benchmarks.add(new Benchmark("generateBotBet " +
+					((street >= STREETS.length) ? "equity " : "") + STREETS[street % 4]) {
+				@Override
+				protected void run(int ops) {
+					for (int n = 0; n < ops; n++) {
+						int i = n & (NUM_DEALS - 1);
+						hm.setCards(deals.hands[i][0], deals.boards[i]);
+						ha.startHand();
+						sink += ha.generateBotBet();
+					}
+				}
+			});
+		}
+		
+		return benchmarks;
+	}
+	
+	/**
+	 * Runs the benchmarks and prints the results.
+	 * @param args parts of the names of the benchmarks to run, or none for all
+	 */
+	public static void main(String[] args) {
+		System.out.println("evaluator: " + System.getProperty(HandEvaluators.PROPERTY, "lookup"));
+		//build the evaluator tables before anything is timed
+		HandEvaluators.getDefault();
+		for (Benchmark benchmark: benchmarks()) {
+			boolean selected = (args.length == 0);
+			for (String arg: args) {
+				if (benchmark.getName().contains(arg)) {
+					selected = true;
+				}
+			}
+			if (selected) {
+				System.out.println(benchmark.measure());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package texasholdem;
+
+/**
+ * A <code>HoldemManager</code> without players, timers or a user interface.
+ * It answers the questions <code>HandAnalyzer</code> asks with whatever
+ * values it has been given, so bot decisions can be measured on their own.
+ * @author John Wardell
+ *
+ */
+public class StubHoldemManager extends HoldemManager {
+	
+	private Card[] playerCards = new Card[2];
+	private Card[] commCards = new Card[0];
+	private Phase phase = Phase.PREFLOP;
+	private int numPlayers;
+	private int turnIndex = 0;
+	private int personality = 5;
+	private int minBet = 10;
+	private int amtToSee = 10;
+	private int playerBet = 0;
+	private int lowChips = 500;
+	private boolean allPlayersBet = false;
+	
+	/**
+	 * Constructs a StubHoldemManager object.
+	 * @param numPlayers the number of players at the table
+	 */
+	public StubHoldemManager(int numPlayers) {
+		this.numPlayers = numPlayers;
+	}
+	
+	/**
+	 * Sets the cards of the player whose turn it is and the community cards.
+	 * The phase follows from the number of community cards.
+	 * @param playerCards the 2 hole cards
+	 * @param commCards the 0, 3, 4 or 5 community cards
+	 */
+	public void setCards(Card[] playerCards, Card[] commCards) {
+		this.playerCards = playerCards;
+		this.commCards = commCards;
+		switch (commCards.length) {
+		case 0: phase = Phase.PREFLOP; break;
+		case 3: phase = Phase.FLOP; break;
+		case 4: phase = Phase.TURN; break;
+		default: phase = Phase.RIVER;
+		}
+	}
+	
+	/**
+	 * Sets the betting situation of the player whose turn it is.
+	 * @param amtToSee the amount needed to stay in
+	 * @param playerBet the amount already bet this hand
+	 * @param allPlayersBet true if every player has had a turn
+	 */
+	public void setBetting(int amtToSee, int playerBet, boolean allPlayersBet) {
+		this.amtToSee = amtToSee;
+		this.playerBet = playerBet;
+		this.allPlayersBet = allPlayersBet;
+	}
+	
+	/**
+	 * Sets whose turn it is.
+	 * @param turnIndex the index of the player
+	 * @param personality the player's personality
+	 */
+	public void setTurn(int turnIndex, int personality) {
+		this.turnIndex = turnIndex;
+		this.personality = personality;
+	}
+	
+	@Override
+	public Card[] getPlayerCards() {
+		return playerCards;
+	}
+	
+	@Override
+	public Card[] getCommCards() {
+		return commCards;
+	}
+	
+	@Override
+	public Phase getPhase() {
+		return phase;
+	}
+	
+	@Override
+	public int getNumPlayers() {
+		return numPlayers;
+	}
+	
+	@Override
+	public int getPlayingPlayers() {
+		return numPlayers;
+	}
+	
+	@Override
+	public int getTurnIndex() {
+		return turnIndex;
+	}
+	
+	@Override
+	public int getPlayerPersonality() {
+		return personality;
+	}
+	
+	@Override
+	public int getMinBet() {
+		return minBet;
+	}
+	
+	@Override
+	public int getAmtToSee() {
+		return amtToSee;
+	}
+	
+	@Override
+	public int getPlayerBet() {
+		return playerBet;
+	}
+	
+	@Override
+	public int getLowChips() {
+		return lowChips;
+	}
+	
+	@Override
+	public boolean haveAllPlayersBet() {
+		return allPlayersBet;
+	}
+
+}
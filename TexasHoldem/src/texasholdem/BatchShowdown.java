@@ -0,0 +1,172 @@
+package texasholdem;
+
+/**
+ * Settles many showdowns at once from flat arrays of card indexes.
+ * Table t has the 5 community cards <code>boards[5t .. 5t+4]</code>, and
+ * player p at that table has the hole cards
+ * <code>holeCards[2(t*numPlayers+p)]</code> and the one after it. A hole
+ * card of -1 means the player isn't in the showdown. The hand value of
+ * each player goes to <code>values[t*numPlayers+p]</code> (0 if not in
+ * the showdown) and bit p of <code>winners[t]</code> is set for each
+ * winner, so more than one bit means a tie.
+ * <p>
+ * Nothing is allocated per table. With the <code>LookupHandEvaluator</code>
+ * the board is walked through the state graph once per table and each
+ * player adds only their 2 cards. The caller owns all the arrays, so one
+ * instance can be used from any number of threads, e.g. each working on
+ * its own range of tables.
+ * @author John Wardell
+ *
+ */
+public class BatchShowdown {
+	
+	/**
+	 * The most players a table can have, one for each bit of a winner mask.
+	 */
+	public static final int MAX_PLAYERS = 64;
+	
+	private final HandEvaluator evaluator;
+	private final LookupHandEvaluator lookup;
+	
+	/**
+	 * Constructs a <code>BatchShowdown</code> with the default evaluator.
+	 */
+	public BatchShowdown() {
+		this(HandEvaluators.getDefault());
+	}
+	
+	/**
+	 * Constructs a <code>BatchShowdown</code> that uses the supplied evaluator.
+	 * @param evaluator the <code>HandEvaluator</code> to use
+	 */
+	public BatchShowdown(HandEvaluator evaluator) {
+		this.evaluator = evaluator;
+		if (evaluator instanceof LookupHandEvaluator) {
+			lookup = (LookupHandEvaluator) evaluator;
+		}
+		else {
+			lookup = null;
+		}
+	}
+	
+	/**
+	 * Settles the showdowns of every table.
+	 * @param boards 5 community cards for each table
+	 * @param holeCards 2 cards for each player at each table
+	 * @param numPlayers the number of players at each table
+	 * @param values receives the hand value of each player
+	 * @param winners receives a bit mask of the winners of each table
+	 */
+	public void evaluate(int[] boards, int[] holeCards, int numPlayers,
+			int[] values, long[] winners) {
+		evaluate(boards, holeCards, numPlayers, values, winners, 0, winners.length);
+	}
+	
+	/**
+	 * Settles the showdowns of a range of tables.
+	 * @param boards 5 community cards for each table
+	 * @param holeCards 2 cards for each player at each table
+	 * @param numPlayers the number of players at each table
+	 * @param values receives the hand value of each player
+	 * @param winners receives a bit mask of the winners of each table
+	 * @param fromTable the first table to settle
+	 * @param toTable the table after the last one to settle
+	 */
+	public void evaluate(int[] boards, int[] holeCards, int numPlayers,
+			int[] values, long[] winners, int fromTable, int toTable) {
+		if ((numPlayers < 1) || (numPlayers > MAX_PLAYERS)) {
+			throw new IllegalArgumentException("numPlayers must be 1 - " + MAX_PLAYERS);
+		}
+		int[] cards = (lookup == null) ? new int[7] : null;
+		
+		for (int t = fromTable; t < toTable; t++) {
+			int board = 5 * t;
+			int node = 0;
+			if (lookup != null) {
+				node = lookup.rootNode();
+				for (int i = board; i < board + 5; i++) {
+					node = lookup.nextNode(node, boards[i]);
+				}
+			}
+			else {
+				System.arraycopy(boards, board, cards, 2, 5);
+			}
+			
+			int best = 0;
+			long winnerMask = 0L;
+			for (int p = 0; p < numPlayers; p++) {
+				int seat = t * numPlayers + p;
+				int card1 = holeCards[2 * seat];
+				int card2 = holeCards[2 * seat + 1];
+				int value = 0;
+				if (card1 >= 0) {
+					if (lookup != null) {
+						value = lookup.nextNode(lookup.nextNode(node, card1), card2);
+					}
+					else {
+						cards[0] = card1;
+						cards[1] = card2;
+						value = evaluator.evaluate(cards, 0, 7);
+					}
+					
+					if (value > best) {
+						best = value;
+						winnerMask = 1L << p;
+					}
+					else if (value == best) {
+						winnerMask |= 1L << p;
+					}
+				}
+				values[seat] = value;
+			}
+			winners[t] = winnerMask;
+		}
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Compares random showdowns with <code>FinalHandChecker</code>.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int numTables = 100000;
+		int numPlayers = 6;
+		int[] boards = new int[5 * numTables];
+		int[] holeCards = new int[2 * numPlayers * numTables];
+		int[] values = new int[numPlayers * numTables];
+		long[] winners = new long[numTables];
+		Deck deck = new Deck();
+		for (int t = 0; t < numTables; t++) {
+			deck.fillDeck();
+			for (int i = 0; i < 5; i++)
+				boards[5 * t + i] = deck.drawCard().getIndex();
+			for (int i = 0; i < 2 * numPlayers; i++)
+				holeCards[2 * numPlayers * t + i] = deck.drawCard().getIndex();
+		}
+		
+		BatchShowdown batch = new BatchShowdown();
+		long start = System.nanoTime();
+		batch.evaluate(boards, holeCards, numPlayers, values, winners);
+		System.out.println(((System.nanoTime() - start) / numTables) + " ns per table");
+		
+		FinalHandChecker fhc = new FinalHandChecker();
+		Card[] commCards = new Card[5];
+		Card[][] hands = new Card[numPlayers][2];
+		int mismatches = 0;
+		for (int t = 0; t < numTables; t++) {
+			for (int i = 0; i < 5; i++)
+				commCards[i] = Card.getCard(boards[5 * t + i]);
+			for (int p = 0; p < numPlayers; p++) {
+				hands[p][0] = Card.getCard(holeCards[2 * (numPlayers * t + p)]);
+				hands[p][1] = Card.getCard(holeCards[2 * (numPlayers * t + p) + 1]);
+			}
+			long expected = 0L;
+			for (int p: fhc.checkAllHands(commCards, hands))
+				expected |= 1L << p;
+			if (expected != winners[t])
+				mismatches++;
+		}
+		System.out.println(mismatches + " mismatches");
+	}
+
+}
@@ -0,0 +1,225 @@
+package texasholdem;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A <code>HandEvaluator</code> that works on four 13 bit value masks,
+ * one for each suit. Pairs, trips and quads are found by combining the
+ * masks, and straights and the highest cards of a mask come from small
+ * precomputed tables, so any 5 - 7 cards are evaluated without sorting
+ * and without creating any objects. The tables take 64 KB.
+ * This evaluator holds no state, so one instance can be shared between
+ * threads.
+ * @author John Wardell
+ *
+ */
+public class BitmaskHandEvaluator implements HandEvaluator {
+	
+	/**
+	 * The value ordinal of the high card of the highest straight in
+	 * each value mask, or -1 if there is no straight.
+	 */
+	private static final byte[] STRAIGHT_HIGH = new byte[1 << Card.NUM_RANKS];
+	/**
+	 * The value ordinals of the 5 highest cards in each value mask, 4 bits
+	 * each with the highest first, as they are stored in a hand value.
+	 */
+	private static final int[] TOP_RANKS = new int[1 << Card.NUM_RANKS];
+	
+	static {
+		for (int mask = 0; mask < STRAIGHT_HIGH.length; mask++) {
+			STRAIGHT_HIGH[mask] = -1;
+			for (int high = Card.NUM_RANKS - 1; high >= 4; high--) {
+				int straight = 0x1f << (high - 4);
+				if ((mask & straight) == straight) {
+					STRAIGHT_HIGH[mask] = (byte) high;
+					break;
+				}
+			}
+			//ace to five
+			if ((STRAIGHT_HIGH[mask] < 0) && ((mask & 0x100f) == 0x100f))
+				STRAIGHT_HIGH[mask] = 3;
+			
+			int ranks = 0;
+			int rest = mask;
+			for (int i = 0; i < 5; i++) {
+				int rank = (rest == 0) ? 0 : 31 - Integer.numberOfLeadingZeros(rest);
+				rest &= ~(1 << rank);
+				ranks = (ranks << 4) | rank;
+			}
+			TOP_RANKS[mask] = ranks;
+		}
+	}
+	
+	/**
+	 * A no argument constructor.
+	 */
+	public BitmaskHandEvaluator() {}
+	
+	/**
+	 * Evaluates cards given as card indexes.
+	 * @param cards the array holding the indexes of the cards
+	 * @param offset the position of the first card in <code>cards</code>
+	 * @param length the number of cards, 5 - 7
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(int[] cards, int offset, int length) {
+		long masks = 0L;
+		for (int i = offset; i < offset + length; i++)
+			masks |= 1L << ((cards[i] / Card.NUM_RANKS) * 16 + cards[i] % Card.NUM_RANKS);
+		return evaluate(masks);
+	}
+	
+	/**
+	 * Evaluates the cards in a <code>Card</code> array.
+	 * @param cards the 5 - 7 cards to evaluate
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(Card[] cards) {
+		long masks = 0L;
+		for (int i = 0; i < cards.length; i++)
+			masks |= 1L << (cards[i].getSuit().ordinal() * 16 + cards[i].getNumber().ordinal());
+		return evaluate(masks);
+	}
+	
+	/**
+	 * Evaluates cards given as the four suit masks packed in a long,
+	 * 16 bits for each suit in <code>Suit</code> order, clubs lowest.
+	 * @param masks the packed value masks of the cards
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(long masks) {
+		return evaluate((int) masks & 0x1fff, (int) (masks >>> 16) & 0x1fff,
+				(int) (masks >>> 32) & 0x1fff, (int) (masks >>> 48) & 0x1fff);
+	}
+	
+	/**
+	 * Evaluates cards given as a value mask for each suit.
+	 * @param clubs the values of the clubs
+	 * @param diamonds the values of the diamonds
+	 * @param hearts the values of the hearts
+	 * @param spades the values of the spades
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(int clubs, int diamonds, int hearts, int spades) {
+		int flushMask = 0;
+		if (Integer.bitCount(clubs) >= 5) flushMask = clubs;
+		else if (Integer.bitCount(diamonds) >= 5) flushMask = diamonds;
+		else if (Integer.bitCount(hearts) >= 5) flushMask = hearts;
+		else if (Integer.bitCount(spades) >= 5) flushMask = spades;
+		if (flushMask != 0) {
+			int high = STRAIGHT_HIGH[flushMask];
+			if (high >= 0)
+				return straightValue(Hand.STRAIGHT_FLUSH, high);
+			return category(Hand.FLUSH) | TOP_RANKS[flushMask];
+		}
+		
+		int ranks = clubs | diamonds | hearts | spades;
+		int four = clubs & diamonds & hearts & spades;
+		if (four != 0) {
+			int quads = highBit(four);
+			return category(Hand.FOUR_OF_A_KIND) | (quads * 0x11110) |
+					(TOP_RANKS[ranks & ~(1 << quads)] >>> 16);
+		}
+		
+		int two = (clubs & diamonds) | (hearts & spades) |
+				((clubs | diamonds) & (hearts | spades));
+		int three = (clubs & diamonds & (hearts | spades)) |
+				(hearts & spades & (clubs | diamonds));
+		if (three != 0) {
+			int trips = highBit(three);
+			int pairs = two & ~(1 << trips);
+			if (pairs != 0) {
+				int pair = highBit(pairs);
+				return category(Hand.FULL_HOUSE) | (trips * 0x11100) | (pair * 0x11);
+			}
+		}
+		
+		int high = STRAIGHT_HIGH[ranks];
+		if (high >= 0)
+			return straightValue(Hand.STRAIGHT, high);
+		
+		if (three != 0) {
+			int trips = highBit(three);
+			return category(Hand.THREE_OF_A_KIND) | (trips * 0x11100) |
+					(TOP_RANKS[ranks & ~(1 << trips)] >>> 12);
+		}
+		
+		if (two != 0) {
+			int pair = highBit(two);
+			int pairs = two & ~(1 << pair);
+			if (pairs != 0) {
+				int secondPair = highBit(pairs);
+				int kickers = ranks & ~(1 << pair) & ~(1 << secondPair);
+				return category(Hand.TWO_PAIR) | (pair * 0x11000) | (secondPair * 0x110) |
+						(TOP_RANKS[kickers] >>> 16);
+			}
+			return category(Hand.PAIR) | (pair * 0x11000) |
+					(TOP_RANKS[ranks & ~(1 << pair)] >>> 8);
+		}
+		return category(Hand.HIGH_CARD) | TOP_RANKS[ranks];
+	}
+	
+	/**
+	 * Checks a value mask for 5 values in a row, the ace counting low too.
+	 * @param ranks a mask with a bit set for each value ordinal
+	 * @return true if the values make a straight
+	 */
+	static boolean isStraight(int ranks) {
+		return STRAIGHT_HIGH[ranks] >= 0;
+	}
+	
+	private static int category(Hand hand) {
+		return hand.ordinal() << HandValue.CATEGORY_SHIFT;
+	}
+	
+	private static int highBit(int mask) {
+		return 31 - Integer.numberOfLeadingZeros(mask);
+	}
+	
+	private static int straightValue(Hand hand, int high) {
+		int low = (high == 3) ? 12 : high - 4;
+		return HandValue.make(hand.ordinal(), high, high - 1, high - 2, high - 3, low);
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Compares this evaluator with the reference evaluator, then counts the
+	 * bytes allocated while evaluating hands, which should be 0.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		BitmaskHandEvaluator evaluator = new BitmaskHandEvaluator();
+		HandEvaluator reference = new ReferenceHandEvaluator();
+		Deck deck = new Deck();
+		int[][] hands = new int[4096][7];
+		int mismatches = 0;
+		for (int n = 0; n < 200000; n++) {
+			deck.fillDeck();
+			int[] cards = hands[n % hands.length];
+			int length = 5 + (n % 3);
+			for (int i = 0; i < 7; i++)
+				cards[i] = deck.drawCard().getIndex();
+			if (evaluator.evaluate(cards, 0, length) != reference.evaluate(cards, 0, length))
+				mismatches++;
+		}
+		System.out.println(mismatches + " mismatches");
+		
+		com.sun.management.ThreadMXBean bean =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		long sum = 0;
+		//let the JIT compile the evaluator before counting
+		for (int n = 0; n < 2000000; n++)
+			sum += evaluator.evaluate(hands[n % hands.length], 0, 7);
+		long before = bean.getThreadAllocatedBytes(id);
+		long start = System.nanoTime();
+		for (int n = 0; n < 10000000; n++)
+			sum += evaluator.evaluate(hands[n % hands.length], 0, 5 + (n % 3));
+		long time = System.nanoTime() - start;
+		long allocated = bean.getThreadAllocatedBytes(id) - before;
+		System.out.println(allocated + " bytes allocated for 10000000 hands, " +
+				(time / 10000000.0) + " ns per hand (" + sum + ")");
+	}
+
+}
@@ -0,0 +1,83 @@
+package texasholdem;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct <code>ByteBuffer</code>s of one size. Direct buffers
+ * can be written to a channel without being copied, but are slow to make
+ * and slow to be collected, so they are made once and handed back when
+ * done with. Any thread can take or give back a buffer.
+ * @author John Wardell
+ *
+ */
+public class BufferPool {
+	
+	private final int bufferSize;
+	private final int maxPooled;
+	private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+	private final AtomicInteger created = new AtomicInteger();
+	
+	/**
+	 * Constructs a BufferPool.
+	 * @param bufferSize the capacity of each buffer.
+	 * @param maxPooled the most buffers kept for reuse; any more given
+	 * back are left to be collected.
+	 */
+	public BufferPool(int bufferSize, int maxPooled) {
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+	
+	/**
+	 * @return the capacity of each buffer.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	
+	/**
+	 * Takes a cleared buffer, making one if the pool is empty.
+	 * @return the buffer.
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = pool.poll();
+		if (buffer == null) {
+			created.incrementAndGet();
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+	
+	/**
+	 * Gives a buffer back. It mustn't be used again.
+	 * @param buffer the buffer, which must have come from this pool.
+	 */
+	public void release(ByteBuffer buffer) {
+		if (pooled.incrementAndGet() <= maxPooled) {
+			pool.add(buffer);
+		}
+		else {
+			pooled.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * @return the number of buffers ever made.
+	 */
+	public int getCreated() {
+		return created.get();
+	}
+	
+	/**
+	 * @return the number of buffers waiting in the pool.
+	 */
+	public int getPooled() {
+		return pooled.get();
+	}
+
+}
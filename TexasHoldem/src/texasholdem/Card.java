@@ -5,29 +5,174 @@ package texasholdem;
  * from a standard card deck.
  * Each card has a suit represented by the suit and a value
  * represented by the number.
+ * <p>
+ * The 52 possible cards are kept in a shared table and should be
+ * retrieved with <code>getCard</code> instead of being constructed.
+ * Each card also has two primitive forms for use by the evaluation code:
+ * an index from 0 to 51 (suit * 13 + number), and a packed code with
+ * the layout <code>xxxbbbbb bbbbbbbb ssssxxrr rrpppppp</code>, where
+ * b is a bit for the number, s is a bit for the suit, r is the
+ * number's ordinal and p is the number's prime.
  * @author John Wardell
  *
  */
 public class Card {
+	/**
+	 * The number of cards in a deck.
+	 */
+	public static final int DECK_SIZE = 52;
+	/**
+	 * The number of values a card can have.
+	 */
+	public static final int NUM_RANKS = 13;
+	/**
+	 * A prime number for each card value, from two to ace.
+	 */
+	public static final int[] PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41};
+	
+	private static final Suit[] SUITS = Suit.values();
+	private static final Number[] NUMBERS = Number.values();
+	private static final Card[] CARDS = new Card[DECK_SIZE];
+	private static final int[] CODES = new int[DECK_SIZE];
+	
+	static {
+		for (int i = 0; i < DECK_SIZE; i++) {
+			CARDS[i] = new Card(SUITS[i / NUM_RANKS], NUMBERS[i % NUM_RANKS]);
+			CODES[i] = CARDS[i].code;
+		}
+	}
+	
 	private final Suit suit;
 	private final Number number;
+	private final int index;
+	private final int code;
 	
 	/**
 	 * Constructs <code>Card</code> with supplied suit and value.
+	 * Prefer <code>getCard</code>, which returns the shared instance.
 	 * @param suit 
 	 * @param number
 	 */
 	public Card(Suit suit, Number number) {
 		this.suit = suit;
 		this.number = number;
+		int rank = number.ordinal();
+		index = suit.ordinal() * NUM_RANKS + rank;
+		code = (1 << (rank + 16)) | (1 << (suit.ordinal() + 12)) |
+				(rank << 6) | PRIMES[rank];
 	}
 	
 	/**
 	 * A no argument constructor
 	 */
 	public Card() {
-		suit = Suit.CLUBS;
-		number = Number.ACE;
+		this(Suit.CLUBS, Number.ACE);
+	}
+	
+	/**
+	 * Gets the shared card with the supplied suit and value.
+	 * @param suit the card's suit
+	 * @param number the card's value
+	 * @return the shared <code>Card</code>
+	 */
+	public static Card getCard(Suit suit, Number number) {
+		return CARDS[suit.ordinal() * NUM_RANKS + number.ordinal()];
+	}
+	
+	/**
+	 * Gets the shared card for a card index.
+	 * @param index the 0 - 51 index of the card
+	 * @return the shared <code>Card</code>
+	 */
+	public static Card getCard(int index) {
+		return CARDS[index];
+	}
+	
+	/**
+	 * Gets the shared card for a packed card code.
+	 * @param code the packed code of the card
+	 * @return the shared <code>Card</code>
+	 */
+	public static Card fromCode(int code) {
+		return CARDS[indexOf(code)];
+	}
+	
+	/**
+	 * Gets the packed code for a card index.
+	 * @param index the 0 - 51 index of the card
+	 * @return the packed code
+	 */
+	public static int codeOf(int index) {
+		return CODES[index];
+	}
+	
+	/**
+	 * Gets the card index of a packed card code.
+	 * @param code the packed code of the card
+	 * @return the 0 - 51 index of the card
+	 */
+	public static int indexOf(int code) {
+		return suitOf(code) * NUM_RANKS + rankOf(code);
+	}
+	
+	/**
+	 * Gets the value ordinal (0 for two, 12 for ace) of a packed card code.
+	 * @param code the packed code of the card
+	 * @return the value ordinal
+	 */
+	public static int rankOf(int code) {
+		return (code >> 6) & 0xf;
+	}
+	
+	/**
+	 * Gets the suit ordinal of a packed card code.
+	 * @param code the packed code of the card
+	 * @return the suit ordinal
+	 */
+	public static int suitOf(int code) {
+		return Integer.numberOfTrailingZeros(code >> 12 & 0xf);
+	}
+	
+	/**
+	 * Gets the prime of a packed card code.
+	 * @param code the packed code of the card
+	 * @return the prime for the card's value
+	 */
+	public static int primeOf(int code) {
+		return code & 0x3f;
+	}
+	
+	/**
+	 * Gets the 13 bit value mask of a packed card code.
+	 * @param code the packed code of the card
+	 * @return a mask with the bit for the card's value set
+	 */
+	public static int rankBitOf(int code) {
+		return code >>> 16;
+	}
+	
+	/**
+	 * Copies the indexes of the cards into <code>indexes</code>.
+	 * @param cards the cards to convert
+	 * @param indexes the array to fill, at least as long as <code>cards</code>
+	 * @return <code>indexes</code>
+	 */
+	public static int[] toIndexes(Card[] cards, int[] indexes) {
+		for (int i = 0; i < cards.length; i++)
+			indexes[i] = cards[i].index;
+		return indexes;
+	}
+	
+	/**
+	 * Copies the shared cards for the indexes into <code>cards</code>.
+	 * @param indexes the card indexes to convert
+	 * @param cards the array to fill, at least as long as <code>indexes</code>
+	 * @return <code>cards</code>
+	 */
+	public static Card[] fromIndexes(int[] indexes, Card[] cards) {
+		for (int i = 0; i < indexes.length; i++)
+			cards[i] = CARDS[indexes[i]];
+		return cards;
 	}
 	
 	/**
@@ -46,16 +191,44 @@ public class Card {
 		return number;
 	}
 	
+	/**
+	 * Gets this card's index in the shared card table.
+	 * @return the 0 - 51 index of the card
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Gets this card's packed code.
+	 * @return the packed code of the card
+	 */
+	public int getCode() {
+		return code;
+	}
+	
 	/**
 	 * Checks for equality 
 	 * @param otherCard
 	 * @return true if cards are the same card
 	 */
 	public boolean equals(Card otherCard) {
-		if ((this.suit == otherCard.suit) && (this.number == otherCard.number))
-			return true;
-		
-		return false;
+		return index == otherCard.index;
+	}
+	
+	/**
+	 * Checks for equality with any object.
+	 * @return true if obj is the same card
+	 */
+	public boolean equals(Object obj) {
+		return (obj instanceof Card) && equals((Card) obj);
+	}
+	
+	/**
+	 * Returns the card's index, which is unique to each card.
+	 */
+	public int hashCode() {
+		return index;
 	}
 	 /**
 	  * Creates and returns a string description of this card.
@@ -71,7 +244,7 @@ public class Card {
 	 * 
 	 */
 	public int compareNum(Card otherCard) {
-		return number.compareTo(otherCard.number);
+		return rankOf(code) - rankOf(otherCard.code);
 	}
 	
 	/**
@@ -81,9 +254,7 @@ public class Card {
 	 * 
 	 */
 	public boolean isSameNum(Card otherCard) {
-		if (this.equals(otherCard)) return false;
-		if (number.compareTo(otherCard.number) == 0) return true;
-		return false;
+		return (index != otherCard.index) && (number == otherCard.number);
 	}
 	
 	/**
@@ -94,9 +265,7 @@ public class Card {
 	 * 
 	 */
 	public boolean isNumNext(Card otherCard) {
-		int compareNum = number.compareTo(otherCard.number);
-		if (compareNum == -1) return true;
-		return false;
+		return rankOf(otherCard.code) - rankOf(code) == 1;
 	}
 	
 	/**
@@ -106,9 +275,7 @@ public class Card {
 	 * @return true if cards are the same suit
 	 */
 	public boolean isSameSuit(Card otherCard) {
-		if (this.equals(otherCard)) return false; 
-		if (suit.compareTo(otherCard.suit) == 0) return true;
-		return false;
+		return (index != otherCard.index) && (suit == otherCard.suit);
 	}
 	
 	/**
@@ -127,6 +294,12 @@ public class Card {
 		System.out.println(card6.isNumNext(card4));
 		System.out.println(card1.isSameSuit(card5));
 		System.out.println(card3.toString());
+		for (int i = 0; i < DECK_SIZE; i++) {
+			Card card = getCard(i);
+			if ((fromCode(card.getCode()) != card) || (card.getIndex() != i) ||
+					(getCard(card.getSuit(), card.getNumber()) != card))
+				System.out.println("Bad encoding for " + card);
+		}
 	}
 
 }
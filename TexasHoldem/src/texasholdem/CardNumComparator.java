@@ -15,8 +15,7 @@ public class CardNumComparator<T> implements Comparator<Card>{
 	 * compares 2 cards by value with ace high.
 	 */
 	public int compare(Card card1, Card card2) {
-		int i = card1.getNumber().compareTo(card2.getNumber());
-		return i;
+		return card1.compareNum(card2);
 	}
 
 }
@@ -18,8 +18,7 @@ public class CardSuitComparator<T> implements Comparator<Card> {
 	 * @param card2 the second card
 	 */
 	public int compare(Card card1, Card card2) {
-		int i = card1.getSuit().compareTo(card2.getSuit());
-		return i;
+		return card1.getSuit().ordinal() - card2.getSuit().ordinal();
 	}
 
 }
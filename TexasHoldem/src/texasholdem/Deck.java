@@ -1,34 +1,92 @@
 package texasholdem;
 
 import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Represents a deck of 52 cards.
  * The deck appears shuffled by drawing random cards.
  * Each card can only be drawn once.
+ * <p>
+ * The deck is held as card indexes and every draw is one step of a
+ * Fisher-Yates shuffle, so each remaining card is equally likely and
+ * refilling the deck only has to reset the count. Cards are drawn with
+ * the deck's own generator rather than <code>Math.random()</code>, so
+ * decks used on different threads never contend for one shared seed,
+ * and a deck given a seeded generator deals the same cards every time.
  * @author John Wardell
  *
  */
 public class Deck {
-	private Card[] cards;
-	private int remainingCards = 52;
+	/**
+	 * The number of community cards dealt in a hand.
+	 */
+	public static final int BOARD_SIZE = 5;
+	/**
+	 * The most players a deck can deal a whole hand to.
+	 */
+	public static final int MAX_PLAYERS = (Card.DECK_SIZE - BOARD_SIZE) / 2;
+	
+	private final int[] cards = new int[Card.DECK_SIZE];
+	private int remainingCards = Card.DECK_SIZE;
+	private Random random;
 	
 	/**
 	 * The <code>Deck</code> constructor.
-	 * Fills the <code>Deck</code> with <code>Card</code> objects.
+	 * Fills the <code>Deck</code> and gives it its own <code>FastRandom</code>.
 	 */
 	public Deck() {
-		cards = new Card[52];
-		
-		fillDeck();
+		this(new FastRandom());
+	}
+	
+	/**
+	 * Constructs a <code>Deck</code> that draws cards using the supplied
+	 * generator, so a seeded generator deals the same cards every time.
+	 * @param random the generator used to draw cards
+	 */
+	public Deck(Random random) {
+		setRandom(random);
+		for (int i = 0; i < Card.DECK_SIZE; i++) {
+			cards[i] = i;
+		}
+	}
+	
+	/**
+	 * Sets the generator used to draw cards.
+	 * @param random the generator
+	 */
+	public void setRandom(Random random) {
+		if (random == null) {
+			throw new IllegalArgumentException("random is null");
+		}
+		this.random = random;
 	}
 	
 	/**
-	 * Gets all the cards in order.
+	 * @return the generator used to draw cards.
+	 */
+	public Random getRandom() {
+		return random;
+	}
+	
+	/**
+	 * Gets all the cards, in the order they are in the deck.
+	 * The cards still to be drawn come first.
 	 * @return the array of cards
 	 */
 	public Card[] getCards() {
-		return cards;
+		Card[] deck = new Card[Card.DECK_SIZE];
+		for (int i = 0; i < Card.DECK_SIZE; i++) {
+			deck[i] = Card.getCard(cards[i]);
+		}
+		return deck;
+	}
+	
+	/**
+	 * @return the number of cards still to be drawn.
+	 */
+	public int getRemainingCards() {
+		return remainingCards;
 	}
 	
 	/**
@@ -37,35 +95,114 @@ public class Deck {
 	 * @return the <code>Card</code> drawn
 	 */
 	public Card drawCard() {
-		int i = (int) (Math.random() * remainingCards);
-		Card card = cards[i];
+		return Card.getCard(drawIndex());
+	}
+	
+	/**
+	 * Draws the index of 1 card in random order.
+	 * Decrements remainingCards.
+	 * @return the index of the card drawn
+	 */
+	public int drawIndex() {
+		if (remainingCards == 0) {
+			throw new IllegalStateException("The deck is empty");
+		}
+		int i = random.nextInt(remainingCards);
+		int card = cards[i];
 		remainingCards--;
 		cards[i] = cards[remainingCards];
-		return card;	
+		cards[remainingCards] = card;
+		return card;
 	}
 	
 	/**
-	 * Fills the <code>Deck</code> with 52 <code>Card</code> objects.
+	 * Draws a number of card indexes at once, shuffling only as much of
+	 * the deck as is needed.
+	 * @param dest the array the indexes are written to
+	 * @param offset the position in <code>dest</code> of the first index
+	 * @param count the number of cards to draw
 	 */
-	public void fillDeck() {
-		remainingCards = 52;
-		
-		int i = 0;
-		for (Suit s : Suit.values()) {
-			for (Number n : Number.values()) {
-				cards[i] = new Card(s, n);
-				i++;
-			}
+	public void drawIndexes(int[] dest, int offset, int count) {
+		if (count > remainingCards) {
+			throw new IllegalStateException("Only " + remainingCards + " cards left to draw " + count);
+		}
+		int remaining = remainingCards;
+		for (int n = offset; n < offset + count; n++) {
+			int i = random.nextInt(remaining);
+			int card = cards[i];
+			remaining--;
+			cards[i] = cards[remaining];
+			cards[remaining] = card;
+			dest[n] = card;
+		}
+		remainingCards = remaining;
+	}
+	
+	/**
+	 * Gets the number of cards in a whole hand, the board and two cards
+	 * for each player.
+	 * @param numPlayers the number of players dealt in
+	 * @return the number of cards
+	 */
+	public static int dealSize(int numPlayers) {
+		return BOARD_SIZE + 2 * numPlayers;
+	}
+	
+	/**
+	 * Refills the <code>Deck</code> and deals a whole hand as card indexes.
+	 * The 5 community cards go first, followed by 2 cards for each player,
+	 * so player n's cards are at <code>BOARD_SIZE + 2 * n</code> and the one after.
+	 * @param numPlayers the number of players dealt in
+	 * @param dest the array the hand is written to, at least <code>dealSize(numPlayers)</code> long
+	 */
+	public void dealHand(int numPlayers, int[] dest) {
+		checkPlayers(numPlayers);
+		fillDeck();
+		drawIndexes(dest, 0, dealSize(numPlayers));
+	}
+	
+	/**
+	 * Refills the <code>Deck</code> and deals a whole hand of cards, laid
+	 * out as by {@link #dealHand(int, int[])}.
+	 * @param numPlayers the number of players dealt in
+	 * @param dest the array the hand is written to, at least <code>dealSize(numPlayers)</code> long
+	 */
+	public void dealHand(int numPlayers, Card[] dest) {
+		checkPlayers(numPlayers);
+		int remaining = Card.DECK_SIZE;
+		for (int n = 0, size = dealSize(numPlayers); n < size; n++) {
+			int i = random.nextInt(remaining);
+			int card = cards[i];
+			remaining--;
+			cards[i] = cards[remaining];
+			cards[remaining] = card;
+			dest[n] = Card.getCard(card);
+		}
+		remainingCards = remaining;
+	}
+	
+	private static void checkPlayers(int numPlayers) {
+		if ((numPlayers < 0) || (numPlayers > MAX_PLAYERS)) {
+			throw new IllegalArgumentException("Can't deal a hand to " + numPlayers + " players");
 		}
-		
+	}
+	
+	/**
+	 * Puts every drawn card back in the <code>Deck</code>.
+	 */
+	public void fillDeck() {
+		remainingCards = Card.DECK_SIZE;
 	}
 	
 	/**
 	 * The main method is for testing purposes only.
+	 * Deals from a seeded deck twice to check the deals match, counts how
+	 * often each card is drawn first and times drawing against
+	 * <code>Math.random()</code> with several threads dealing at once.
 	 * @param args
 	 */
-	public static void main(String[] args) {
-		Deck deck = new Deck();
+	public static void main(String[] args) throws InterruptedException {
+		Deck deck = new Deck(new FastRandom(7));
 		
 		System.out.println(Arrays.toString(deck.getCards()));
 		
@@ -79,5 +216,82 @@ public class Deck {
 		}
 		
 		System.out.println(Arrays.toString(deck.getCards()));
+		
+		int[] first = new int[dealSize(9)];
+		int[] second = new int[dealSize(9)];
+		Deck a = new Deck(new FastRandom(42));
+		Deck b = new Deck(new FastRandom(42));
+		boolean same = true;
+		for (int j = 0; j < 1000; j++) {
+			a.fillDeck();
+			b.fillDeck();
+			a.drawIndexes(first, 0, 23);
+			for (int i = 0; i < 23; i++)
+				second[i] = b.drawIndex();
+			same &= Arrays.equals(first, second);
+		}
+		Card[] hand = new Card[dealSize(9)];
+		for (int j = 0; j < 1000; j++) {
+			a.dealHand(9, first);
+			b.dealHand(9, hand);
+			long dealt = 0;
+			for (int i = 0; i < dealSize(9); i++) {
+				same &= (first[i] == hand[i].getIndex());
+				dealt |= 1L << first[i];
+			}
+			same &= (Long.bitCount(dealt) == dealSize(9));
+		}
+		System.out.println("seeded deals match: " + same);
+		
+		int deals = 5200000;
+		int[] counts = new int[Card.DECK_SIZE];
+		int[] card = new int[1];
+		for (int j = 0; j < deals; j++) {
+			a.fillDeck();
+			a.drawIndexes(card, 0, 1);
+			counts[card[0]]++;
+		}
+		double chiSquared = 0;
+		double expected = deals / (double) Card.DECK_SIZE;
+		for (int count: counts)
+			chiSquared += (count - expected) * (count - expected) / expected;
+		System.out.printf("first card chi squared %.1f (51 degrees of freedom)%n", chiSquared);
+		
+		final int threads = 4;
+		final int perThread = 2000000;
+		for (int trial = 0; trial < 3; trial++) {
+			for (final boolean shared: new boolean[] {true, false}) {
+				Thread[] workers = new Thread[threads];
+				long start = System.nanoTime();
+				for (int t = 0; t < threads; t++) {
+					workers[t] = new Thread() {
+						@Override
+						public void run() {
+							Deck deck = new Deck();
+							int[] dealt = new int[23];
+							long sum = 0;
+							for (int j = 0; j < perThread; j++) {
+								deck.fillDeck();
+								if (shared) {
+									for (int i = 0; i < 23; i++)
+										sum += (int) (Math.random() * (52 - i));
+								}
+								else {
+									deck.drawIndexes(dealt, 0, 23);
+									sum += dealt[22];
+								}
+							}
+							if (sum == 42) System.out.println();
+						}
+					};
+					workers[t].start();
+				}
+				for (Thread worker: workers)
+					worker.join();
+				long nanos = System.nanoTime() - start;
+				System.out.printf("%s: %.1f ns per 23 card deal%n", shared ? "Math.random()" : "Deck",
+						(double) nanos / ((long) threads * perThread));
+			}
+		}
 	}
 }
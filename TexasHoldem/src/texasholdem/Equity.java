@@ -0,0 +1,108 @@
+package texasholdem;
+
+/**
+ * The result of an equity calculation for one player's hand: how many of
+ * the deals it won, tied and lost, and its average share of the pot.
+ * Equity objects are immutable.
+ * @author John Wardell
+ *
+ */
+public final class Equity {
+	
+	private final long wins;
+	private final long ties;
+	private final long losses;
+	private final double share;
+	private final boolean exact;
+	
+	/**
+	 * Constructs an Equity object.
+	 * @param wins the number of deals the hand won outright
+	 * @param ties the number of deals the hand tied for the best hand
+	 * @param losses the number of deals the hand lost
+	 * @param share the total share of the pot won over all the deals
+	 * @param exact true if every deal was counted, false if they were sampled
+	 */
+	Equity(long wins, long ties, long losses, double share, boolean exact) {
+		this.wins = wins;
+		this.ties = ties;
+		this.losses = losses;
+		this.share = share;
+		this.exact = exact;
+	}
+	
+	/**
+	 * Adds the deals of two results together.
+	 * @param other the other result
+	 * @return the combined result
+	 */
+	Equity add(Equity other) {
+		return new Equity(wins + other.wins, ties + other.ties, losses + other.losses,
+				share + other.share, exact && other.exact);
+	}
+	
+	/**
+	 * @return the number of deals counted.
+	 */
+	public long getDeals() {
+		return wins + ties + losses;
+	}
+	
+	/**
+	 * @return the number of deals the hand won outright.
+	 */
+	public long getWins() {
+		return wins;
+	}
+	
+	/**
+	 * @return the number of deals the hand tied for the best hand.
+	 */
+	public long getTies() {
+		return ties;
+	}
+	
+	/**
+	 * @return the number of deals the hand lost.
+	 */
+	public long getLosses() {
+		return losses;
+	}
+	
+	/**
+	 * @return true if every possible deal was counted, false if they were sampled.
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+	
+	/**
+	 * @return the chance of winning outright, 0 - 1.
+	 */
+	public double getWinProbability() {
+		return (getDeals() == 0) ? 0 : (double) wins / getDeals();
+	}
+	
+	/**
+	 * @return the chance of tying for the best hand, 0 - 1.
+	 */
+	public double getTieProbability() {
+		return (getDeals() == 0) ? 0 : (double) ties / getDeals();
+	}
+	
+	/**
+	 * Gets the average share of the pot the hand wins, counting a tie between
+	 * n players as 1/n of a win.
+	 * @return the equity, 0 - 1.
+	 */
+	public double getEquity() {
+		return (getDeals() == 0) ? 0 : share / getDeals();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("equity %.4f (win %.4f, tie %.4f, %d %s deals)", getEquity(),
+				getWinProbability(), getTieProbability(), getDeals(), exact ? "exact" : "sampled");
+	}
+
+}
@@ -0,0 +1,777 @@
+package texasholdem;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estimates the equity of a player's hole cards against a number of
+ * opponents holding random cards, by dealing the opponents' cards and the
+ * rest of the board at random many times. The deals are split between the
+ * threads of a <code>ForkJoinPool</code>, each with its own
+ * <code>FastRandom</code> stream, and stop early when the time budget
+ * runs out so a bot's turn is never held up.
+ * <p>
+ * Once the turn card is out there are few enough deals left to count them
+ * all, so the equity is counted exactly when the deals number no more than
+ * <code>EXACT_LIMIT</code> and counting them is expected to fit in the
+ * default time budget, going by what exact counts have cost so far. The
+ * hole cards of every opponent are scored once per run out and the deals
+ * are counted from those scores.
+ * <p>
+ * EquityCalculator objects are thread safe as long as the
+ * <code>HandEvaluator</code> is.
+ * @author John Wardell
+ *
+ */
+public class EquityCalculator {
+	
+	/**
+	 * The number of deals sampled when none is given.
+	 */
+	public static final int DEFAULT_TRIALS = 10000;
+	/**
+	 * The time budget when none is given, 2 milliseconds.
+	 */
+	public static final long DEFAULT_BUDGET_NANOS = 2000000L;
+	/**
+	 * The most deals counted by an exact calculation when the equity is
+	 * asked for without saying how.
+	 */
+	public static final long EXACT_LIMIT = 2000000L;
+	/**
+	 * Deals are split between tasks until there are this many or fewer.
+	 */
+	private static final int CHUNK_TRIALS = 1024;
+	/**
+	 * The deals sampled even when the time budget has run out, so there
+	 * is always an estimate.
+	 */
+	private static final int MIN_TRIALS = 64;
+	/**
+	 * Scoring an opponent's hand in an exact count costs about as much as
+	 * counting this many deals.
+	 */
+	private static final int EVALUATION_DEALS = 2;
+	/**
+	 * One in this many exact counts that are estimated to take too long
+	 * is made anyway, so the estimate can come back down.
+	 */
+	private static final int PROBE_INTERVAL = 16;
+	
+	private final HandEvaluator evaluator;
+	private final LookupHandEvaluator lookup;
+	private final ForkJoinPool pool;
+	/**
+	 * The nanoseconds of work, over all threads, an exact count takes
+	 * for each deal. It starts at a typical cost and follows what each
+	 * exact count is measured to cost, falling at once but rising slowly,
+	 * so a slow count, e.g. before the code is compiled, doesn't rule out
+	 * counting for good.
+	 */
+	private volatile double exactNanosPerDeal = 5;
+	private final AtomicInteger exactDeclined = new AtomicInteger();
+	
+	/**
+	 * Holds the shared calculator.
+	 */
+	private static class DefaultHolder {
+		static final EquityCalculator INSTANCE = new EquityCalculator();
+	}
+	
+	/**
+	 * Holds the pool shared by calculators that aren't given one.
+	 */
+	private static class PoolHolder {
+		static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+	
+	/**
+	 * Constructs an EquityCalculator object using the default evaluator
+	 * and a shared pool.
+	 */
+	public EquityCalculator() {
+		this(threadSafe(HandEvaluators.getDefault()), PoolHolder.POOL);
+	}
+	
+	/**
+	 * Constructs an EquityCalculator object.
+	 * @param evaluator a thread safe evaluator
+	 * @param pool the pool the deals are run on
+	 */
+	public EquityCalculator(HandEvaluator evaluator, ForkJoinPool pool) {
+		this.evaluator = evaluator;
+		this.lookup = (evaluator instanceof LookupHandEvaluator) ?
+				(LookupHandEvaluator) evaluator : null;
+		this.pool = pool;
+	}
+	
+	/**
+	 * Gets the shared calculator.
+	 * @return the shared calculator
+	 */
+	public static EquityCalculator getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+	
+	/**
+	 * @return the pool the deals are run on.
+	 */
+	ForkJoinPool getPool() {
+		return pool;
+	}
+	
+	/**
+	 * The reference evaluator can't be shared between threads,
+	 * so the bitmask evaluator is used in its place.
+	 */
+	private static HandEvaluator threadSafe(HandEvaluator evaluator) {
+		if (evaluator instanceof ReferenceHandEvaluator) {
+			return new BitmaskHandEvaluator();
+		}
+		return evaluator;
+	}
+	
+	/**
+	 * Gets the equity of hole cards. After the turn card is out it is counted
+	 * exactly if there are no more than <code>EXACT_LIMIT</code> deals and
+	 * counting them should take no longer than the default time budget,
+	 * otherwise it is estimated with the default number of deals and
+	 * time budget.
+	 * @param hole the 2 hole cards
+	 * @param board the 0 - 5 community cards
+	 * @param numOpponents the number of opponents
+	 * @return the equity
+	 */
+	public Equity calculate(Card[] hole, Card[] board, int numOpponents) {
+		return calculate(Card.toIndexes(hole, new int[2]),
+				Card.toIndexes(board, new int[board.length]), numOpponents);
+	}
+	
+	/**
+	 * Gets the equity of hole cards. After the turn card is out it is counted
+	 * exactly if there are no more than <code>EXACT_LIMIT</code> deals and
+	 * counting them should take no longer than the default time budget,
+	 * otherwise it is estimated with the default number of deals and
+	 * time budget.
+	 * @param hole the indexes of the 2 hole cards
+	 * @param board the indexes of the 0 - 5 community cards
+	 * @param numOpponents the number of opponents
+	 * @return the equity
+	 */
+	public Equity calculate(int[] hole, int[] board, int numOpponents) {
+		if ((board.length >= 4) && (countDeals(board.length, numOpponents) <= EXACT_LIMIT)) {
+			if ((estimateExactNanos(board.length, numOpponents) <= DEFAULT_BUDGET_NANOS) ||
+					(exactDeclined.incrementAndGet() % PROBE_INTERVAL == 0)) {
+				return calculateExact(hole, board, numOpponents);
+			}
+		}
+		return calculate(hole, board, numOpponents, DEFAULT_TRIALS, DEFAULT_BUDGET_NANOS,
+				new FastRandom());
+	}
+	
+	/**
+	 * Counts the deals of the rest of the board and the opponents' hole cards,
+	 * taking the opponents in order.
+	 * @param boardLength the number of community cards already out
+	 * @param numOpponents the number of opponents
+	 * @return the number of deals
+	 */
+	public static long countDeals(int boardLength, int numOpponents) {
+		int live = Card.DECK_SIZE - 2 - boardLength;
+		long deals = choose(live, 5 - boardLength);
+		live -= 5 - boardLength;
+		for (int p = 0; (p < numOpponents) && (deals > 0); p++, live -= 2) {
+			long hands = choose(live, 2);
+			if (deals > Long.MAX_VALUE / Math.max(1, hands)) {
+				return Long.MAX_VALUE;
+			}
+			deals *= hands;
+		}
+		return deals;
+	}
+	
+	/**
+	 * Estimates how long an exact count takes on this calculator's pool,
+	 * from what exact counts have cost so far.
+	 * @param boardLength the number of community cards already out
+	 * @param numOpponents the number of opponents
+	 * @return the estimated time, in nanoseconds
+	 */
+	public long estimateExactNanos(int boardLength, int numOpponents) {
+		return (long) (exactWork(boardLength, numOpponents) * exactNanosPerDeal / pool.getParallelism());
+	}
+	
+	/**
+	 * Gets the work of an exact count in deals, counting each opponent
+	 * hand scored as <code>EVALUATION_DEALS</code> deals.
+	 */
+	private static double exactWork(int boardLength, int numOpponents) {
+		int live = Card.DECK_SIZE - 2 - boardLength;
+		int missing = 5 - boardLength;
+		double scored = (double) choose(live, missing) * choose(live - missing, 2);
+		return (double) countDeals(boardLength, numOpponents) + EVALUATION_DEALS * scored;
+	}
+	
+	private static long choose(int n, int k) {
+		if ((k < 0) || (k > n)) return 0;
+		long result = 1;
+		for (int i = 1; i <= k; i++)
+			result = result * (n - k + i) / i;
+		return result;
+	}
+	
+	/**
+	 * Counts the equity of hole cards exactly over every deal of the rest of
+	 * the board and the opponents' hole cards. The run outs are split between
+	 * tasks, and against more than 1 opponent so are the first opponent's
+	 * hands. This is meant for the turn and river, earlier there are
+	 * usually far too many deals. The time taken is measured to estimate
+	 * what later counts will cost.
+	 * @param hole the indexes of the 2 hole cards
+	 * @param board the indexes of the 3 - 5 community cards
+	 * @param numOpponents the number of opponents
+	 * @return the equity
+	 * @throws IllegalArgumentException if a card is repeated, there
+	 * aren't enough cards to deal, or more than 2 board cards are missing
+	 */
+	public Equity calculateExact(int[] hole, int[] board, int numOpponents) {
+		long dead = deadCards(hole, board, numOpponents);
+		if (board.length < 3) {
+			throw new IllegalArgumentException("Too many deals to count before the flop");
+		}
+		if (numOpponents == 0) {
+			return new Equity(1, 0, 0, 1, true);
+		}
+		int[] live = new int[Card.DECK_SIZE - Long.bitCount(dead)];
+		for (int card = 0, i = 0; card < Card.DECK_SIZE; card++) {
+			if ((dead & (1L << card)) == 0) {
+				live[i++] = card;
+			}
+		}
+		//the positions in live of the missing board cards of each run out
+		int missing = 5 - board.length;
+		int[] runouts;
+		if (missing == 0) {
+			runouts = new int[1];
+		}
+		else if (missing == 1) {
+			runouts = new int[live.length];
+			for (int i = 0; i < live.length; i++)
+				runouts[i] = i;
+		}
+		else {
+			runouts = new int[live.length * (live.length - 1)];
+			int n = 0;
+			for (int j = 1; j < live.length; j++) {
+				for (int i = 0; i < j; i++) {
+					runouts[n++] = i;
+					runouts[n++] = j;
+				}
+			}
+		}
+		int numRunouts = (missing == 0) ? 1 : runouts.length / missing;
+		long start = System.nanoTime();
+		Equity equity = pool.invoke(new Runouts(hole, board, numOpponents, live, runouts, 0, numRunouts));
+		double measured = (System.nanoTime() - start) * (double) pool.getParallelism() /
+				exactWork(board.length, numOpponents);
+		double estimate = exactNanosPerDeal;
+		exactNanosPerDeal = (measured < estimate) ? measured : estimate + (measured - estimate) / 64;
+		return equity;
+	}
+	
+	/**
+	 * Estimates the equity of hole cards. The estimate is made from fewer
+	 * deals than asked for if the time budget runs out.
+	 * @param hole the indexes of the 2 hole cards
+	 * @param board the indexes of the 0 - 5 community cards
+	 * @param numOpponents the number of opponents
+	 * @param trials the number of deals to sample
+	 * @param budgetNanos the most time to spend, in nanoseconds
+	 * @param random the generator the deals are seeded from
+	 * @return the equity
+	 * @throws IllegalArgumentException if a card is repeated or there
+	 * aren't enough cards to deal
+	 */
+	public Equity calculate(int[] hole, int[] board, int numOpponents, int trials,
+			long budgetNanos, FastRandom random) {
+		long dead = deadCards(hole, board, numOpponents);
+		if (numOpponents == 0) {
+			return new Equity(1, 0, 0, 1, true);
+		}
+		int[] live = new int[Card.DECK_SIZE - Long.bitCount(dead)];
+		for (int card = 0, i = 0; card < Card.DECK_SIZE; card++) {
+			if ((dead & (1L << card)) == 0) {
+				live[i++] = card;
+			}
+		}
+		long now = System.nanoTime();
+		long deadline = (budgetNanos > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + budgetNanos;
+		Deals deals = new Deals(hole, board, numOpponents, live, trials,
+				Math.min(trials, MIN_TRIALS), deadline, random);
+		return pool.invoke(deals);
+	}
+	
+	/**
+	 * Checks the cards of a calculation.
+	 * @return a mask with a bit set for each known card
+	 */
+	static long deadCards(int[] hole, int[] board, int numOpponents) {
+		if ((hole.length != 2) || (board.length > 5) || (numOpponents < 0)) {
+			throw new IllegalArgumentException("Need 2 hole cards, at most 5 board cards " +
+					"and a positive number of opponents");
+		}
+		long dead = 0L;
+		for (int card: hole)
+			dead = addDeadCard(dead, card);
+		for (int card: board)
+			dead = addDeadCard(dead, card);
+		if (Card.DECK_SIZE - Long.bitCount(dead) < 5 - board.length + 2 * numOpponents) {
+			throw new IllegalArgumentException("Not enough cards for " + numOpponents +
+					" opponents");
+		}
+		return dead;
+	}
+	
+	private static long addDeadCard(long dead, int card) {
+		if ((card < 0) || (card >= Card.DECK_SIZE) || ((dead & (1L << card)) != 0)) {
+			throw new IllegalArgumentException("Bad or repeated card: " + card);
+		}
+		return dead | (1L << card);
+	}
+	
+	/**
+	 * Scores a 7 card hand of 5 board cards and 2 hole cards.
+	 * @param cards the board cards followed by the hole cards
+	 * @param boardNode the lookup node after the board cards, if using the lookup evaluator
+	 * @return the hand value
+	 */
+	int evaluate(int[] cards, int boardNode) {
+		if (lookup != null) {
+			return lookup.nextNode(lookup.nextNode(boardNode, cards[5]), cards[6]);
+		}
+		return evaluator.evaluate(cards, 0, 7);
+	}
+	
+	/**
+	 * Walks the lookup evaluator through the 5 board cards.
+	 * @param cards the board cards followed by the hole cards
+	 * @return the node after the board cards, or 0 without the lookup evaluator
+	 */
+	int boardNode(int[] cards) {
+		if (lookup == null) {
+			return 0;
+		}
+		int node = lookup.rootNode();
+		for (int i = 0; i < 5; i++)
+			node = lookup.nextNode(node, cards[i]);
+		return node;
+	}
+	
+	/**
+	 * A share of the deals of one calculation. Splits itself in half until
+	 * it is small enough to run, giving each half its own random stream.
+	 * Once the deadline has passed it stops splitting and stops dealing,
+	 * except that the share run by the calling thread deals at least
+	 * <code>minTrials</code>.
+	 */
+	private class Deals extends RecursiveTask<Equity> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int[] hole;
+		private final int[] board;
+		private final int numOpponents;
+		private final int[] live;
+		private final int trials;
+		private final int minTrials;
+		private final long deadline;
+		private final FastRandom random;
+		
+		Deals(int[] hole, int[] board, int numOpponents, int[] live, int trials,
+				int minTrials, long deadline, FastRandom random) {
+			this.hole = hole;
+			this.board = board;
+			this.numOpponents = numOpponents;
+			this.live = live;
+			this.trials = trials;
+			this.minTrials = minTrials;
+			this.deadline = deadline;
+			this.random = random;
+		}
+		
+		@Override
+		protected Equity compute() {
+			if ((trials > CHUNK_TRIALS) && (System.nanoTime() <= deadline)) {
+				Deals left = new Deals(hole, board, numOpponents, live, trials / 2,
+						0, deadline, random.split());
+				Deals right = new Deals(hole, board, numOpponents, live, trials - trials / 2,
+						minTrials, deadline, random);
+				left.fork();
+				Equity equity = right.compute();
+				return equity.add(left.join());
+			}
+			return run();
+		}
+		
+		/**
+		 * Deals the cards with a partial shuffle of this task's copy of the
+		 * live cards, then scores every hand.
+		 */
+		private Equity run() {
+			int[] deck = live.clone();
+			int[] cards = new int[7];
+			System.arraycopy(board, 0, cards, 0, board.length);
+			int missing = 5 - board.length;
+			int needed = missing + 2 * numOpponents;
+			long wins = 0, ties = 0, losses = 0;
+			double share = 0;
+			
+			for (int t = 0; t < trials; t++) {
+				if (((t & 63) == 0) && (t >= minTrials) && (System.nanoTime() > deadline)) {
+					break;
+				}
+				for (int i = 0; i < needed; i++) {
+					int j = i + random.nextInt(deck.length - i);
+					int card = deck[j];
+					deck[j] = deck[i];
+					deck[i] = card;
+				}
+				System.arraycopy(deck, 0, cards, board.length, missing);
+				int node = boardNode(cards);
+				cards[5] = hole[0];
+				cards[6] = hole[1];
+				int value = evaluate(cards, node);
+				
+				int best = 0;
+				int numBest = 0;
+				for (int p = 0, i = missing; p < numOpponents; p++, i += 2) {
+					cards[5] = deck[i];
+					cards[6] = deck[i + 1];
+					int other = evaluate(cards, node);
+					if (other > best) {
+						best = other;
+						numBest = 1;
+					}
+					else if (other == best) {
+						numBest++;
+					}
+				}
+				if (value > best) {
+					wins++;
+					share += 1;
+				}
+				else if (value == best) {
+					ties++;
+					share += 1.0 / (numBest + 1);
+				}
+				else {
+					losses++;
+				}
+			}
+			return new Equity(wins, ties, losses, share, false);
+		}
+	}
+	
+	/**
+	 * The counts of the deals of an exact calculation, or some of them.
+	 */
+	private static final class Tally {
+		long wins, ties, losses;
+		double share;
+		
+		Equity toEquity() {
+			return new Equity(wins, ties, losses, share, true);
+		}
+	}
+	
+	/**
+	 * Scores every hand an opponent could hold with a run out, by the
+	 * positions in live of the 2 cards.
+	 * @param cards the board cards of the run out, then room for 2 hole cards
+	 * @param node the lookup node after the board cards
+	 * @param used the live positions taken by the run out
+	 * @param values the array the hand values are written to, at
+	 * <code>i * live.length + j</code> for positions i &lt; j
+	 */
+	private void scoreHands(int[] live, int[] cards, int node, long used, int[] values) {
+		int n = live.length;
+		for (int j = 1; j < n; j++) {
+			if ((used & (1L << j)) != 0) continue;
+			cards[6] = live[j];
+			for (int i = 0; i < j; i++) {
+				if ((used & (1L << i)) != 0) continue;
+				cards[5] = live[i];
+				values[i * n + j] = evaluate(cards, node);
+			}
+		}
+	}
+	
+	/**
+	 * Deals the hole cards of the remaining opponents, keeping the best
+	 * opponent value and the number of opponents holding it, and counts
+	 * the deals.
+	 */
+	private void count(int[] values, int n, int value, int opponentsLeft, long used,
+			int best, int numBest, Tally tally) {
+		if (opponentsLeft == 1) {
+			countLast(values, n, value, used, best, numBest, tally);
+			return;
+		}
+		for (int j = 1; j < n; j++) {
+			if ((used & (1L << j)) != 0) continue;
+			for (int i = 0; i < j; i++) {
+				if ((used & (1L << i)) != 0) continue;
+				int other = values[i * n + j];
+				long nowUsed = used | (1L << i) | (1L << j);
+				if (other > best) {
+					count(values, n, value, opponentsLeft - 1, nowUsed, other, 1, tally);
+				}
+				else if (other == best) {
+					count(values, n, value, opponentsLeft - 1, nowUsed, best, numBest + 1, tally);
+				}
+				else {
+					count(values, n, value, opponentsLeft - 1, nowUsed, best, numBest, tally);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Counts the deals of the last opponent's hole cards in one loop.
+	 */
+	private static void countLast(int[] values, int n, int value, long used, int best,
+			int numBest, Tally tally) {
+		long wins = 0, ties = 0, losses = 0;
+		double share = 0;
+		for (int j = 1; j < n; j++) {
+			if ((used & (1L << j)) != 0) continue;
+			for (int i = 0, index = j; i < j; i++, index += n) {
+				if ((used & (1L << i)) != 0) continue;
+				int other = values[index];
+				int top = best;
+				int numTop = numBest;
+				if (other > top) {
+					top = other;
+					numTop = 1;
+				}
+				else if (other == top) {
+					numTop++;
+				}
+				if (value > top) {
+					wins++;
+				}
+				else if (value == top) {
+					ties++;
+					share += 1.0 / (numTop + 1);
+				}
+				else {
+					losses++;
+				}
+			}
+		}
+		tally.wins += wins;
+		tally.ties += ties;
+		tally.losses += losses;
+		tally.share += share + wins;
+	}
+	
+	/**
+	 * The scratch array each worker keeps the opponent hand values of a
+	 * run out in, when it counts the run out's deals itself.
+	 */
+	private static final ThreadLocal<int[]> SCRATCH = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[Card.DECK_SIZE * Card.DECK_SIZE];
+		}
+	};
+	
+	/**
+	 * A range of the run outs of one exact calculation. Splits itself in half
+	 * until it has a single run out. Against 1 opponent it then counts the
+	 * deals itself, keeping the opponent hand values in the worker's scratch
+	 * array. Against more, the first opponent's hands are split between
+	 * tasks, so even the river's single run out is shared out.
+	 */
+	private class Runouts extends RecursiveTask<Equity> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int[] hole;
+		private final int[] board;
+		private final int numOpponents;
+		private final int[] live;
+		private final int[] runouts;
+		private final int from;
+		private final int to;
+		
+		Runouts(int[] hole, int[] board, int numOpponents, int[] live, int[] runouts,
+				int from, int to) {
+			this.hole = hole;
+			this.board = board;
+			this.numOpponents = numOpponents;
+			this.live = live;
+			this.runouts = runouts;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Equity compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				Runouts left = new Runouts(hole, board, numOpponents, live, runouts, from, middle);
+				Runouts right = new Runouts(hole, board, numOpponents, live, runouts, middle, to);
+				left.fork();
+				Equity equity = right.compute();
+				return equity.add(left.join());
+			}
+			return run();
+		}
+		
+		/**
+		 * Scores every opponent hand for the run out, then counts the deals.
+		 */
+		private Equity run() {
+			int n = live.length;
+			int missing = 5 - board.length;
+			int[] cards = new int[7];
+			System.arraycopy(board, 0, cards, 0, board.length);
+			//live positions already used, by the run out or an opponent
+			long used = 0L;
+			for (int i = 0; i < missing; i++) {
+				int position = runouts[from * missing + i];
+				cards[board.length + i] = live[position];
+				used |= 1L << position;
+			}
+			int node = boardNode(cards);
+			cards[5] = hole[0];
+			cards[6] = hole[1];
+			int value = evaluate(cards, node);
+			
+			if (numOpponents == 1) {
+				//nothing is forked while the scratch array is in use
+				int[] values = SCRATCH.get();
+				scoreHands(live, cards, node, used, values);
+				Tally tally = new Tally();
+				countLast(values, n, value, used, 0, 0, tally);
+				return tally.toEquity();
+			}
+			int[] values = new int[n * n];
+			scoreHands(live, cards, node, used, values);
+			int[] firsts = new int[n * (n - 1) / 2];
+			int numFirsts = 0;
+			for (int j = 1; j < n; j++) {
+				if ((used & (1L << j)) != 0) continue;
+				for (int i = 0; i < j; i++) {
+					if ((used & (1L << i)) != 0) continue;
+					firsts[numFirsts++] = i * n + j;
+				}
+			}
+			return new FirstHands(values, value, used, firsts, 0, numFirsts).compute();
+		}
+		
+		/**
+		 * A range of the first opponent's hands for one run out, sharing
+		 * the run out's opponent hand values. Splits itself in half until
+		 * it has <code>CHUNK_HANDS</code> or fewer.
+		 */
+		private class FirstHands extends RecursiveTask<Equity> {
+			
+			private static final long serialVersionUID = 1L;
+			private static final int CHUNK_HANDS = 32;
+			
+			private final int[] values;
+			private final int value;
+			private final long used;
+			private final int[] firsts;
+			private final int from;
+			private final int to;
+			
+			FirstHands(int[] values, int value, long used, int[] firsts, int from, int to) {
+				this.values = values;
+				this.value = value;
+				this.used = used;
+				this.firsts = firsts;
+				this.from = from;
+				this.to = to;
+			}
+			
+			@Override
+			protected Equity compute() {
+				if (to - from > CHUNK_HANDS) {
+					int middle = (from + to) >>> 1;
+					FirstHands left = new FirstHands(values, value, used, firsts, from, middle);
+					FirstHands right = new FirstHands(values, value, used, firsts, middle, to);
+					left.fork();
+					Equity equity = right.compute();
+					return equity.add(left.join());
+				}
+				int n = live.length;
+				Tally tally = new Tally();
+				for (int k = from; k < to; k++) {
+					int first = firsts[k];
+					long nowUsed = used | (1L << (first / n)) | (1L << (first % n));
+					count(values, n, value, numOpponents - 1, nowUsed, values[first], 1, tally);
+				}
+				return tally.toEquity();
+			}
+		}
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Prints the equity of some well known match ups and the time taken.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		EquityCalculator calculator = getDefault();
+		Card[] aces = {Card.getCard(Suit.SPADES, Number.ACE), Card.getCard(Suit.HEARTS, Number.ACE)};
+		Card[] sevenTwo = {Card.getCard(Suit.CLUBS, Number.SEVEN),
+				Card.getCard(Suit.DIAMONDS, Number.TWO)};
+		Card[] flop = {Card.getCard(Suit.SPADES, Number.KING), Card.getCard(Suit.SPADES, Number.NINE),
+				Card.getCard(Suit.HEARTS, Number.FOUR)};
+		
+		//about 0.85 against 1 and 0.49 against 5
+		for (int opponents: new int[] {1, 5}) {
+			Equity equity = calculator.calculate(Card.toIndexes(aces, new int[2]), new int[0],
+					opponents, 2000000, Long.MAX_VALUE, new FastRandom(1));
+			System.out.println("AA against " + opponents + ": " + equity);
+		}
+		//about 0.35 against 1
+		System.out.println("72o against 1: " + calculator.calculate(Card.toIndexes(sevenTwo,
+				new int[2]), new int[0], 1, 2000000, Long.MAX_VALUE, new FastRandom(1)));
+		
+		//the exact counts against a close estimate
+		Card[] turn = {flop[0], flop[1], flop[2], Card.getCard(Suit.CLUBS, Number.TWO)};
+		int[] hole = Card.toIndexes(aces, new int[2]);
+		int[] board = Card.toIndexes(turn, new int[4]);
+		for (int opponents = 1; opponents <= 2; opponents++) {
+			System.out.println("AA on " + java.util.Arrays.toString(turn) + " against " +
+					opponents + ": " + countDeals(4, opponents) + " deals");
+			System.out.println("  " + calculator.calculateExact(hole, board, opponents));
+			System.out.println("  " + calculator.calculate(hole, board, opponents, 2000000,
+					Long.MAX_VALUE, new FastRandom(1)));
+		}
+		
+		Card[] river = {turn[0], turn[1], turn[2], turn[3], Card.getCard(Suit.DIAMONDS, Number.SEVEN)};
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			Equity equity = calculator.calculateExact(hole, Card.toIndexes(river, new int[5]), 2);
+			System.out.println("AA on " + java.util.Arrays.toString(river) + " against 2: " +
+					equity + " in " + (System.nanoTime() - start) / 1000 + " us, estimated " +
+					calculator.estimateExactNanos(5, 2) / 1000 + " us on " +
+					calculator.getPool().getParallelism() + " threads");
+			start = System.nanoTime();
+			equity = calculator.calculate(aces, turn, 1);
+			System.out.println("AA on " + java.util.Arrays.toString(turn) + " against 1: " +
+					equity + " in " + (System.nanoTime() - start) / 1000 + " us");
+			start = System.nanoTime();
+			equity = calculator.calculate(aces, flop, 5);
+			System.out.println("AA on " + java.util.Arrays.toString(flop) + " against 5: " +
+					equity + " in " + (System.nanoTime() - start) / 1000 + " us");
+		}
+	}
+
+}
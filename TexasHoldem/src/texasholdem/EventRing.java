@@ -0,0 +1,250 @@
+package texasholdem;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size ring of <code>long</code> events written by one thread and
+ * read by any number of others. Every slot is made up front, so
+ * publishing an event only stores a number, and the writer never waits
+ * for readers: a reader that falls a ring behind loses the oldest
+ * events instead. Each reader has its own <code>Cursor</code>,
+ * which counts the events it lost so the reader can catch up some other
+ * way, e.g. by reading the game's state again.
+ * @author John Wardell
+ *
+ */
+public class EventRing {
+	
+	/**
+	 * The capacity used when none is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+	
+	private final AtomicLongArray slots;
+	private final int mask;
+	/**
+	 * The number of events published, which is also the sequence
+	 * number of the next one.
+	 */
+	private final AtomicLong published = new AtomicLong();
+	
+	/**
+	 * Constructs an EventRing of the default capacity.
+	 */
+	public EventRing() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructs an EventRing.
+	 * @param capacity the number of events kept, a power of 2
+	 */
+	public EventRing(int capacity) {
+		if ((capacity <= 0) || (Integer.bitCount(capacity) != 1)) {
+			throw new IllegalArgumentException("The capacity must be a power of 2");
+		}
+		slots = new AtomicLongArray(capacity);
+		mask = capacity - 1;
+	}
+	
+	/**
+	 * @return the number of events the ring keeps.
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+	
+	/**
+	 * @return the number of events ever published.
+	 */
+	public long getPublished() {
+		return published.get();
+	}
+	
+	/**
+	 * Publishes an event. Only one thread may publish to a ring.
+	 * @param event the event
+	 */
+	public void publish(long event) {
+		long sequence = published.get();
+		slots.lazySet((int) sequence & mask, event);
+		published.lazySet(sequence + 1);
+	}
+	
+	/**
+	 * Makes a reader that starts with the next event published.
+	 * @return the cursor
+	 */
+	public Cursor newCursor() {
+		return new Cursor(published.get());
+	}
+	
+	/**
+	 * One reader's place in the ring. A cursor is used by one thread.
+	 */
+	public class Cursor {
+		
+		private long next;
+		private long lost;
+		
+		private Cursor(long next) {
+			this.next = next;
+		}
+		
+		/**
+		 * Copies the events published since the last call, oldest first,
+		 * up to the length of the array. Events overwritten before they
+		 * could be read are skipped and added to the lost count. The
+		 * writer stores an event before it counts it as published, so
+		 * the slot a whole ring behind the count may already hold the
+		 * next event, and the event in it is counted as lost as well.
+		 * @param dest the array the events are copied to
+		 * @return the number of events copied
+		 */
+		public int drain(long[] dest) {
+			int count = 0;
+			while (count < dest.length) {
+				long end = published.get();
+				if (next == end) break;
+				long oldest = end - slots.length() + 1;
+				if (next < oldest) {
+					lost += oldest - next;
+					next = oldest;
+				}
+				long event = slots.get((int) next & mask);
+				//the writer may have lapped the slot while it was read
+				if (published.get() - slots.length() >= next) continue;
+				dest[count++] = event;
+				next++;
+			}
+			return count;
+		}
+		
+		/**
+		 * @return the number of events this reader has lost.
+		 */
+		public long getLost() {
+			return lost;
+		}
+		
+		/**
+		 * @return the number of events published that this reader hasn't read.
+		 */
+		public long getBacklog() {
+			return published.get() - next;
+		}
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Checks readers exactly a ring behind and more than a ring behind
+	 * lose the events they should. Then plays headless games into one
+	 * ring while a fast reader and a slow reader follow the events on
+	 * their own threads, and checks the fast one sees the hands in order,
+	 * apart from any it lost, while the slow one only loses events.
+	 * @param args
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		EventRing small = new EventRing(8);
+		for (int behind = 7; behind <= 9; behind++) {
+			EventRing.Cursor cursor = small.newCursor();
+			long first = small.getPublished();
+			for (int i = 0; i < behind; i++) {
+				small.publish(first + i);
+			}
+			long[] read = new long[16];
+			int n = cursor.drain(read);
+			boolean right = (n == Math.min(behind, 7)) && (cursor.getLost() == behind - n);
+			for (int i = 0; i < n; i++) {
+				right &= (read[i] == first + cursor.getLost() + i);
+			}
+			System.out.println(behind + " events behind a ring of 8: " + n + " read, " +
+					cursor.getLost() + " lost, right: " + right);
+		}
+		
+		final EventRing ring = new EventRing();
+		final EventRing.Cursor fast = ring.newCursor();
+		final EventRing.Cursor slow = ring.newCursor();
+		final long[] counts = new long[GameEvent.HAND_END + 1];
+		final boolean[] inOrder = {true};
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread fastReader = new Thread() {
+			@Override
+			public void run() {
+				long[] events = new long[256];
+				int lastHand = 0;
+				while (true) {
+					boolean finished = done.get();
+					long lost = fast.getLost();
+					int n = fast.drain(events);
+					if (fast.getLost() != lost) {
+						lastHand = -1;
+					}
+					for (int i = 0; i < n; i++) {
+						int type = GameEvent.type(events[i]);
+						counts[type]++;
+						if (type == GameEvent.HAND_START) {
+							int hand = GameEvent.a(events[i]);
+							inOrder[0] &= (lastHand < 0) || (hand == lastHand + 1) || (hand == 1);
+							lastHand = hand;
+						}
+					}
+					if (n == 0) {
+						if (finished) break;
+						Thread.yield();
+					}
+				}
+			}
+		};
+		Thread slowReader = new Thread() {
+			@Override
+			public void run() {
+				long[] events = new long[16];
+				while (!done.get()) {
+					slow.drain(events);
+					try {
+						Thread.sleep(1);
+					}
+					catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		};
+		HandEvaluators.getDefault();
+		fastReader.start();
+		slowReader.start();
+		Random seeds = new Random(3);
+		long hands = 0;
+		long start = System.nanoTime();
+		for (int game = 0; game < 1000; game++) {
+			HoldemManager hm = new HoldemManager(6, new FastRandom(seeds.nextLong()));
+			hm.setHandsPerBlindLevel(20);
+			hm.setEvents(ring);
+			while (!hm.isGameOver()) {
+				hm.playHand();
+			}
+			hands += hm.getHandsPlayed();
+		}
+		long nanos = System.nanoTime() - start;
+		done.set(true);
+		fastReader.join();
+		slowReader.join();
+		long total = 0;
+		for (long count: counts)
+			total += count;
+		System.out.println(hands + " hands, " + ring.getPublished() + " events published, " +
+				(hands * 1000000000L / nanos) + " hands a second");
+		System.out.println("fast reader: " + total + " read, " + fast.getLost() + " lost, hands in order: " +
+				inOrder[0]);
+		System.out.println("slow reader: " + slow.getLost() + " lost");
+		for (int type = 1; type < counts.length; type++) {
+			System.out.println(GameEvent.toString(GameEvent.make(type, 0, 0, 0)).split(" ")[0] +
+					" " + counts[type]);
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+package texasholdem;
+
+/**
+ * The events a <code>HoldemManager</code> publishes to its
+ * <code>EventRing</code>, each packed into one <code>long</code> so that
+ * publishing one never creates an object. An event has a type, a seat and
+ * two numbers whose meaning depends on the type:
+ * <ul>
+ * <li><code>HAND_START</code>: the hand number and the big blind.</li>
+ * <li><code>DEAL</code>: the index of each of the seat's 2 cards.</li>
+ * <li><code>BET</code>: the seat's total bet this hand and its chips left,
+ * for blinds, checks, calls and raises.</li>
+ * <li><code>FOLD</code>: nothing.</li>
+ * <li><code>REFUND</code>: the seat's total bet and chips after the
+ * part of its bet nobody matched was given back.</li>
+ * <li><code>PHASE</code>: the <code>Phase</code> ordinal and the number
+ * of community cards showing.</li>
+ * <li><code>SHOWDOWN</code>: a winner's <code>Hand</code> ordinal and the
+ * number of winners of the pot.</li>
+ * <li><code>AWARD</code>: the chips a winner won from one pot and its
+ * chips after, for the main pot and then each side pot.</li>
+ * <li><code>BUST</code>: the hand number and the blind level.</li>
+ * <li><code>HAND_END</code>: the hand number and the number of players
+ * with chips left.</li>
+ * </ul>
+ * @author John Wardell
+ *
+ */
+public final class GameEvent {
+	
+	public static final int HAND_START = 1;
+	public static final int DEAL = 2;
+	public static final int BET = 3;
+	public static final int FOLD = 4;
+	public static final int REFUND = 5;
+	public static final int PHASE = 6;
+	public static final int SHOWDOWN = 7;
+	public static final int AWARD = 8;
+	public static final int BUST = 9;
+	public static final int HAND_END = 10;
+	
+	private static final String[] NAMES = {"NONE", "HAND_START", "DEAL", "BET", "FOLD",
+		"REFUND", "PHASE", "SHOWDOWN", "AWARD", "BUST", "HAND_END"};
+	
+	/**
+	 * The largest number an event can hold.
+	 */
+	public static final int MAX_VALUE = (1 << 24) - 1;
+	
+	private GameEvent() {}
+	
+	/**
+	 * Packs an event. The type and seat take 8 bits each and the
+	 * numbers 24 bits each.
+	 * @param type the type of event
+	 * @param seat the player's index, or 0 for a table event
+	 * @param a the first number, 0 to <code>MAX_VALUE</code>
+	 * @param b the second number, 0 to <code>MAX_VALUE</code>
+	 * @return the packed event
+	 */
+	public static long make(int type, int seat, int a, int b) {
+		return ((long) type << 56) | ((long) (seat & 0xff) << 48) |
+				((long) (a & MAX_VALUE) << 24) | (b & MAX_VALUE);
+	}
+	
+	/**
+	 * @param event a packed event
+	 * @return the type of event.
+	 */
+	public static int type(long event) {
+		return (int) (event >>> 56);
+	}
+	
+	/**
+	 * @param event a packed event
+	 * @return the seat of the player the event is about.
+	 */
+	public static int seat(long event) {
+		return (int) (event >>> 48) & 0xff;
+	}
+	
+	/**
+	 * @param event a packed event
+	 * @return the event's first number.
+	 */
+	public static int a(long event) {
+		return (int) (event >>> 24) & MAX_VALUE;
+	}
+	
+	/**
+	 * @param event a packed event
+	 * @return the event's second number.
+	 */
+	public static int b(long event) {
+		return (int) event & MAX_VALUE;
+	}
+	
+	/**
+	 * Describes a packed event, for logs.
+	 * @param event a packed event
+	 * @return the description
+	 */
+	public static String toString(long event) {
+		int type = type(event);
+		String name = (type < NAMES.length) ? NAMES[type] : ("TYPE_" + type);
+		return name + " seat " + seat(event) + ": " + a(event) + ", " + b(event);
+	}
+
+}
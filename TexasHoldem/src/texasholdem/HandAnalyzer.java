@@ -1,8 +1,6 @@
 package texasholdem;
 
 import java.util.Arrays;
-import java.util.EnumMap;
-import java.util.LinkedList;
 import java.util.Random;
 
 /**
@@ -15,42 +13,85 @@ import java.util.Random;
 public class HandAnalyzer {
 	
 	private boolean hangInThere = false;
-	private FinalHandChecker fhc;
+	private HandEvaluator evaluator;
+	private EquityCalculator equityCalculator;
+	private HandState[] handStates;
+	private Card[] bestCards = new Card[5];
 	private Random random = new Random();
 	private Card[] handCards;
 	private Card[] commCards;
-	private EnumMap<PartialHand, Boolean> partialMap = new EnumMap<>(PartialHand.class);
+	private OutsCalculator outs = new OutsCalculator();
 	private HoldemManager hm;
 	private CardNumComparator<Card> cnc = new CardNumComparator<>();
 	
-	{
-		resetPartialMap();
-	}
 	/**
 	 * This is not the constructor used in the game.
 	 */
 	public HandAnalyzer() {
-		this.fhc = new FinalHandChecker();
+		this.evaluator = HandEvaluators.getDefault();
 	}
 	/**
 	 * Constructs a HandAnalyzer object
 	 * @param hm the HoldemManager instance running the poker game
-	 * @param fhc a FinalHandChecker
+	 * @param evaluator the HandEvaluator used to score hands
 	 */
-	public HandAnalyzer(HoldemManager hm, FinalHandChecker fhc) {
+	public HandAnalyzer(HoldemManager hm, HandEvaluator evaluator) {
 		this.hm = hm;
-		this.fhc = fhc;
+		this.evaluator = evaluator;
 		
 	}
+	/**
+	 * Constructs a HandAnalyzer object whose bets are made random
+	 * by the supplied source, so a seeded game can be played again.
+	 * @param hm the HoldemManager instance running the poker game
+	 * @param evaluator the HandEvaluator used to score hands
+	 * @param random the source of randomness in the bets
+	 */
+	public HandAnalyzer(HoldemManager hm, HandEvaluator evaluator, Random random) {
+		this(hm, evaluator);
+		this.random = random;
+	}
+	/**
+	 * Called at the start of each hand. Clears the hand state
+	 * kept for each player.
+	 */
+	public void startHand() {
+		if (handStates == null) {
+			handStates = new HandState[hm.getNumPlayers()];
+			for (int i = 0; i < handStates.length; i++) {
+				handStates[i] = new HandState(evaluator);
+			}
+		}
+		for (HandState state: handStates) {
+			state.clear();
+		}
+	}
+	/**
+	 * Sets the calculator used to score hands by their equity against the
+	 * other players. Without one, hands are scored by the card heuristics.
+	 * @param equityCalculator the calculator, or null for the heuristics
+	 */
+	public void setEquityCalculator(EquityCalculator equityCalculator) {
+		this.equityCalculator = equityCalculator;
+	}
+	/**
+	 * 
+	 * @return the calculator used to score hands, or null if the
+	 * card heuristics are used.
+	 */
+	public EquityCalculator getEquityCalculator() {
+		return equityCalculator;
+	}
 	/**
 	 * Used to facilitate testing.
-	 * @return String representation of the highest PartialHand in PartialMap
+	 * @return String representation of the highest PartialHand found
+	 * by the last check for partial hands.
 	 */
 	public String getPresentPartial() {
 		String stringHand = "none";
 		PartialHand hand = null;
 		for (PartialHand h: PartialHand.values()) {
-			if (partialMap.get(h)) {
+			if (outs.has(h)) {
 				hand = h;
 			}
 		}
@@ -119,22 +160,12 @@ public class HandAnalyzer {
 		
 		return bet;
 	}
-	/**
-	 * Sets the booleans in partialMap to false.
-	 * Called whenever a new set of cards needs to be analyzed.
-	 */
-	private void resetPartialMap() {
-		for (PartialHand partial: PartialHand.values()) {
-			partialMap.put(partial, false);
-		}
-	}
 	/**
 	 * Copies and sorts the player's hand and the community cards for analysis.
 	 */
 	private void updateInfo() {
 		handCards = copyCardArray(hm.getPlayerCards());
 		commCards = copyCardArray(hm.getCommCards());
-		CardNumComparator<Card> cnc = new CardNumComparator<>();
 		Arrays.sort(handCards, cnc);
 		Arrays.sort(commCards, cnc);
 	}
@@ -146,58 +177,45 @@ public class HandAnalyzer {
 		if (hm.getPhase() == Phase.PREFLOP) {
 			return scorePreflop();
 		}
+		else if (equityCalculator != null) {
+			return scoreEquity();
+		}
 		else {
 			return scoreAfterFlop();
 		}
 	}
 	/**
-	 * Rates the 2 card hand before the flop cards are turned over.
+	 * Scores the hand by its equity against the other playing players.
+	 * @return score of the player's hand.
+	 */
+	private int scoreEquity() {
+		int players = hm.getPlayingPlayers();
+		Equity equity = equityCalculator.calculate(handCards, commCards, players - 1);
+		return scoreShare(equity.getEquity() * players);
+	}
+	/**
+	 * Rates the 2 card hand before the flop cards are turned over,
+	 * by its equity against the other playing players.
 	 * @return score of the 2 cards in player's hand.
 	 */
 	private int scorePreflop() {
-		
-		int score = 0;
-		//rate highest card
-		if (handCards[1].getNumber() == Number.ACE)
-			score = 20;
-		
-		else if (handCards[1].getNumber() == Number.KING)
-			score = 16;
-		
-		else if (handCards[1].getNumber() == Number.QUEEN)
-			score = 14;
-		
-		else if (handCards[1].getNumber() == Number.JACK)
-			score = 12;
-		
-		else {
-			score = handCards[1].getNumber().compareTo(Number.TWO) + 2;
-			hangInThere = true;
+		int opponents = Math.min(hm.getPlayingPlayers() - 1, PreflopEquityTable.MAX_OPPONENTS);
+		if (opponents < 1) {
+			return scoreShare(1);
 		}
-		
-		//rate if pair
-		if (handCards[1].isSameNum(handCards[0]))
-			score *= 2;
-		
-		else {
-		    //rate if suited
-		    if (handCards[1].isSameSuit(handCards[0]))
-		    	score += 4;
-		
-		    //rate for possible straight
-		    int diff = handCards[1].compareNum(handCards[0]);
-		    if (diff > 4)
-		    	score -= 10;
-		    else if (diff > 3)
-		    	score -= 8;
-		    else if (diff > 2)
-		    	score -= 4;
-		    else if (diff > 1)
-		    	score -= 2;
-		    	
-		}
-		//the number 5 is used here to calibrate the score
-		return score / 5;
+		double equity = PreflopEquityTable.getEquity(handCards[0], handCards[1], opponents);
+		return scoreShare(equity * (opponents + 1));
+	}
+	/**
+	 * Scores a hand by the share of the pot it is expected to win compared to
+	 * a fair share. A fair share, 1 / players, scores 4, on the same scale as
+	 * the heuristic scores.
+	 * @param share the hand's equity times the number of players.
+	 * @return score of the player's hand.
+	 */
+	private int scoreShare(double share) {
+		hangInThere = share < 1;
+		return Math.max(0, (int) ((share - 0.5) * 8));
 	}
 	/**
 	 * Copies an array of Cards.
@@ -219,14 +237,13 @@ public class HandAnalyzer {
 	private int scoreAfterFlop() {
 		hangInThere = false;
 		int score = 0;
-		Card[][] hands = new Card[1][2];
-		hands[0] = handCards;
-		fhc.checkAllHands(commCards, hands);
+		HandState state = updateHandState();
+		state.fillBestCards(bestCards);
 		
-		Hand hand = fhc.getWinningHand();
+		Hand hand = HandValue.getHand(state.getValue());
 		
 		if (hand == Hand.HIGH_CARD) {
-			if (isHoleCardIn2HighCards(fhc.getWinningCards())) {
+			if (isHoleCardIn2HighCards(bestCards)) {
 				score = 5;
 				hangInThere = true;
 			}
@@ -236,7 +253,7 @@ public class HandAnalyzer {
 			
 		}
 		else if (hand == Hand.PAIR){
-			if (isHoleCardIn2HighCards(fhc.getWinningCards())) {
+			if (isHoleCardIn2HighCards(bestCards)) {
 				score = 10;
 				hangInThere = true;
 			}
@@ -245,10 +262,10 @@ public class HandAnalyzer {
 			}
 		}
 		else if (hand == Hand.TWO_PAIR) { 
-			if (isHoleCardIn2HighCards(fhc.getWinningCards())) {
+			if (isHoleCardIn2HighCards(bestCards)) {
 				score = 15;
 			}
-			else if (isHoleCardIn4HighCards(fhc.getWinningCards())) {
+			else if (isHoleCardIn4HighCards(bestCards)) {
 				score = 5;
 				hangInThere = true;
 			}
@@ -258,32 +275,32 @@ public class HandAnalyzer {
 			
 		}
 		else if (hand == Hand.THREE_OF_A_KIND) {
-			if (isHoleCardIn3HighCards(fhc.getWinningCards())) {
+			if (isHoleCardIn3HighCards(bestCards)) {
 				score = 30;
 			}
 		}
 		else if (hand == Hand.STRAIGHT) {
-			if (isHoleCardInHand(fhc.getWinningCards())) {
+			if (isHoleCardInHand(bestCards)) {
 				score = 35;
 			}
 		}
 		else if (hand == Hand.FLUSH) {
-			if (isHoleCardInHand(fhc.getWinningCards())) {
+			if (isHoleCardInHand(bestCards)) {
 				score = 40;
 			}
 		}
 		else if (hand == Hand.FULL_HOUSE) {
-			if (isHoleCardInHand(fhc.getWinningCards())) {
+			if (isHoleCardInHand(bestCards)) {
 				score = 40;
 			}
 		}
 		else if (hand == Hand.FOUR_OF_A_KIND) {
-			if (isHoleCardInHand(fhc.getWinningCards())) {
+			if (isHoleCardInHand(bestCards)) {
 				score = 500;
 			}
 		}
 		else if (hand == Hand.STRAIGHT_FLUSH) {
-			if (isHoleCardInHand(fhc.getWinningCards())) {
+			if (isHoleCardInHand(bestCards)) {
 				score = 40;
 			}
 		}
@@ -292,31 +309,35 @@ public class HandAnalyzer {
 		return score/5;
 	}
 	/**
-	 * Checks for partial hands and sets existing hands to true in partialMap.
-	 * @param cards the cards to be checked.
+	 * Brings the current player's hand state up to date with the community
+	 * cards. The state is started on the player's first turn after the flop
+	 * and then takes each new card as it is turned over.
+	 * @return the player's hand state.
+	 */
+	private HandState updateHandState() {
+		if (handStates == null) {
+			startHand();
+		}
+		HandState state = handStates[hm.getTurnIndex()];
+		//the community cards in the order they were dealt
+		Card[] dealt = hm.getCommCards();
+		if (!state.isStarted()) {
+			state.start(hm.getPlayerCards(), dealt);
+		}
+		while (state.getNumCards() < dealt.length + 2) {
+			state.addCard(dealt[state.getNumCards() - 2]);
+		}
+		return state;
+	}
+	/**
+	 * Checks for flush and straight draws and scores them by the chance
+	 * of hitting a clean out by the river, about 10 for a flush draw and
+	 * 5 for an inside straight draw.
+	 * @return the score of the draws.
 	 */
 	private int checkPartialHands() {
-		int partScore = 0;
-		Card[] cards = new Card[handCards.length + commCards.length];
-		cards[0] = handCards[0];
-		cards[1] = handCards[1];
-		for(int i = 2; i < commCards.length + 2; i++) {
-			cards[i] = commCards[i - 2];
-		}
-		resetPartialMap();
-		Arrays.sort(cards, cnc);
-		partStraightCheck(cards);
-		partFlushCheck(cards);
-		if (partialMap.get(PartialHand.FLUSH_DRAW)) {
-			partScore += 10;
-		}
-		if (partialMap.get(PartialHand.OPEN_STRAIGHT)) {
-			partScore += 10;
-		}
-		else if (partialMap.get(PartialHand.INSIDE_STRAIGHT)) {
-			partScore += 5;
-		}
-		return partScore;
+		outs.calculate(handCards, commCards);
+		return (int) Math.round(30 * outs.getRiverOdds(outs.getCleanOuts()));
 	}
 	/**
 	 * This method is part of a series of methods that follow that check
@@ -381,106 +402,25 @@ public class HandAnalyzer {
 		return false;
 		
 	}
-	/**
-	 * Checks for the presence of a partial flush.
-	 * @param cards the cards to be checked.
-	 */
-	private void partFlushCheck(Card[] cards) {
-		int flushSize = 0;
-		
-		for (int i = cards.length - 1; i > 1; i--) {
-			flushSize = 1;
-			for (int j = i - 1; j >= 0; j--) {
-				if (cards[i].isSameSuit(cards[j])) {
-					flushSize++;
-				}
-			}
-			if (flushSize == 5) return;
-			if (flushSize == 3) {
-				partialMap.put(PartialHand.BACKDOOR_FLUSH, true);
-				return;
-			}
-			else if (flushSize == 4) {
-				partialMap.put(PartialHand.FLUSH_DRAW, true);
-				return;
-			}
-		}
-	}
-	/**
-	 * Checks for the presence of a partial straight.
-	 * @param cards the cards to be checked.
-	 */
-	private void partStraightCheck(Card[] cards) {
-		LinkedList<Card> tempHand = new LinkedList<>();
-		boolean gap = false;
-		
-		for (int i = cards.length - 1; i > 1; i--) {
-			tempHand.clear();
-			tempHand.add(cards[i]);
-			int j = i;
-			gap = false;
-			while (j > 0) {
-				j--;
-				if (cards[j].isNumNext(cards[j + 1])) {
-					tempHand.addFirst(cards[j]);
-				}
-				else if (!gap && (cards[j + 1].compareNum(cards[j]) == 2)) {
-					tempHand.addFirst(cards[j]);
-					gap = true;
-				}
-				else if (!cards[j].isSameNum(cards[j + 1])) {
-					break;
-				}
-			}
-			//a 5-card straight will not count as a partial straight
-			if (tempHand.size() == 5) return;
-			if (tempHand.size() == 4) {
-				//5-card straight starting with an ace doesn't count as a partial.
-				if ((tempHand.peekFirst().getNumber() == Number.TWO) &&
-						(cards[cards.length - 1].getNumber() == Number.ACE)) {
-					return;
-				}
-				if (gap) {
-					partialMap.put(PartialHand.INSIDE_STRAIGHT, true);
-					return;
-				}
-				else {
-					partialMap.put(PartialHand.OPEN_STRAIGHT, true);
-					return;
-				}
-			}
-			//a 4-card straight starting with an ace counts as an inside straight
-			else if ((tempHand.size() == 3) &&
-					(cards[cards.length - 1].getNumber() == Number.ACE) &&
-					((tempHand.peekFirst().getNumber() == Number.TWO) ||
-							(tempHand.peekFirst().getNumber() == Number.THREE))) {
-				partialMap.put(PartialHand.INSIDE_STRAIGHT, true);
-				return;
-			}
-			//only a consecutive 3-card straight will be counted
-			else if ((tempHand.size() == 3) && !gap) {
-				partialMap.put(PartialHand.BACKDOOR_STRAIGHT, true);
-				return;
-			}
-		}
-	}
 	//main method for testing only
 	public static void main(String[] args) {
-		for (int j = 0; j < 100; j++) {
-			HandAnalyzer ha = new HandAnalyzer();
-			Card[] cards = new Card[3];
-			cards[0] = new Card(Suit.CLUBS, Number.FOUR);
-			cards[1] = new Card(Suit.CLUBS, Number.TWO);
-			cards[2] = new Card(Suit.CLUBS, Number.THREE);
-			//cards[3] = new Card(Suit.CLUBS, Number.FOUR);
-			//cards[4] = new Card(Suit.HEARTS, Number.TEN);
-			//cards[5] = new Card(Suit.HEARTS, Number.SEVEN);
-			CardNumComparator<Card> cnc = new CardNumComparator<>();
-			Arrays.sort(cards, cnc);
-			ha.resetPartialMap();
-			System.out.println(Arrays.toString(cards));
-			ha.partStraightCheck(cards);
-			System.out.println(ha.getPresentPartial());
+		HandAnalyzer ha = new HandAnalyzer();
+		ha.handCards = new Card[] {Card.getCard(Suit.CLUBS, Number.FIVE),
+				Card.getCard(Suit.CLUBS, Number.SIX)};
+		Card[][] flops = {
+			{Card.getCard(Suit.CLUBS, Number.FOUR), Card.getCard(Suit.HEARTS, Number.TWO),
+				Card.getCard(Suit.CLUBS, Number.THREE)},
+			{Card.getCard(Suit.SPADES, Number.SEVEN), Card.getCard(Suit.HEARTS, Number.EIGHT),
+				Card.getCard(Suit.CLUBS, Number.KING)},
+			{Card.getCard(Suit.CLUBS, Number.ACE), Card.getCard(Suit.HEARTS, Number.EIGHT),
+				Card.getCard(Suit.CLUBS, Number.KING)},
+			{Card.getCard(Suit.SPADES, Number.ACE), Card.getCard(Suit.HEARTS, Number.EIGHT),
+				Card.getCard(Suit.DIAMONDS, Number.KING)},
+		};
+		for (Card[] flop: flops) {
+			ha.commCards = flop;
+			int score = ha.checkPartialHands();
+			System.out.println(Arrays.toString(flop) + " " + ha.getPresentPartial() + " " + score);
 		}
 	}
 	
@@ -0,0 +1,28 @@
+package texasholdem;
+
+/**
+ * A <code>HandEvaluator</code> turns 5 - 7 cards into a single hand
+ * value (see <code>HandValue</code>). The best 5 card hand that can be
+ * made from the cards is found, and larger values beat smaller ones.
+ * Different engines trade memory for speed, but all of them must
+ * return the same value for the same cards.
+ * @author John Wardell
+ *
+ */
+public interface HandEvaluator {
+	/**
+	 * Evaluates cards given as card indexes.
+	 * @param cards the array holding the indexes of the cards
+	 * @param offset the position of the first card in <code>cards</code>
+	 * @param length the number of cards, 5 - 7
+	 * @return the hand value of the cards
+	 */
+	int evaluate(int[] cards, int offset, int length);
+	/**
+	 * Evaluates the cards in a <code>Card</code> array.
+	 * @param cards the 5 - 7 cards to evaluate
+	 * @return the hand value of the cards
+	 */
+	int evaluate(Card[] cards);
+
+}
@@ -0,0 +1,96 @@
+package texasholdem;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Picks the <code>HandEvaluator</code> engine for a deployment.
+ * The engine is named by the <code>texasholdem.evaluator</code> system
+ * property, e.g. <code>-Dtexasholdem.evaluator=perfecthash</code> for the
+ * Android build, where the lookup table is too large.
+ * <ul>
+ * <li><code>lookup</code> - the <code>LookupHandEvaluator</code>, fastest, the default</li>
+ * <li><code>perfecthash</code> - the <code>PerfectHashHandEvaluator</code>, low memory</li>
+ * <li><code>bitmask</code> - the <code>BitmaskHandEvaluator</code>, low memory, allocation free</li>
+ * <li><code>mapped</code> - the <code>MappedHandEvaluator</code>, reads the rank file
+ * named by the <code>texasholdem.rankfile</code> property, generating it if needed</li>
+ * <li><code>reference</code> - the <code>ReferenceHandEvaluator</code>, slow</li>
+ * </ul>
+ * @author John Wardell
+ *
+ */
+public class HandEvaluators {
+	
+	/**
+	 * The system property that names the evaluator engine.
+	 */
+	public static final String PROPERTY = "texasholdem.evaluator";
+	
+	private HandEvaluators() {}
+	
+	/**
+	 * Gets the evaluator named by the <code>texasholdem.evaluator</code>
+	 * system property, or the lookup evaluator if the property isn't set.
+	 * @return the evaluator for this deployment
+	 */
+	public static HandEvaluator getDefault() {
+		return forName(System.getProperty(PROPERTY, "lookup"));
+	}
+	
+	/**
+	 * Gets an evaluator by name. The reference evaluator is not thread safe,
+	 * so each call returns a new one.
+	 * @param name the name of the engine
+	 * @return the evaluator
+	 * @throws IllegalArgumentException if there is no engine by that name
+	 */
+	public static HandEvaluator forName(String name) {
+		switch (name) {
+		case "lookup":
+			return LookupHandEvaluator.getInstance();
+		case "perfecthash":
+			return PerfectHashHolder.INSTANCE;
+		case "bitmask":
+			return BitmaskHolder.INSTANCE;
+		case "mapped":
+			return MappedHolder.INSTANCE;
+		case "reference":
+			return new ReferenceHandEvaluator();
+		default:
+			throw new IllegalArgumentException("Unknown hand evaluator: " + name);
+		}
+	}
+	
+	/**
+	 * Holds the shared perfect hash evaluator.
+	 */
+	private static class PerfectHashHolder {
+		static final PerfectHashHandEvaluator INSTANCE = new PerfectHashHandEvaluator();
+	}
+	
+	/**
+	 * Holds the shared mapped evaluator, opening the rank file when
+	 * it is first needed.
+	 */
+	private static class MappedHolder {
+		static final MappedHandEvaluator INSTANCE;
+		static {
+			File file = new File(System.getProperty(MappedHandEvaluator.FILE_PROPERTY,
+					MappedHandEvaluator.DEFAULT_FILE));
+			try {
+				INSTANCE = MappedHandEvaluator.openOrGenerate(file);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Can't open the rank file " + file, e);
+			}
+		}
+	}
+	
+	/**
+	 * Holds the shared bitmask evaluator.
+	 */
+	private static class BitmaskHolder {
+		static final BitmaskHandEvaluator INSTANCE = new BitmaskHandEvaluator();
+	}
+
+}
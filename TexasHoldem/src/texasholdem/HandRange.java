@@ -0,0 +1,340 @@
+package texasholdem;
+
+/**
+ * A weighted range of hole cards: a weight from 0 to 100 for each of the
+ * 1326 pairs of cards, or combos, a player might hold. Each combo is also
+ * kept as a 52 bit mask with a bit set for each card, by card index, so
+ * checking whether two combos or a combo and a board share a card is a
+ * single <code>and</code>.
+ * <p>
+ * Ranges are usually made with <code>parse</code>, from the usual notation,
+ * e.g. <code>"QQ+, AKs, AQo:0.5, 76s-54s, AhKh"</code>.
+ * @author John Wardell
+ *
+ */
+public class HandRange {
+	
+	/**
+	 * The number of pairs of hole cards.
+	 */
+	public static final int NUM_COMBOS = 1326;
+	/**
+	 * The weight of a combo that is always held.
+	 */
+	public static final int MAX_WEIGHT = 100;
+	
+	private static final String RANKS = "23456789TJQKA";
+	private static final String SUITS = "cdhs";
+	
+	private static final int[] LOW_CARDS = new int[NUM_COMBOS];
+	private static final int[] HIGH_CARDS = new int[NUM_COMBOS];
+	private static final long[] MASKS = new long[NUM_COMBOS];
+	
+	static {
+		for (int high = 1; high < Card.DECK_SIZE; high++) {
+			for (int low = 0; low < high; low++) {
+				int combo = comboIndex(low, high);
+				LOW_CARDS[combo] = low;
+				HIGH_CARDS[combo] = high;
+				MASKS[combo] = (1L << low) | (1L << high);
+			}
+		}
+	}
+	
+	private final int[] weights = new int[NUM_COMBOS];
+	
+	/**
+	 * Constructs an empty HandRange object.
+	 */
+	public HandRange() {}
+	
+	/**
+	 * Gets the index of a combo, 0 - 1325.
+	 * @param card1 the index of one card
+	 * @param card2 the index of the other card
+	 * @return the combo index
+	 */
+	public static int comboIndex(int card1, int card2) {
+		int high = Math.max(card1, card2);
+		int low = Math.min(card1, card2);
+		return high * (high - 1) / 2 + low;
+	}
+	
+	/**
+	 * @param combo the combo index
+	 * @return the index of the lower card of the combo
+	 */
+	public static int lowCard(int combo) {
+		return LOW_CARDS[combo];
+	}
+	
+	/**
+	 * @param combo the combo index
+	 * @return the index of the higher card of the combo
+	 */
+	public static int highCard(int combo) {
+		return HIGH_CARDS[combo];
+	}
+	
+	/**
+	 * @param combo the combo index
+	 * @return a mask with the bits of the combo's 2 cards set
+	 */
+	public static long comboMask(int combo) {
+		return MASKS[combo];
+	}
+	
+	/**
+	 * Gets a range holding every combo.
+	 * @return the range of random hands
+	 */
+	public static HandRange all() {
+		HandRange range = new HandRange();
+		for (int combo = 0; combo < NUM_COMBOS; combo++)
+			range.weights[combo] = MAX_WEIGHT;
+		return range;
+	}
+	
+	/**
+	 * Gets the weight of a combo.
+	 * @param combo the combo index
+	 * @return the weight, 0 if the combo isn't in the range
+	 */
+	public int getWeight(int combo) {
+		return weights[combo];
+	}
+	
+	/**
+	 * Sets the weight of a combo.
+	 * @param card1 the index of one card
+	 * @param card2 the index of the other card
+	 * @param weight the weight, 0 - 100
+	 */
+	public void setWeight(int card1, int card2, int weight) {
+		if ((card1 == card2) || (weight < 0) || (weight > MAX_WEIGHT)) {
+			throw new IllegalArgumentException("Bad combo or weight");
+		}
+		weights[comboIndex(card1, card2)] = weight;
+	}
+	
+	/**
+	 * Sets the weight of a combo.
+	 * @param card1 one card
+	 * @param card2 the other card
+	 * @param weight the weight, 0 - 100
+	 */
+	public void setWeight(Card card1, Card card2, int weight) {
+		setWeight(card1.getIndex(), card2.getIndex(), weight);
+	}
+	
+	/**
+	 * Sets the weight of every combo of a starting hand.
+	 * @param startingHand the starting hand index
+	 * @param weight the weight, 0 - 100
+	 * @see SuitIsomorphism#startingHandIndex(int, int)
+	 */
+	public void setStartingHand(int startingHand, int weight) {
+		for (int combo = 0; combo < NUM_COMBOS; combo++) {
+			if (SuitIsomorphism.startingHandIndex(LOW_CARDS[combo], HIGH_CARDS[combo]) ==
+					startingHand) {
+				setWeight(LOW_CARDS[combo], HIGH_CARDS[combo], weight);
+			}
+		}
+	}
+	
+	/**
+	 * Counts the combos in the range.
+	 * @return the number of combos with a weight above 0
+	 */
+	public int getNumCombos() {
+		int count = 0;
+		for (int weight: weights) {
+			if (weight > 0) count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Lists the combos in the range that don't use any of the dead cards.
+	 * @param dead a mask of the cards that can't be held
+	 * @return the combo indexes
+	 */
+	public int[] getCombos(long dead) {
+		int count = 0;
+		for (int combo = 0; combo < NUM_COMBOS; combo++) {
+			if ((weights[combo] > 0) && ((MASKS[combo] & dead) == 0)) count++;
+		}
+		int[] combos = new int[count];
+		count = 0;
+		for (int combo = 0; combo < NUM_COMBOS; combo++) {
+			if ((weights[combo] > 0) && ((MASKS[combo] & dead) == 0)) combos[count++] = combo;
+		}
+		return combos;
+	}
+	
+	/**
+	 * Makes a range from the usual notation. Hands are separated by commas
+	 * or spaces, and each may be followed by a weight from 0 to 1, e.g.
+	 * <code>AQo:0.5</code>, which is 1 if left out.
+	 * <ul>
+	 * <li><code>AKs</code>, <code>AKo</code>, <code>AK</code> - suited, offsuit or both</li>
+	 * <li><code>TT</code>, <code>TT+</code>, <code>TT-77</code> - pairs</li>
+	 * <li><code>ATs+</code> - ATs, AJs, AQs and AKs</li>
+	 * <li><code>A5s-A2s</code>, <code>76s-54s</code> - every hand between</li>
+	 * <li><code>AhKh</code> - a single combo, suits are c, d, h and s</li>
+	 * <li><code>random</code> - every combo</li>
+	 * </ul>
+	 * @param text the range
+	 * @return the range
+	 * @throws IllegalArgumentException if the range can't be read
+	 */
+	public static HandRange parse(String text) {
+		HandRange range = new HandRange();
+		for (String token: text.trim().split("[,\\s]+")) {
+			if (token.isEmpty()) continue;
+			int weight = MAX_WEIGHT;
+			int colon = token.indexOf(':');
+			if (colon >= 0) {
+				try {
+					weight = (int) Math.round(Double.parseDouble(token.substring(colon + 1)) *
+							MAX_WEIGHT);
+				}
+				catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Bad weight: " + token);
+				}
+				if ((weight < 0) || (weight > MAX_WEIGHT)) {
+					throw new IllegalArgumentException("Bad weight: " + token);
+				}
+				token = token.substring(0, colon);
+			}
+			range.parseHand(token, weight);
+		}
+		return range;
+	}
+	
+	/**
+	 * Sets the weight of the combos of one hand of the notation.
+	 */
+	private void parseHand(String token, int weight) {
+		if (token.equalsIgnoreCase("random")) {
+			for (int combo = 0; combo < NUM_COMBOS; combo++)
+				weights[combo] = weight;
+			return;
+		}
+		//a single combo, e.g. AhKh
+		if ((token.length() == 4) && (SUITS.indexOf(token.charAt(1)) >= 0) &&
+				(SUITS.indexOf(token.charAt(3)) >= 0)) {
+			int card1 = parseCard(token, 0);
+			int card2 = parseCard(token, 2);
+			if (card1 == card2) {
+				throw new IllegalArgumentException("Bad hand: " + token);
+			}
+			setWeight(card1, card2, weight);
+			return;
+		}
+		String first = token;
+		String last = null;
+		boolean plus = token.endsWith("+");
+		int dash = token.indexOf('-');
+		if (plus) {
+			first = token.substring(0, token.length() - 1);
+		}
+		else if (dash >= 0) {
+			first = token.substring(0, dash);
+			last = token.substring(dash + 1);
+		}
+		int[] from = parseStartingHand(first, token);
+		int[] to = (last == null) ? from : parseStartingHand(last, token);
+		//from is {high rank, low rank, kind} with kind 0 both, 1 suited, 2 offsuit
+		if (from[2] != to[2]) {
+			throw new IllegalArgumentException("Bad hand: " + token);
+		}
+		boolean pair = from[0] == from[1];
+		if (plus) {
+			to = pair ? new int[] {12, 12, from[2]} : new int[] {from[0], from[0] - 1, from[2]};
+		}
+		if (pair) {
+			if (to[0] != to[1]) {
+				throw new IllegalArgumentException("Bad hand: " + token);
+			}
+			for (int rank = Math.min(from[0], to[0]); rank <= Math.max(from[0], to[0]); rank++)
+				setRanks(rank, rank, 0, weight);
+		}
+		else if (from[0] == to[0]) {
+			//the same high card, e.g. A5s-A2s
+			for (int low = Math.min(from[1], to[1]); low <= Math.max(from[1], to[1]); low++)
+				setRanks(from[0], low, from[2], weight);
+		}
+		else if (from[0] - from[1] == to[0] - to[1]) {
+			//the same gap, e.g. 76s-54s
+			for (int shift = 0; shift <= Math.abs(from[0] - to[0]); shift++) {
+				int high = Math.min(from[0], to[0]) + shift;
+				setRanks(high, high - (from[0] - from[1]), from[2], weight);
+			}
+		}
+		else {
+			throw new IllegalArgumentException("Bad hand: " + token);
+		}
+	}
+	
+	/**
+	 * Reads a starting hand such as AKs, AKo, AK or TT.
+	 * @return the high rank, the low rank and 0 for both, 1 suited or 2 offsuit
+	 */
+	private static int[] parseStartingHand(String hand, String token) {
+		if ((hand.length() < 2) || (hand.length() > 3)) {
+			throw new IllegalArgumentException("Bad hand: " + token);
+		}
+		int rank1 = RANKS.indexOf(Character.toUpperCase(hand.charAt(0)));
+		int rank2 = RANKS.indexOf(Character.toUpperCase(hand.charAt(1)));
+		int kind = 0;
+		if (hand.length() == 3) {
+			kind = "so".indexOf(Character.toLowerCase(hand.charAt(2))) + 1;
+		}
+		if ((rank1 < 0) || (rank2 < 0) || (kind < 0) || ((rank1 == rank2) && (kind != 0))) {
+			throw new IllegalArgumentException("Bad hand: " + token);
+		}
+		return new int[] {Math.max(rank1, rank2), Math.min(rank1, rank2), kind};
+	}
+	
+	/**
+	 * Reads a card such as Ah at a position in a token.
+	 */
+	private static int parseCard(String token, int position) {
+		int rank = RANKS.indexOf(Character.toUpperCase(token.charAt(position)));
+		int suit = SUITS.indexOf(token.charAt(position + 1));
+		if (rank < 0) {
+			throw new IllegalArgumentException("Bad card: " + token);
+		}
+		return suit * Card.NUM_RANKS + rank;
+	}
+	
+	/**
+	 * Sets the weight of the combos of two ranks.
+	 * @param kind 0 for every combo, 1 for suited, 2 for offsuit
+	 */
+	private void setRanks(int high, int low, int kind, int weight) {
+		for (int suit1 = 0; suit1 < 4; suit1++) {
+			for (int suit2 = 0; suit2 < 4; suit2++) {
+				if (((kind == 1) && (suit1 != suit2)) || ((kind == 2) && (suit1 == suit2))) {
+					continue;
+				}
+				int card1 = suit1 * Card.NUM_RANKS + high;
+				int card2 = suit2 * Card.NUM_RANKS + low;
+				if (card1 != card2) {
+					weights[comboIndex(card1, card2)] = weight;
+				}
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		int total = 0;
+		for (int weight: weights)
+			total += weight;
+		return String.format("%d combos, %.1f weighted", getNumCombos(),
+				(double) total / MAX_WEIGHT);
+	}
+
+}
@@ -0,0 +1,334 @@
+package texasholdem;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A compact record of one hand: the table as it was before the deal,
+ * the cards in the order they were dealt, every bet asked for in turn
+ * and the chips each player was left with. It holds everything
+ * <code>HandReplayer</code> needs to play the hand again exactly, and
+ * packs into a few hundred bytes with <code>toBytes</code>.
+ * <p>
+ * A bet is the amount asked for, before the game reduces it to a legal
+ * amount, or <code>PokerTools.FOLD</code>. The blinds aren't recorded as
+ * bets since the game takes them itself.
+ * @author John Wardell
+ *
+ */
+public class HandRecord {
+	
+	private static final int VERSION = 1;
+	
+	private final int hand;
+	private final int minBet;
+	private final int blindLevel;
+	private final int smallBlindIndex;
+	private final int bigBlindIndex;
+	private final int[] startChips;
+	private final boolean[] active;
+	private int[] dealt;
+	private int[] actions;
+	private int numActions;
+	private int[] endChips;
+	
+	/**
+	 * Starts a record of a hand.
+	 * @param hand the number of the hand in its game, 1 for the first
+	 * @param minBet the big blind of the hand
+	 * @param blindLevel the blind level of the hand
+	 * @param smallBlindIndex the small blind of the hand before, which the game moves on from
+	 * @param bigBlindIndex the big blind of the hand before
+	 * @param players the players before the deal
+	 */
+	HandRecord(int hand, int minBet, int blindLevel, int smallBlindIndex,
+			int bigBlindIndex, Player[] players) {
+		this.hand = hand;
+		this.minBet = minBet;
+		this.blindLevel = blindLevel;
+		this.smallBlindIndex = smallBlindIndex;
+		this.bigBlindIndex = bigBlindIndex;
+		startChips = new int[players.length];
+		active = new boolean[players.length];
+		for (int i = 0; i < players.length; i++) {
+			startChips[i] = players[i].getChips();
+			active[i] = players[i].isActive();
+		}
+		actions = new int[4 * players.length];
+	}
+	
+	/**
+	 * Records the cards dealt, board first.
+	 */
+	void setDealt(Card[] cards, int count) {
+		dealt = new int[count];
+		for (int i = 0; i < count; i++) {
+			dealt[i] = cards[i].getIndex();
+		}
+	}
+	
+	/**
+	 * Records a bet asked for by a player.
+	 */
+	void addAction(int seat, int bet) {
+		if (2 * numActions == actions.length) {
+			actions = Arrays.copyOf(actions, 2 * actions.length);
+		}
+		actions[2 * numActions] = seat;
+		actions[2 * numActions + 1] = bet;
+		numActions++;
+	}
+	
+	/**
+	 * Records the chips the players were left with.
+	 */
+	void finish(Player[] players) {
+		endChips = new int[players.length];
+		for (int i = 0; i < players.length; i++) {
+			endChips[i] = players[i].getChips();
+		}
+	}
+	
+	/**
+	 * @return the number of the hand in its game, 1 for the first.
+	 */
+	public int getHand() {
+		return hand;
+	}
+	
+	/**
+	 * @return the big blind of the hand.
+	 */
+	public int getMinBet() {
+		return minBet;
+	}
+	
+	/**
+	 * @return the blind level of the hand, 0 for the first.
+	 */
+	public int getBlindLevel() {
+		return blindLevel;
+	}
+	
+	/**
+	 * @return the small blind index of the hand before.
+	 */
+	public int getSmallBlindIndex() {
+		return smallBlindIndex;
+	}
+	
+	/**
+	 * @return the big blind index of the hand before.
+	 */
+	public int getBigBlindIndex() {
+		return bigBlindIndex;
+	}
+	
+	/**
+	 * @return the number of seats at the table.
+	 */
+	public int getNumPlayers() {
+		return startChips.length;
+	}
+	
+	/**
+	 * @param seat the player's index
+	 * @return the player's chips before the deal.
+	 */
+	public int getStartChips(int seat) {
+		return startChips[seat];
+	}
+	
+	/**
+	 * @param seat the player's index
+	 * @return true if the player was still in the game before the deal.
+	 */
+	public boolean isActive(int seat) {
+		return active[seat];
+	}
+	
+	/**
+	 * @return the number of cards dealt.
+	 */
+	public int getNumDealt() {
+		return dealt.length;
+	}
+	
+	/**
+	 * Gets a dealt card. The board comes first, then 2 cards for
+	 * each player dealt in, in seat order.
+	 * @param i the position in the deal
+	 * @return the card's index
+	 */
+	public int getDealt(int i) {
+		return dealt[i];
+	}
+	
+	/**
+	 * @return the number of bets asked for.
+	 */
+	public int getNumActions() {
+		return numActions;
+	}
+	
+	/**
+	 * @param action the number of the bet, in the order they were made
+	 * @return the index of the player who bet.
+	 */
+	public int getActionSeat(int action) {
+		return actions[2 * action];
+	}
+	
+	/**
+	 * @param action the number of the bet, in the order they were made
+	 * @return the amount asked for, or <code>PokerTools.FOLD</code>.
+	 */
+	public int getActionBet(int action) {
+		return actions[2 * action + 1];
+	}
+	
+	/**
+	 * @return true if the hand was played to the end.
+	 */
+	public boolean isFinished() {
+		return endChips != null;
+	}
+	
+	/**
+	 * @param seat the player's index
+	 * @return the player's chips at the end of the hand.
+	 */
+	public int getEndChips(int seat) {
+		return endChips[seat];
+	}
+	
+	/**
+	 * Packs the record into bytes. Chips and bets take 4 bytes,
+	 * everything else 1 or 2.
+	 * @return the packed record
+	 */
+	public byte[] toBytes() {
+		if (!isFinished()) {
+			throw new IllegalStateException("The hand isn't finished");
+		}
+		int n = getNumPlayers();
+		ByteBuffer buffer = ByteBuffer.allocate(20 + 9 * n + dealt.length + 5 * numActions);
+		buffer.put((byte) VERSION);
+		buffer.put((byte) n);
+		buffer.putInt(hand);
+		buffer.putInt(minBet);
+		buffer.putShort((short) blindLevel);
+		buffer.put((byte) smallBlindIndex);
+		buffer.put((byte) bigBlindIndex);
+		for (int i = 0; i < n; i++) {
+			buffer.putInt(startChips[i]);
+			buffer.put((byte) (active[i] ? 1 : 0));
+		}
+		buffer.put((byte) dealt.length);
+		for (int card: dealt) {
+			buffer.put((byte) card);
+		}
+		buffer.putShort((short) numActions);
+		for (int i = 0; i < numActions; i++) {
+			buffer.put((byte) actions[2 * i]);
+			buffer.putInt(actions[2 * i + 1]);
+		}
+		for (int i = 0; i < n; i++) {
+			buffer.putInt(endChips[i]);
+		}
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+	
+	/**
+	 * Unpacks a record packed by <code>toBytes</code>.
+	 * @param bytes the packed record
+	 * @return the record
+	 * @throws IllegalArgumentException if the bytes aren't a packed record.
+	 */
+	public static HandRecord fromBytes(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		try {
+			if (buffer.get() != VERSION) {
+				throw new IllegalArgumentException("Not a version " + VERSION + " hand record");
+			}
+			int n = buffer.get();
+			int hand = buffer.getInt();
+			int minBet = buffer.getInt();
+			int blindLevel = buffer.getShort();
+			int smallBlindIndex = buffer.get();
+			int bigBlindIndex = buffer.get();
+			Player[] players = new Player[n];
+			for (int i = 0; i < n; i++) {
+				players[i] = new Player(buffer.getInt(), null);
+				players[i].setActive(buffer.get() != 0);
+			}
+			HandRecord record = new HandRecord(hand, minBet, blindLevel, smallBlindIndex,
+					bigBlindIndex, players);
+			record.dealt = new int[buffer.get()];
+			for (int i = 0; i < record.dealt.length; i++) {
+				record.dealt[i] = buffer.get();
+			}
+			for (int i = buffer.getShort(); i > 0; i--) {
+				int seat = buffer.get();
+				record.addAction(seat, buffer.getInt());
+			}
+			for (int i = 0; i < n; i++) {
+				players[i].setChips(buffer.getInt());
+			}
+			record.finish(players);
+			return record;
+		}
+		catch (RuntimeException e) {
+			if (e instanceof IllegalArgumentException) throw e;
+			throw new IllegalArgumentException("Not a packed hand record", e);
+		}
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof HandRecord)) return false;
+		HandRecord other = (HandRecord) o;
+		return (hand == other.hand) && (minBet == other.minBet) &&
+				(blindLevel == other.blindLevel) &&
+				(smallBlindIndex == other.smallBlindIndex) &&
+				(bigBlindIndex == other.bigBlindIndex) &&
+				Arrays.equals(startChips, other.startChips) &&
+				Arrays.equals(active, other.active) &&
+				Arrays.equals(dealt, other.dealt) &&
+				(numActions == other.numActions) &&
+				Arrays.equals(Arrays.copyOf(actions, 2 * numActions),
+						Arrays.copyOf(other.actions, 2 * numActions)) &&
+				Arrays.equals(endChips, other.endChips);
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = hand;
+		hash = 31 * hash + Arrays.hashCode(startChips);
+		hash = 31 * hash + Arrays.hashCode(dealt);
+		for (int i = 0; i < 2 * numActions; i++) {
+			hash = 31 * hash + actions[i];
+		}
+		return 31 * hash + Arrays.hashCode(endChips);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("hand " + hand + ", blind " + minBet +
+				", chips " + Arrays.toString(startChips) + ", dealt");
+		if (dealt != null) {
+			for (int card: dealt) {
+				text.append(' ').append(card);
+			}
+		}
+		text.append(", bets");
+		for (int i = 0; i < numActions; i++) {
+			text.append(' ').append(actions[2 * i]).append(':').append(actions[2 * i + 1]);
+		}
+		if (endChips != null) {
+			text.append(", end chips ").append(Arrays.toString(endChips));
+		}
+		return text.toString();
+	}
+
+}
@@ -0,0 +1,102 @@
+package texasholdem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays recorded hands again, with no user interface and no waiting,
+ * by dealing the recorded cards and making the recorded bets. The game
+ * plays the hand again on its own rules, so comparing the replay with
+ * the record shows whether a change to the game has changed how any
+ * hand plays out.
+ * <p>
+ * A HandReplayer keeps one headless game for each table size and reuses
+ * it, so it is not meant to be shared between threads.
+ * @author John Wardell
+ *
+ */
+public class HandReplayer {
+	
+	private final HoldemManager[] games = new HoldemManager[Deck.MAX_PLAYERS + 1];
+	
+	/**
+	 * Plays a recorded hand again.
+	 * @param hand the recorded hand
+	 * @return the record of the replay
+	 * @throws IllegalStateException if the game doesn't follow the record,
+	 * e.g. it asks a different player to bet.
+	 */
+	public HandRecord replay(HandRecord hand) {
+		HoldemManager hm = getGame(hand.getNumPlayers());
+		hm.setScript(hand);
+		hm.playHand();
+		return hm.getLastRecord();
+	}
+	
+	/**
+	 * Checks a recorded hand plays out the same way again.
+	 * @param hand the recorded hand
+	 * @return true if the replay matches the record, chips and all
+	 */
+	public boolean verify(HandRecord hand) {
+		try {
+			return replay(hand).equals(hand);
+		}
+		catch (IllegalStateException e) {
+			return false;
+		}
+	}
+	
+	private HoldemManager getGame(int numPlayers) {
+		if (games[numPlayers] == null) {
+			games[numPlayers] = new HoldemManager(numPlayers, new Random(0));
+			games[numPlayers].setRecording(true);
+		}
+		return games[numPlayers];
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Records headless games, packs and unpacks every hand, then replays
+	 * them and checks they all match.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		List<byte[]> packed = new ArrayList<byte[]>();
+		long bytes = 0;
+		Random seeds = new Random(5);
+		for (int game = 0; game < 500; game++) {
+			HoldemManager hm = new HoldemManager(2 + game % 8, new FastRandom(seeds.nextLong()));
+			hm.setHandsPerBlindLevel(20);
+			hm.setRecording(true);
+			while (!hm.isGameOver()) {
+				hm.playHand();
+				byte[] hand = hm.getLastRecord().toBytes();
+				bytes += hand.length;
+				packed.add(hand);
+			}
+		}
+		System.out.println(packed.size() + " hands recorded, " + (bytes / packed.size()) +
+				" bytes a hand");
+		System.out.println(HandRecord.fromBytes(packed.get(0)));
+		
+		HandReplayer replayer = new HandReplayer();
+		for (int round = 0; round < 3; round++) {
+			int matched = 0;
+			long start = System.nanoTime();
+			for (byte[] hand: packed) {
+				if (replayer.verify(HandRecord.fromBytes(hand))) matched++;
+			}
+			long nanos = System.nanoTime() - start;
+			System.out.println(matched + " of " + packed.size() + " hands matched, " +
+					(packed.size() * 1000000000L / nanos) + " hands a second");
+		}
+		
+		HandRecord changed = HandRecord.fromBytes(packed.get(1));
+		byte[] tampered = changed.toBytes();
+		tampered[tampered.length - 1]++;
+		System.out.println("tampered hand matches: " + replayer.verify(HandRecord.fromBytes(tampered)));
+	}
+
+}
@@ -0,0 +1,124 @@
+package texasholdem;
+
+/**
+ * Keeps the value of one player's hand up to date as community cards are
+ * turned over. The state is started with the hole cards and the flop and
+ * then takes the turn and the river one card at a time, so a hand is never
+ * evaluated from scratch more than once.
+ * With the <code>LookupHandEvaluator</code> the state is a node of its
+ * state graph, and each card costs a single table lookup. Other
+ * evaluators are simply asked to evaluate all the cards again.
+ * @author John Wardell
+ *
+ */
+public class HandState {
+	
+	private final HandEvaluator evaluator;
+	private final LookupHandEvaluator lookup;
+	private int[] cards = new int[7];
+	private int numCards = 0;
+	private int node;
+	private int value;
+	
+	/**
+	 * Constructs a <code>HandState</code> that uses the supplied evaluator.
+	 * @param evaluator the <code>HandEvaluator</code> to use
+	 */
+	public HandState(HandEvaluator evaluator) {
+		this.evaluator = evaluator;
+		if (evaluator instanceof LookupHandEvaluator) {
+			lookup = (LookupHandEvaluator) evaluator;
+		}
+		else {
+			lookup = null;
+		}
+	}
+	
+	/**
+	 * Starts the state over with a player's hole cards and the flop.
+	 * @param hole the player's 2 cards
+	 * @param flop the first 3 community cards
+	 */
+	public void start(Card[] hole, Card[] flop) {
+		numCards = 0;
+		if (lookup != null) {
+			node = lookup.rootNode();
+		}
+		add(hole[0]);
+		add(hole[1]);
+		add(flop[0]);
+		add(flop[1]);
+		add(flop[2]);
+		updateValue();
+	}
+	
+	/**
+	 * Adds the turn or river card and updates the value.
+	 * @param card the card turned over
+	 */
+	public void addCard(Card card) {
+		add(card);
+		updateValue();
+	}
+	
+	/**
+	 * Clears the state, to be started again for the next hand.
+	 */
+	public void clear() {
+		numCards = 0;
+	}
+	
+	/**
+	 * 
+	 * @return true if the state has been started this hand.
+	 */
+	public boolean isStarted() {
+		return numCards > 0;
+	}
+	
+	/**
+	 * 
+	 * @return the number of cards in the state, hole cards included.
+	 */
+	public int getNumCards() {
+		return numCards;
+	}
+	
+	/**
+	 * 
+	 * @return the hand value of the cards so far.
+	 */
+	public int getValue() {
+		return value;
+	}
+	
+	/**
+	 * Puts the best 5 cards so far into <code>bestCards</code>,
+	 * least important first.
+	 * @param bestCards the 5 element array to fill
+	 */
+	public void fillBestCards(Card[] bestCards) {
+		HandValue.fillCards(value, cards, 0, numCards, bestCards);
+	}
+	
+	private void add(Card card) {
+		int index = card.getIndex();
+		cards[numCards++] = index;
+		if ((lookup != null) && (numCards < 7)) {
+			node = lookup.nextNode(node, index);
+		}
+		else if (lookup != null) {
+			value = lookup.nextNode(node, index);
+		}
+	}
+	
+	private void updateValue() {
+		if (lookup == null) {
+			value = evaluator.evaluate(cards, 0, numCards);
+		}
+		else if (numCards < 7) {
+			value = lookup.nodeValue(node);
+		}
+	}
+
+}
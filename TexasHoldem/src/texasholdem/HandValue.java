@@ -0,0 +1,245 @@
+package texasholdem;
+
+/**
+ * Static methods for working with hand values, the single <code>int</code>
+ * that a <code>HandEvaluator</code> returns for a set of cards.
+ * A hand value holds the <code>Hand</code> ordinal in bits 20 and up,
+ * followed by the values of the 5 cards of the best hand, 4 bits each,
+ * most important card first (e.g. the pair before the kickers). The
+ * value ordinals are those of <code>Number</code>, so a larger hand
+ * value always beats a smaller one and equal values tie.
+ * @author John Wardell
+ *
+ */
+public class HandValue {
+	
+	/**
+	 * The position of the <code>Hand</code> ordinal in a hand value.
+	 */
+	public static final int CATEGORY_SHIFT = 20;
+	
+	private static final Hand[] HANDS = Hand.values();
+	
+	private HandValue() {}
+	
+	/**
+	 * Builds a hand value.
+	 * @param category the <code>Hand</code> ordinal
+	 * @param r1 the value ordinal of the most important card
+	 * @param r2 the value ordinal of the second card
+	 * @param r3 the value ordinal of the third card
+	 * @param r4 the value ordinal of the fourth card
+	 * @param r5 the value ordinal of the least important card
+	 * @return the hand value
+	 */
+	public static int make(int category, int r1, int r2, int r3, int r4, int r5) {
+		return (category << CATEGORY_SHIFT) | (r1 << 16) | (r2 << 12) |
+				(r3 << 8) | (r4 << 4) | r5;
+	}
+	
+	/**
+	 * Gets the <code>Hand</code> ordinal of a hand value.
+	 * @param value the hand value
+	 * @return the ordinal of the hand
+	 */
+	public static int getCategory(int value) {
+		return value >>> CATEGORY_SHIFT;
+	}
+	
+	/**
+	 * Gets the poker hand of a hand value.
+	 * @param value the hand value
+	 * @return the hand, e.g. <code>Hand.PAIR</code>
+	 */
+	public static Hand getHand(int value) {
+		return HANDS[value >>> CATEGORY_SHIFT];
+	}
+	
+	/**
+	 * Gets the value ordinal of one of the 5 cards of a hand value.
+	 * @param value the hand value
+	 * @param i 0 for the most important card, 4 for the least important
+	 * @return the value ordinal of the card
+	 */
+	public static int getRank(int value, int i) {
+		return (value >> (16 - 4 * i)) & 0xf;
+	}
+	
+	/**
+	 * Scores cards from the number of cards of each value.
+	 * Used to fill in the tables of the table driven evaluators.
+	 * @param rankCounts the number of cards of each value, two to ace
+	 * @param flushMask the value mask of the cards of a suit that has
+	 * 5 or more cards, or 0 if there is no flush
+	 * @return the hand value of the cards
+	 */
+	static int fromRanks(int[] rankCounts, int flushMask) {
+		if (flushMask != 0) {
+			int high = straightHigh(flushMask);
+			if (high >= 0)
+				return straightValue(Hand.STRAIGHT_FLUSH, high);
+			return topCards(Hand.FLUSH, flushMask, 0, 0, 5);
+		}
+		
+		int rankMask = 0;
+		for (int rank = 0; rank < Card.NUM_RANKS; rank++) {
+			if (rankCounts[rank] > 0)
+				rankMask |= 1 << rank;
+		}
+		
+		int quads = highestCount(rankCounts, 4, -1);
+		if (quads >= 0)
+			return topCards(Hand.FOUR_OF_A_KIND, rankMask & ~(1 << quads),
+					quads, 4, 1);
+		
+		int trips = highestCount(rankCounts, 3, -1);
+		if (trips >= 0) {
+			int pair = highestCount(rankCounts, 2, trips);
+			if (pair >= 0)
+				return make(Hand.FULL_HOUSE.ordinal(),
+						trips, trips, trips, pair, pair);
+		}
+		
+		int high = straightHigh(rankMask);
+		if (high >= 0)
+			return straightValue(Hand.STRAIGHT, high);
+		
+		if (trips >= 0)
+			return topCards(Hand.THREE_OF_A_KIND, rankMask & ~(1 << trips),
+					trips, 3, 2);
+		
+		int pair = highestCount(rankCounts, 2, -1);
+		if (pair >= 0) {
+			int secondPair = highestCount(rankCounts, 2, pair);
+			if (secondPair >= 0) {
+				int kickers = rankMask & ~(1 << pair) & ~(1 << secondPair);
+				int kicker = 31 - Integer.numberOfLeadingZeros(kickers);
+				return make(Hand.TWO_PAIR.ordinal(),
+						pair, pair, secondPair, secondPair, kicker);
+			}
+			return topCards(Hand.PAIR, rankMask & ~(1 << pair), pair, 2, 3);
+		}
+		return topCards(Hand.HIGH_CARD, rankMask, 0, 0, 5);
+	}
+	
+	/**
+	 * Finds the highest value with at least <code>count</code> cards.
+	 * @param rankCounts the number of cards of each value
+	 * @param count the number of cards needed
+	 * @param skip a value to leave out, or -1
+	 * @return the value ordinal, or -1 if none
+	 */
+	private static int highestCount(int[] rankCounts, int count, int skip) {
+		for (int rank = Card.NUM_RANKS - 1; rank >= 0; rank--) {
+			if ((rank != skip) && (rankCounts[rank] >= count))
+				return rank;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Finds the highest straight in a value mask.
+	 * @param mask a 13 bit mask of card values
+	 * @return the value ordinal of the straight's high card, or -1
+	 */
+	private static int straightHigh(int mask) {
+		for (int high = Card.NUM_RANKS - 1; high >= 4; high--) {
+			int straight = 0x1f << (high - 4);
+			if ((mask & straight) == straight)
+				return high;
+		}
+		//ace to five
+		if ((mask & 0x100f) == 0x100f)
+			return 3;
+		return -1;
+	}
+	
+	/**
+	 * Builds the value of a straight.
+	 * @param hand the hand, a straight or straight flush
+	 * @param high the value ordinal of the high card
+	 * @return the hand value
+	 */
+	private static int straightValue(Hand hand, int high) {
+		int low = (high == 3) ? 12 : high - 4;
+		return make(hand.ordinal(), high, high - 1, high - 2, high - 3, low);
+	}
+	
+	/**
+	 * Builds a hand value from a repeated value and the highest other cards.
+	 * @param hand the hand
+	 * @param kickers a value mask of the cards that may fill the hand
+	 * @param rank the value ordinal of the repeated value
+	 * @param count the number of cards of the repeated value
+	 * @param numKickers the number of cards to take from kickers
+	 * @return the hand value
+	 */
+	private static int topCards(Hand hand, int kickers, int rank, int count, int numKickers) {
+		int value = hand.ordinal();
+		for (int i = 0; i < count; i++)
+			value = (value << 4) | rank;
+		for (int i = 0; i < numKickers; i++) {
+			int kicker = 31 - Integer.numberOfLeadingZeros(kickers);
+			kickers &= ~(1 << kicker);
+			value = (value << 4) | kicker;
+		}
+		return value;
+	}
+	
+	/**
+	 * Picks the 5 cards that make up a hand value out of the cards it was
+	 * evaluated from. The cards are put in <code>bestCards</code> least
+	 * important first, in the same order <code>FinalHandChecker</code>
+	 * has always used for its winning cards.
+	 * @param value the hand value of the cards
+	 * @param cards the indexes of the 5 - 7 cards the value came from
+	 * @param offset the position of the first card in <code>cards</code>
+	 * @param length the number of cards
+	 * @param bestCards the 5 element array to fill
+	 */
+	public static void fillCards(int value, int[] cards, int offset, int length,
+			Card[] bestCards) {
+		int category = getCategory(value);
+		int suit = -1;
+		if ((category == Hand.FLUSH.ordinal()) ||
+				(category == Hand.STRAIGHT_FLUSH.ordinal())) {
+			//4 bits of count for each suit
+			int suitCounts = 0;
+			for (int i = offset; i < offset + length; i++) {
+				int s = cards[i] / Card.NUM_RANKS;
+				suitCounts += 1 << (4 * s);
+				if (((suitCounts >> (4 * s)) & 0xf) >= 5)
+					suit = s;
+			}
+		}
+		
+		long used = 0L;
+		for (int i = 0; i < 5; i++) {
+			int rank = getRank(value, i);
+			for (int j = offset; j < offset + length; j++) {
+				int card = cards[j];
+				if ((card % Card.NUM_RANKS == rank) && ((used & (1L << card)) == 0) &&
+						((suit < 0) || (card / Card.NUM_RANKS == suit))) {
+					used |= 1L << card;
+					bestCards[4 - i] = Card.getCard(card);
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates a string description of a hand value.
+	 * @param value the hand value
+	 * @return the hand and its card values
+	 */
+	public static String toString(int value) {
+		StringBuilder sb = new StringBuilder(getHand(value).toString());
+		for (int i = 0; i < 5; i++) {
+			sb.append(i == 0 ? " " : ",");
+			sb.append(Number.values()[getRank(value, i)]);
+		}
+		return sb.toString();
+	}
+
+}
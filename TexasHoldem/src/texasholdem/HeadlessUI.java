@@ -0,0 +1,58 @@
+package texasholdem;
+
+import javax.swing.ImageIcon;
+
+/**
+ * A user interface that shows nothing, for games played without a
+ * display. Subclasses can override the methods they are interested in.
+ * @author John Wardell
+ *
+ */
+public class HeadlessUI implements HoldemUI {
+
+	@Override
+	public void updateChipDisplays(int index, int pot, int chips, int lastBet) {}
+
+	@Override
+	public void updateCommCards(Card[] cards) {}
+
+	@Override
+	public void takeUserTurn() {}
+
+	@Override
+	public void setPlayerCards(ImageIcon[] cardImages, int index) {}
+
+	@Override
+	public void setIndicator(int index, ImageIcon image) {}
+
+	@Override
+	public void showWinnerDialog(String winner, int winnings, Hand hand) {}
+
+	@Override
+	public void phaseOver() {}
+
+	@Override
+	public void handOver() {}
+
+	@Override
+	public void updateAmountToSee(int toSee) {}
+
+	@Override
+	public void updatePlayingDisplay(boolean b, int index) {}
+
+	@Override
+	public void updateActiveDisplay(boolean b, int index) {}
+
+	@Override
+	public void updateMinBet(int minBet) {}
+
+	@Override
+	public void gameOver(boolean b) {}
+
+	@Override
+	public void terminateFrame() {}
+
+	@Override
+	public void showTieDialog() {}
+
+}
@@ -1,18 +1,27 @@
 package texasholdem;
 
 import java.awt.EventQueue;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
-import javax.swing.Timer;
 /**
  * This class controls the entire poker game. It is the only part
  * of the underlying game that interacts with the user interface.
+ * <p>
+ * A headless game, made with <code>HoldemManager(int, Random)</code>, has
+ * only computer players and no user interface, timers or images. Each
+ * call to <code>playHand</code> plays a whole hand at once, and the blinds
+ * go up every so many hands instead of every five minutes, so bots can be
+ * studied offline as fast as they can decide.
+ * <p>
+ * What happens in the game is published as <code>GameEvent</code>s to an
+ * <code>EventRing</code>, which any number of readers, such as the frame,
+ * loggers or network sessions, can follow on their own threads without
+ * ever holding the game up. Chip changes reach the user interface this
+ * way rather than through calls made in the middle of the betting.
  * 
  * @author John Wardell
  *
@@ -23,34 +32,55 @@ public class HoldemManager {
 	
 	private Player[] players;
 	private Deck deck = new Deck();
-	private Card[] commCards = new Card[5];
+	private Card[] commCards = new Card[Deck.BOARD_SIZE];
+	private Card[] dealtCards = new Card[Deck.dealSize(Deck.MAX_PLAYERS)];
 	
 	private Random random = new Random();
-	private Name[] names = Name.values();
-	private int maxName = names.length - 1;
 	private int minBet = 10;
-	private Timer blindTimer;
-	private Timer turnTimer;
+	private TimingWheel.Timeout blindTimeout;
+	private TimingWheel.Timeout turnTimeout;
+	private int turnSerial = 0;
 	/**
 	 * 5 minutes in milliseconds
 	 */
 	public static int FIVE_MINUTES = 5 * 60 * 1000;
+	/**
+	 * The pause after a computer player's turn, in milliseconds.
+	 */
+	public static final int TURN_DELAY = 750;
 	private int pendingMinBet = 10;
 	private int takeTurnsCount = -1;
-	private boolean allIn = false;
-	private int allInAmt = 0;
-	private ImageIcon[] cardBacks = {PokerTools.CARD_BACK, PokerTools.CARD_BACK};
-	private ImageIcon[] emptyCards = {PokerTools.NO_CARD, PokerTools.NO_CARD};
+	private SidePots pots;
+	private int[] handValues;
+	private int[] potWinners;
+	private int[] potShares;
+	private ImageIcon[] cardBacks;
+	private ImageIcon[] emptyCards;
 	private ImageIcon[] cardImages = new ImageIcon[2];
 	private int userIndex = 0;
 	private Phase phase = Phase.PREFLOP;
-	private FinalHandChecker fhc;
+	private ShowdownEvaluator showdownEvaluator;
 	private HandAnalyzer ha;
 	private HoldemUI frame;
-	private LinkedList<Integer> winner = new LinkedList<>();
 	private int turnIndex = 0;
 	private int smallBlindIndex = 0;
 	private int bigBlindIndex = 1;
+	private boolean headless = false;
+	private boolean turnPending = false;
+	private boolean phasePending = false;
+	private boolean userTurnPending = false;
+	private boolean handOver = true;
+	private boolean gameOver = false;
+	private int handsPlayed = 0;
+	private int handsPerBlindLevel = 0;
+	private int blindLevel = 0;
+	private int pendingBlindLevel = 0;
+	private boolean recording = false;
+	private HandRecord record;
+	private HandRecord lastRecord;
+	private HandRecord script;
+	private int scriptAction;
+	private EventRing events;
 	
 	private int chips = 500; //set to 500
 	/**
@@ -60,41 +90,308 @@ public class HoldemManager {
 	 * @param frame the game's user interface.
 	 */
 	public HoldemManager(int numPlayers, String name, HoldemUI frame) {
-		players = new Player[numPlayers];
 		this.frame = frame;
-		fhc = new FinalHandChecker();
-		ha = new HandAnalyzer(this, fhc);
-		
-		//set bot players
-		for (int i = 0; i < players.length; i++) {
-			players[i] = new Player(chips, generateName());
-			players[i].setBot(true);
-			players[i].setPersonality(random.nextInt(10));
-		}
+		cardBacks = new ImageIcon[] {PokerTools.CARD_BACK, PokerTools.CARD_BACK};
+		emptyCards = new ImageIcon[] {PokerTools.NO_CARD, PokerTools.NO_CARD};
+		showdownEvaluator = ShowdownEvaluator.getDefault();
+		ha = new HandAnalyzer(this, HandEvaluators.getDefault());
+		ha.setEquityCalculator(EquityCalculator.getDefault());
+		createBots(numPlayers);
 		
 		//set user player
 		userIndex = random.nextInt(numPlayers);
 		players[userIndex].setName(name);
 		players[userIndex].setBot(false);
 		//set to 5 minutes!!!!!
-		blindTimer = new Timer(FIVE_MINUTES, new ActionListener() {
-			public void actionPerformed(ActionEvent event) {
-				increasePendingMinBet();
-			}
-		});
-		blindTimer.start();
+		scheduleBlindIncrease();
 		
-		turnTimer = new Timer(750, new ActionListener() {
-			public void actionPerformed(ActionEvent event) {
-				startTurn();
+	}
+	/**
+	 * Wraps a task so the timing wheel hands it to the Swing event
+	 * thread, which the game runs on, instead of running it itself.
+	 * @param task the task.
+	 * @return the wrapped task.
+	 */
+	private static Runnable onEventThread(final Runnable task) {
+		return new Runnable() {
+			public void run() {
+				EventQueue.invokeLater(task);
 			}
-		});
-		
+		};
+	}
+	/**
+	 * Raises the blinds in 5 minutes, and again every 5 minutes after.
+	 */
+	private void scheduleBlindIncrease() {
+		blindTimeout = TimingWheel.getShared().schedule(onEventThread(new Runnable() {
+			public void run() {
+				if (blindTimeout != null) {
+					raiseBlinds();
+					scheduleBlindIncrease();
+				}
+			}
+		}), FIVE_MINUTES, TimeUnit.MILLISECONDS);
+	}
+	/**
+	 * Starts the next turn after the pause between computer players' turns,
+	 * unless a turn is started some other way first.
+	 */
+	private void scheduleTurn() {
+		final int turn = ++turnSerial;
+		turnTimeout = TimingWheel.getShared().schedule(onEventThread(new Runnable() {
+			public void run() {
+				if (turn == turnSerial) {
+					startTurn();
+				}
+			}
+		}), TURN_DELAY, TimeUnit.MILLISECONDS);
+	}
+	/**
+	 * Cancels the game's timers, for good.
+	 */
+	private void stopTimers() {
+		if (blindTimeout != null) {
+			blindTimeout.cancel();
+			blindTimeout = null;
+		}
+		if (turnTimeout != null) {
+			turnTimeout.cancel();
+			turnTimeout = null;
+		}
+		turnSerial++;
+	}
+	/**
+	 * Constructs a headless game of computer players. The bots score hands
+	 * with the card heuristics and the preflop table; the hand analyzer
+	 * can be given an <code>EquityCalculator</code> at the cost of speed.
+	 * @param numPlayers the total number of players.
+	 * @param random the source of every random choice in the game, seed it
+	 * to play the same game again.
+	 */
+	public HoldemManager(int numPlayers, Random random) {
+		this.random = random;
+		deck = new Deck(random);
+		headless = true;
+		userIndex = -1;
+		frame = new HeadlessUI();
+		showdownEvaluator = ShowdownEvaluator.getDefault();
+		ha = new HandAnalyzer(this, HandEvaluators.getDefault(), random);
+		createBots(numPlayers);
 	}
 	/**
 	 * This is not the constructor used in the game.
 	 */
 	public HoldemManager() { }
+	/**
+	 * Creates the players, all computer players to begin with.
+	 * @param numPlayers the total number of players.
+	 */
+	private void createBots(int numPlayers) {
+		Name[] names = Name.values();
+		players = new Player[numPlayers];
+		for (int i = 0; i < players.length; i++) {
+			players[i] = new Player(chips, generateName(names, names.length - 1 - i));
+			players[i].setBot(true);
+			players[i].setPersonality(random.nextInt(10));
+		}
+		pots = new SidePots(numPlayers);
+		handValues = new int[numPlayers];
+		potWinners = new int[numPlayers];
+		potShares = new int[numPlayers];
+	}
+	/**
+	 * Plays a whole hand of a headless game, from the deal to the
+	 * payout, without waiting between turns.
+	 * @throws IllegalStateException if the game isn't headless or is over.
+	 */
+	public void playHand() {
+		if (!headless || gameOver) {
+			throw new IllegalStateException("Only a headless game that isn't over can be played");
+		}
+		startHand();
+		playPending();
+		if (!handOver) {
+			throw new IllegalStateException("A headless hand is waiting for a user");
+		}
+	}
+	/**
+	 * Plays a headless game that has users seated until it is a user's
+	 * turn or the hand is over, starting a new hand if the last one is over.
+	 * The user's bet is given to <code>acceptUserBet</code>, after which
+	 * this carries on with the hand.
+	 * @throws IllegalStateException if the game isn't headless or is over.
+	 */
+	public void playUntilUser() {
+		if (!headless || gameOver) {
+			throw new IllegalStateException("Only a headless game that isn't over can be played");
+		}
+		if (userTurnPending) {
+			return;
+		}
+		if (handOver) {
+			startHand();
+		}
+		playPending();
+	}
+	/**
+	 * Takes the turns and phases a headless hand has waiting until the
+	 * hand is over or it waits for a user.
+	 */
+	private void playPending() {
+		while (!handOver) {
+			if (turnPending) {
+				turnPending = false;
+				startTurn();
+			}
+			else if (phasePending) {
+				phasePending = false;
+				startNextPhase();
+			}
+			else {
+				return;
+			}
+		}
+	}
+	/**
+	 * Seats a user in place of a bot in a headless game, e.g. a player
+	 * connected over the network.
+	 * @param index the seat.
+	 * @param name the user's name.
+	 */
+	public void seatUser(int index, String name) {
+		if (!headless) {
+			throw new IllegalStateException("Users can only be seated in a headless game");
+		}
+		players[index].setName(name);
+		players[index].setBot(false);
+	}
+	/**
+	 * 
+	 * @return true if the game is waiting for a user to bet.
+	 */
+	public boolean isUserTurn() {
+		return userTurnPending;
+	}
+	/**
+	 * Sets how many hands are played at each blind level of a headless game.
+	 * @param hands the number of hands, 0 to keep the blinds the same.
+	 */
+	public void setHandsPerBlindLevel(int hands) {
+		handsPerBlindLevel = hands;
+	}
+	/**
+	 * Gets the ring this game publishes its events to, making one of
+	 * the default capacity if it has none.
+	 * @return the event ring.
+	 */
+	public EventRing getEvents() {
+		if (events == null) {
+			events = new EventRing();
+		}
+		return events;
+	}
+	/**
+	 * Sets the ring this game publishes its events to, e.g. so one ring
+	 * follows a table from game to game. The game must be the ring's
+	 * only publisher.
+	 * @param events the event ring, or null to publish no events.
+	 */
+	public void setEvents(EventRing events) {
+		this.events = events;
+	}
+	/**
+	 * Publishes an event if anyone can be listening.
+	 */
+	private void publish(int type, int seat, int a, int b) {
+		if (events != null) {
+			events.publish(GameEvent.make(type, seat, a, b));
+		}
+	}
+	/**
+	 * Sets whether each hand is recorded so it can be played again
+	 * by <code>HandReplayer</code>.
+	 * @param recording true to record hands.
+	 */
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+	/**
+	 * 
+	 * @return the record of the last hand finished while recording,
+	 * or null if there isn't one.
+	 */
+	public HandRecord getLastRecord() {
+		return lastRecord;
+	}
+	/**
+	 * Sets a headless game up as it was before a recorded hand, so
+	 * <code>playHand</code> plays the hand again with the recorded cards
+	 * and bets instead of dealing and asking the bots.
+	 * @param hand the recorded hand.
+	 */
+	void setScript(HandRecord hand) {
+		if (!headless || (hand.getNumPlayers() != players.length)) {
+			throw new IllegalArgumentException("The hand needs a headless game of " +
+					hand.getNumPlayers() + " players");
+		}
+		script = hand;
+		scriptAction = 0;
+		gameOver = false;
+		handsPlayed = hand.getHand() - 1;
+		handsPerBlindLevel = 0;
+		pendingMinBet = hand.getMinBet();
+		pendingBlindLevel = hand.getBlindLevel();
+		smallBlindIndex = hand.getSmallBlindIndex();
+		bigBlindIndex = hand.getBigBlindIndex();
+		for (int i = 0; i < players.length; i++) {
+			players[i].setChips(hand.getStartChips(i));
+			players[i].setActive(hand.isActive(i));
+			players[i].setPlaying(false);
+		}
+	}
+	/**
+	 * Gets the next bet of a recorded hand being played again.
+	 * @param index the player whose turn it is.
+	 * @return the recorded bet.
+	 * @throws IllegalStateException if the game has gone a different way.
+	 */
+	private int nextScriptedBet(int index) {
+		if ((scriptAction == script.getNumActions()) ||
+				(script.getActionSeat(scriptAction) != index)) {
+			throw new IllegalStateException("Hand " + script.getHand() + " went a different way at bet " +
+					scriptAction + ": player " + index + "'s turn");
+		}
+		return script.getActionBet(scriptAction++);
+	}
+	/**
+	 * 
+	 * @return the number of hands started in this game.
+	 */
+	public int getHandsPlayed() {
+		return handsPlayed;
+	}
+	/**
+	 * 
+	 * @return the blind level of the current hand, 0 for the first.
+	 */
+	public int getBlindLevel() {
+		return blindLevel;
+	}
+	/**
+	 * 
+	 * @return true if fewer than 2 players have chips left, or the
+	 * user player has none.
+	 */
+	public boolean isGameOver() {
+		return gameOver;
+	}
+	/**
+	 * 
+	 * @return the hand analyzer that makes the bots' decisions.
+	 */
+	public HandAnalyzer getHandAnalyzer() {
+		return ha;
+	}
 	/**
 	 * Gets the cards of the player whose turn it is.
 	 * @return current player's cards.
@@ -102,6 +399,13 @@ public class HoldemManager {
 	public Card[] getPlayerCards() {
 		return players[turnIndex].getCards();
 	}
+	/**
+	 * Gets the index of the player whose turn it is.
+	 * @return current player's index in the player array.
+	 */
+	public int getTurnIndex() {
+		return turnIndex;
+	}
 	/**
 	 * Gets the chips of the player whose turn it is.
 	 * @return current player's chips.
@@ -190,7 +494,7 @@ public class HoldemManager {
 		return getBet(turnIndex);
 	}
 	/**
-	 * Finds the winner, calls distribute winnings.
+	 * Scores the hands of the players still playing, calls distribute winnings.
 	 */
 	private void determineWinner() {
 		int numPlaying = getPlayingPlayers();
@@ -200,10 +504,12 @@ public class HoldemManager {
 		Card[][] hands = new Card[numPlaying][2];
 		for (int i = 0; i < players.length; i++) {
 			if (players[i].isPlaying()) {
-				Card[] pCards = players[i].getCards();
-				cardImages[0] = PokerTools.getCardImage(pCards[0]);
-				cardImages[1] = PokerTools.getCardImage(pCards[1]);
-				frame.setPlayerCards(cardImages, i);
+				if (!headless) {
+					Card[] pCards = players[i].getCards();
+					cardImages[0] = PokerTools.getCardImage(pCards[0]);
+					cardImages[1] = PokerTools.getCardImage(pCards[1]);
+					frame.setPlayerCards(cardImages, i);
+				}
 				
 				numPlaying--;
 				stillPlayingIndex[numPlaying] = i;
@@ -211,31 +517,47 @@ public class HoldemManager {
 			}
 		}
 		
-		for (int i: fhc.checkAllHands(getCommCards(), hands)) {
-			winner.add(stillPlayingIndex[i]);
+		Showdown showdown = showdownEvaluator.evaluate(getCommCards(), hands);
+		for (int i = 0; i < stillPlayingIndex.length; i++) {
+			handValues[stillPlayingIndex[i]] = showdown.getValue(i);
 		}
-		distributeWinnings();	
+		distributeWinnings(handValues);	
 	}
 	/**
-	 * Gives the pot to the winner. Divides the pot as needed for a tie.
+	 * Gives each pot to the best hand that can win it, the main pot
+	 * first. Divides a pot as needed for a tie, the odd chips going to
+	 * the winners first round the table from the small blind.
+	 * @param values the hand value of each player, only read for
+	 * players still playing.
 	 */
-	private void distributeWinnings() {
-		int winnings = getPot();
-		winnings /= winner.size();
-		if (winner.size() > 1) {
-			frame.showTieDialog();
+	private void distributeWinnings(int[] values) {
+		for (int pot = 0; pot < pots.getNumPots(); pot++) {
+			int numWinners = pots.split(pot, values, smallBlindIndex, potWinners, potShares);
+			Hand hand = HandValue.getHand(values[potWinners[0]]);
+			if (numWinners > 1) {
+				frame.showTieDialog();
+			}
+			for (int k = 0; k < numWinners; k++) {
+				int i = potWinners[k];
+				int winnings = potShares[k];
+				players[i].setChips(players[i].getChips() + winnings);
+				publish(GameEvent.SHOWDOWN, i, hand.ordinal(), numWinners);
+				publish(GameEvent.AWARD, i, winnings, players[i].getChips());
+				frame.showWinnerDialog(players[i].getName(), winnings, hand);
+			}
 		}
-		for (int i: winner) {
-			players[i].setChips(players[i].getChips() + winnings);
-			frame.updateChipDisplays(i, 0, players[i].getChips(), 0);
-			frame.showWinnerDialog(players[i].getName(), winnings, fhc.getWinningHand());
-			
+		for (int i = 0; i < players.length; i++) {
+			Player p = players[i];
+			if (p.isActive() && (p.getChips() <= 0) && (p.getBustHand() < 0)) {
+				p.setBust(handsPlayed, blindLevel);
+				publish(GameEvent.BUST, i, handsPlayed, blindLevel);
+			}
 		}
-		winner.clear();
-		if (players[userIndex].getChips() <= 0) {
+		if (!headless && (players[userIndex].getChips() <= 0)) {
+			gameOver = true;
 			frame.gameOver(false);
 		}
-		else if (players[userIndex].getChips() > 0) {
+		else {
 			int survivors = 0;
 			for(int i = 0; i < players.length; i++) {
 				if (players[i].getChips() > 0) {
@@ -243,6 +565,7 @@ public class HoldemManager {
 				}
 			}
 			if (survivors < 2) {
+				gameOver = true;
 				frame.gameOver(true);
 			}
 		}
@@ -295,6 +618,7 @@ public class HoldemManager {
 	 * Restarts the entire program to play a new game.
 	 */
 	public void startNewGame() {
+		stopTimers();
 		frame.terminateFrame();
 		EventQueue.invokeLater(new Runnable() {
 			public void run() {
@@ -307,19 +631,46 @@ public class HoldemManager {
 	/**
 	 * Starts a new hand of cards, deals the cards to players, and makes
 	 * the big blind and small blind bets.
-	 * Resets allIn, allInAmt, takeTurnsCount, minimum bet, and blind indexes.
+	 * Resets the pots, takeTurnsCount, minimum bet, and blind indexes.
 	 */
 	public void startHand() {
 		
+		handOver = false;
+		handsPlayed++;
+		if (headless && (handsPerBlindLevel > 0) && (handsPlayed > 1) &&
+				((handsPlayed - 1) % handsPerBlindLevel == 0)) {
+			increasePendingMinBet();
+		}
 		phase = Phase.PREFLOP;
 		setBets();
-		deck.fillDeck();
-		allIn = false;
-		allInAmt = 0;
+		if (recording) {
+			record = new HandRecord(handsPlayed, minBet, blindLevel, smallBlindIndex,
+					bigBlindIndex, players);
+		}
+		ha.startHand();
+		publish(GameEvent.HAND_START, 0, handsPlayed, minBet);
 		
-		for (int i = 0; i < commCards.length; i++) {
-			commCards[i] = deck.drawCard();
+		int numDealt = 0;
+		for (Player p: players) {
+			if (p.isActive() && (p.getChips() > 0)) numDealt++;
+		}
+		if (script != null) {
+			if (script.getNumDealt() != Deck.dealSize(numDealt)) {
+				throw new IllegalStateException("Hand " + script.getHand() + " was dealt to " +
+						((script.getNumDealt() - Deck.BOARD_SIZE) / 2) + " players, not " + numDealt);
+			}
+			for (int i = 0; i < script.getNumDealt(); i++) {
+				dealtCards[i] = Card.getCard(script.getDealt(i));
+			}
+		}
+		else {
+			deck.dealHand(numDealt, dealtCards);
+		}
+		if (record != null) {
+			record.setDealt(dealtCards, Deck.dealSize(numDealt));
 		}
+		System.arraycopy(dealtCards, 0, commCards, 0, Deck.BOARD_SIZE);
+		int nextCard = Deck.BOARD_SIZE;
 		
 		frame.updateCommCards(getCommCards());
 		frame.updateMinBet(minBet);
@@ -330,32 +681,42 @@ public class HoldemManager {
 				if (players[m].getChips() == 0) {
 					players[m].setActive(false);
 					players[m].setPlaying(false);
-					frame.setIndicator(m, PokerTools.BLACK_BOX);
-					frame.updatePlayingDisplay(false, m);
-					frame.updateActiveDisplay(false, m);
-					frame.setPlayerCards(emptyCards, m);
+					if (!headless) {
+						frame.setIndicator(m, PokerTools.BLACK_BOX);
+						frame.updatePlayingDisplay(false, m);
+						frame.updateActiveDisplay(false, m);
+						frame.setPlayerCards(emptyCards, m);
+					}
 				}
 				else {
-					Card[] hand = {deck.drawCard(), deck.drawCard()};
-					players[m].setCards(hand);
+					players[m].setCards(dealtCards[nextCard], dealtCards[nextCard + 1]);
+					publish(GameEvent.DEAL, m, dealtCards[nextCard].getIndex(),
+							dealtCards[nextCard + 1].getIndex());
+					nextCard += 2;
 					players[m].setAllIn(false);
 					players[m].setPlaying(true);
-					frame.setIndicator(m, PokerTools.EMPTY_BOX);
-					frame.updatePlayingDisplay(true, m);
-					if (players[m].isBot()) {
-						frame.setPlayerCards(cardBacks, m);
-					}
-					else {
-						Card[] pCards = players[m].getCards();
-						cardImages[0] = PokerTools.getCardImage(pCards[0]);
-						cardImages[1] = PokerTools.getCardImage(pCards[1]);
-						frame.setPlayerCards(cardImages, m);
+					if (!headless) {
+						frame.setIndicator(m, PokerTools.EMPTY_BOX);
+						frame.updatePlayingDisplay(true, m);
+						if (players[m].isBot()) {
+							frame.setPlayerCards(cardBacks, m);
+						}
+						else {
+							Card[] pCards = players[m].getCards();
+							cardImages[0] = PokerTools.getCardImage(pCards[0]);
+							cardImages[1] = PokerTools.getCardImage(pCards[1]);
+							frame.setPlayerCards(cardImages, m);
+						}
 					}
 				}
 			}
 		}
-		
-		
+		pots.reset();
+		for (int m = 0; m < players.length; m++) {
+			if (!players[m].isPlaying()) {
+				pots.fold(m);
+			}
+		}
 		
 		incrementBlindIndexes();
 		//blind bets
@@ -379,7 +740,13 @@ public class HoldemManager {
 	 * for human and computer players.
 	 */
 	public void startTurn() {
-		turnTimer.stop();
+		if (!headless) {
+			turnSerial++;
+			if (turnTimeout != null) {
+				turnTimeout.cancel();
+				turnTimeout = null;
+			}
+		}
 		finishLastTurn();
 		//the first round of betting.
 		if (takeTurnsCount < players.length) {
@@ -391,31 +758,79 @@ public class HoldemManager {
 		}
 		//wrap up the hand
 		else {
+			returnUncalledBet();
 			if ((phase == Phase.RIVER) || (getPlayingPlayers() <= 1)){
 				determineWinner();
-				frame.handOver();
+				endHand();
 			}
 			else {
-				frame.phaseOver();
+				endPhase();
 			}
 		}
 	}
 	/**
-	 * Checks if player is playing and takes the bet.
+	 * Tells the user interface the phase is over. A headless game
+	 * goes straight on to the next phase.
+	 */
+	private void endPhase() {
+		if (headless) {
+			phasePending = true;
+		}
+		frame.phaseOver();
+	}
+	/**
+	 * Tells the user interface the hand is over.
+	 */
+	private void endHand() {
+		handOver = true;
+		int survivors = 0;
+		for (Player p: players) {
+			if (p.getChips() > 0) survivors++;
+		}
+		publish(GameEvent.HAND_END, 0, handsPlayed, survivors);
+		if (record != null) {
+			record.finish(players);
+			lastRecord = record;
+			record = null;
+		}
+		if (script != null) {
+			if (scriptAction != script.getNumActions()) {
+				throw new IllegalStateException("Hand " + script.getHand() + " ended after " +
+						scriptAction + " of " + script.getNumActions() + " bets");
+			}
+			script = null;
+		}
+		frame.handOver();
+	}
+	/**
+	 * Checks if player can bet and takes the bet. A player all in has
+	 * nothing left to bet, and nor does the last player who isn't when
+	 * they have matched the high bet.
 	 */
 	private void playingTurn() {
 		
-		if (players[turnIndex].isPlaying()) {
-			frame.setIndicator(turnIndex, PokerTools.BLACK_ARROW);
+		if (players[turnIndex].isPlaying() && !players[turnIndex].isAllIn() &&
+				((getBettingPlayers() > 1) || (getPlayerBet() < getHighBet()))) {
+			if (!headless) {
+				frame.setIndicator(turnIndex, PokerTools.BLACK_ARROW);
+			}
 			if (!players[turnIndex].isBot()) {
+				userTurnPending = true;
 				frame.updateAmountToSee(getAmtToSee());
 				frame.takeUserTurn();
 			}
 			else {
-				setPhaseBet(turnIndex, ha.generateBotBet());
-				frame.updateChipDisplays(turnIndex, getPot(),
-						players[turnIndex].getChips(), players[turnIndex].getBet());
-				turnTimer.start();
+				int bet = (script != null) ? nextScriptedBet(turnIndex) : ha.generateBotBet();
+				if (record != null) {
+					record.addAction(turnIndex, bet);
+				}
+				setPhaseBet(turnIndex, bet);
+				if (headless) {
+					turnPending = true;
+				}
+				else {
+					scheduleTurn();
+				}
 				
 			}
 		}
@@ -431,11 +846,13 @@ public class HoldemManager {
 		
 		
 		
-		if (players[turnIndex].isPlaying()) {
-			frame.setIndicator(turnIndex, PokerTools.EMPTY_BOX);
-		}
-		else {
-			frame.setIndicator(turnIndex, PokerTools.RED_X);
+		if (!headless) {
+			if (players[turnIndex].isPlaying()) {
+				frame.setIndicator(turnIndex, PokerTools.EMPTY_BOX);
+			}
+			else {
+				frame.setIndicator(turnIndex, PokerTools.RED_X);
+			}
 		}
 		turnIndex = (turnIndex + 1) % players.length;
 		takeTurnsCount++;
@@ -446,30 +863,32 @@ public class HoldemManager {
 	 * @param userBet the amount the user player would like to bet.
 	 */
 	public void acceptUserBet(int userBet) {
+		userTurnPending = false;
+		if (record != null) {
+			record.addAction(turnIndex, userBet);
+		}
 		setPhaseBet(turnIndex, userBet);
-		frame.updateChipDisplays(turnIndex, getPot(), players[turnIndex].getChips(),
-				players[turnIndex].getBet());
 		startTurn();
 	}
 	/**
 	 * Called from the user interface to see the next cards.
 	 * Increments the phase, resets turnIndex, resets takeTurnsCount,
-	 * and checks for an all-in state.
+	 * and skips the betting once fewer than 2 players can bet.
 	 */
 	public void startNextPhase() {
 		int phaseIndex = (phase.ordinal() + 1) % Phase.values().length;
 		phase = Phase.values()[phaseIndex];
-		frame.updateCommCards(getCommCards());
+		Card[] shown = getCommCards();
+		publish(GameEvent.PHASE, 0, phase.ordinal(), shown.length);
+		frame.updateCommCards(shown);
 		turnIndex = bigBlindIndex;
-		if (allIn) {
-			allInAmt = 0;
-			frame.updateCommCards(getCommCards());
+		if (getBettingPlayers() < 2) {
 			if ((phase == Phase.RIVER) || (getPlayingPlayers() <= 1)){
 				determineWinner();
-				frame.handOver();
+				endHand();
 			}
 			else {
-				frame.phaseOver();
+				endPhase();
 			}
 		}
 		else {
@@ -488,20 +907,36 @@ public class HoldemManager {
 		}
 		return pot;
 	}
+	/**
+	 * Gets the main pot and side pots of the hand being played, or of
+	 * the last hand once it is over. They must not be changed.
+	 * @return the pots.
+	 */
+	public SidePots getPots() {
+		return pots;
+	}
 	/**
 	 * Adjusts the minimum bet up periodically.
-	 * Resets allIn to false.
 	 */
 	private void setBets() {
 		minBet = pendingMinBet;
-		allIn = false;
+		blindLevel = pendingBlindLevel;
 		
 	}
 	/**
-	 * Called by the bet timer to set the amount of the next
+	 * Raises the big blind and minimum bet, from the next hand on.
+	 * A headless game can be given a clock this way instead of raising
+	 * the blinds every so many hands.
+	 */
+	public void raiseBlinds() {
+		increasePendingMinBet();
+	}
+	/**
+	 * Called by the blind timer to set the amount of the next
 	 * big blind and minimum bet.
 	 */
 	private void increasePendingMinBet() {
+		pendingBlindLevel++;
 		if (pendingMinBet < 40) {
 		    pendingMinBet *= 2;
 		}
@@ -521,8 +956,9 @@ public class HoldemManager {
 		
 		if (getPlayingPlayers() <= 1) return true; 
 		
+		int highBet = getHighBet();
 		for (int i = 0; i < players.length; i++) {
-			if(players[i].isPlaying() && (getBet(i) != getHighBet())) {
+			if(players[i].isPlaying() && !players[i].isAllIn() && (getBet(i) != highBet)) {
 				return false;
 			}
 		}
@@ -538,7 +974,8 @@ public class HoldemManager {
 	}
 	/**
 	 * Accepts a bet amount and validates the amount against player's chips,
-	 * checks for all-in status, updates player's chips and bet.
+	 * checks for all-in status, updates player's chips and bet, and adds
+	 * the bet to the pots.
 	 * Bet may be reduced to a legal amount automatically.
 	 * @param index the player to take the bet from.
 	 * @param bet the requested amount to bet.
@@ -546,69 +983,62 @@ public class HoldemManager {
 	private void setPhaseBet(int index, int bet) {
 		if (bet == PokerTools.FOLD) {
 			players[index].setPlaying(false);
+			pots.fold(index);
+			publish(GameEvent.FOLD, index, 0, 0);
 			frame.updatePlayingDisplay(false, index);
 		}
 		else {
-			if (allIn) {
-				int total = players[index].getChips() + players[index].getBet();
-				if (allInAmt > total) {
-					allInAmt = total;
-					returnExcessBets();
-				}
-				bet = allInAmt - players[index].getBet();
-			}
-			
-			else if (players[index].getChips() <= bet) {
+			if (players[index].getChips() <= bet) {
 				bet = players[index].getChips();
 				players[index].setAllIn(true);
-				allInAmt = players[index].getChips() + players[index].getBet();
-				if (bet < getAmtToSee()) {
-					returnExcessBets();
-				}
-				allIn = true;
-				
 			}
 			players[index].setChips(players[index].getChips() - bet);
 			players[index].setBet(players[index].getBet() + bet);
-		    frame.updateChipDisplays(index, getPot(), players[index].getChips(),
-		    		players[index].getBet());
-		    
+			pots.setContribution(index, players[index].getBet());
+			publish(GameEvent.BET, index, players[index].getBet(), players[index].getChips());
 		}
 	}
 	/**
-	 * Called in case someone goes all in after other players have bet more than
-	 * the all in players amount of chips.
-	 * Gives back the extra bet amounts immediately. 
+	 * Called when a round of betting is over. Gives back the part of the
+	 * high bet nobody else matched, e.g. when a raise is folded to or the
+	 * other players all in have less, so it isn't left in a pot.
 	 */
-	private void returnExcessBets() {
-		for (int i = 0; i < players.length; i++) {
-			if (players[i].isPlaying() &&
-					(players[i].getBet() > allInAmt)) {
-				int excess = players[i].getBet() - allInAmt;
-				players[i].setChips(players[i].getChips() + excess);
-				
-				players[i].setBet(allInAmt);
-				frame.updateChipDisplays(i, getPot(), players[i].getChips(), allInAmt);
-			}
-			else if (((i == bigBlindIndex) || (i == smallBlindIndex)) &&
-					(players[i].getBet() > allInAmt)) {
-				int excess = players[i].getBet() - allInAmt;
-				players[i].setChips(players[i].getChips() + excess);
-				
-				players[i].setBet(allInAmt);
-				frame.updateChipDisplays(i, getPot(), players[i].getChips(), allInAmt);
+	private void returnUncalledBet() {
+		int uncalled = pots.getUncalled();
+		int i = pots.getTopSeat();
+		if ((uncalled > 0) && players[i].isPlaying()) {
+			players[i].setChips(players[i].getChips() + uncalled);
+			players[i].setBet(players[i].getBet() - uncalled);
+			players[i].setAllIn(false);
+			pots.setContribution(i, players[i].getBet());
+			publish(GameEvent.REFUND, i, players[i].getBet(), players[i].getChips());
+		}
+	}
+	/**
+	 * Counts the players still playing who have chips left to bet.
+	 * @return the number of players who can bet.
+	 */
+	private int getBettingPlayers() {
+		int bettingPlayers = 0;
+		for (Player p: players) {
+			if (p.isPlaying() && !p.isAllIn()) {
+				bettingPlayers++;
 			}
 		}
+		return bettingPlayers;
 	}
 	/**
-	 * Picks a name from the Name enumeration at random.
+	 * Picks a name from the Name enumeration at random. The names
+	 * are only needed while the players are made, so a game doesn't
+	 * keep its own copy of them.
+	 * @param names the names left, up to <code>maxName</code>.
+	 * @param maxName the index of the last name left.
 	 * @return a random name.
 	 */
-	private String generateName() {
+	private String generateName(Name[] names, int maxName) {
 		int index = random.nextInt(maxName);
 		String name = names[index].toString();
 		names[index] = names[maxName];
-		maxName--;
 		return name;
 	}
 	/**
@@ -665,9 +1095,41 @@ public class HoldemManager {
 		return false;
 	}
 	
+	/**
+	 * The main method is for testing purposes only.
+	 * Plays headless games of 6 bots and reports the hands played a second,
+	 * the hands with side pots and any hand that didn't keep every chip.
+	 * @param args
+	 */
 	public static void main(String[] args) {
-		
-		
+		Random seeds = new Random(1);
+		for (int round = 0; round < 3; round++) {
+			long hands = 0;
+			long sidePots = 0;
+			long lost = 0;
+			long start = System.nanoTime();
+			for (int game = 0; game < 2000; game++) {
+				HoldemManager hm = new HoldemManager(6, new Random(seeds.nextLong()));
+				hm.setHandsPerBlindLevel(20);
+				while (!hm.isGameOver()) {
+					hm.playHand();
+					int total = 0;
+					for (Player p: hm.getPlayers()) {
+						total += p.getChips();
+					}
+					if (total != hm.getNumPlayers() * hm.chips) {
+						lost++;
+					}
+					if (hm.getPots().getNumPots() > 1) {
+						sidePots++;
+					}
+				}
+				hands += hm.getHandsPlayed();
+			}
+			long nanos = System.nanoTime() - start;
+			System.out.println(hands + " hands, " + (hands * 1000000000L / nanos) +
+					" hands a second, " + sidePots + " with side pots, " + lost + " didn't keep every chip");
+		}
 	}
 	
 	
@@ -10,8 +10,10 @@ import javax.swing.ImageIcon;
  */
 public interface HoldemUI {
 	/**
-	 * Updates the pot, chips, and bet. Should be called on 
-	 * each turn taken.
+	 * Updates the pot, chips, and bet. The game no longer calls this
+	 * while betting; a user interface follows the <code>BET</code>,
+	 * <code>REFUND</code> and <code>AWARD</code> events in the game's
+	 * <code>EventRing</code> instead.
 	 * @param index the index of the player to work on.
 	 * @param pot the current pot.
 	 * @param chips the chips of the current player.
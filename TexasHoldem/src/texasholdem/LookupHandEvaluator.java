@@ -0,0 +1,261 @@
+package texasholdem;
+
+import java.util.Arrays;
+
+/**
+ * A table driven 7 card <code>HandEvaluator</code>.
+ * The table is a state graph: every node stands for a set of cards seen
+ * so far and holds the next node for each of the 52 cards, so a hand is
+ * evaluated with one array lookup per card. Nodes after 5 and 6 cards
+ * also hold the value of those cards, and the last lookup of a 7 card
+ * hand gives its value directly.
+ * <p>
+ * To keep the graph small, a node only remembers the suit of a card while
+ * that suit could still make a flush by the seventh card. The table
+ * takes about 130 MB and a few seconds to build, and is built the first
+ * time <code>getInstance</code> is called. After that the evaluator holds
+ * no state, so the single instance can be shared between threads.
+ * @author John Wardell
+ *
+ */
+public class LookupHandEvaluator implements HandEvaluator {
+	
+	/**
+	 * The number of table entries for each node, the 52 next
+	 * nodes and the value of the cards so far.
+	 */
+	static final int NODE_SIZE = Card.DECK_SIZE + 1;
+	
+	private final int[] table;
+	
+	/**
+	 * Holds the single instance until it is first needed.
+	 */
+	private static class Holder {
+		static final LookupHandEvaluator INSTANCE = new LookupHandEvaluator();
+	}
+	
+	private LookupHandEvaluator() {
+		table = new TableBuilder().build();
+	}
+	
+	/**
+	 * Gets the shared evaluator, building the table on the first call.
+	 * @return the <code>LookupHandEvaluator</code>
+	 */
+	public static LookupHandEvaluator getInstance() {
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * Evaluates cards given as card indexes.
+	 * @param cards the array holding the indexes of the cards
+	 * @param offset the position of the first card in <code>cards</code>
+	 * @param length the number of cards, 5 - 7
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(int[] cards, int offset, int length) {
+		int p = 0;
+		for (int i = offset; i < offset + length; i++)
+			p = table[p + 1 + cards[i]];
+		return (length == 7) ? p : table[p];
+	}
+	
+	/**
+	 * Evaluates the cards in a <code>Card</code> array.
+	 * @param cards the 5 - 7 cards to evaluate
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(Card[] cards) {
+		int p = 0;
+		for (int i = 0; i < cards.length; i++)
+			p = table[p + 1 + cards[i].getIndex()];
+		return (cards.length == 7) ? p : table[p];
+	}
+	
+	/**
+	 * Gets the node reached from the root by no cards.
+	 * @return the root node
+	 */
+	public int rootNode() {
+		return 0;
+	}
+	
+	/**
+	 * Follows a card from a node. After the seventh card this gives the
+	 * hand value of the 7 cards instead of a node.
+	 * @param node the node of the cards so far
+	 * @param card the index of the next card
+	 * @return the next node, or the hand value after 7 cards
+	 */
+	public int nextNode(int node, int card) {
+		return table[node + 1 + card];
+	}
+	
+	/**
+	 * Gets the hand value of the cards of a 5 or 6 card node.
+	 * @param node the node of the cards
+	 * @return the hand value of the cards
+	 */
+	public int nodeValue(int node) {
+		return table[node];
+	}
+	
+	/**
+	 * Builds the state graph. Each card of a node is stored in a byte as
+	 * (value ordinal + 1) &lt;&lt; 4 | (suit ordinal + 1), with the suit
+	 * left as 0 once it can no longer make a flush, and a node's cards
+	 * are sorted and packed into a <code>long</code> id.
+	 */
+	private static class TableBuilder {
+		private long[] keys = new long[1 << 21];
+		private int[] nodes = new int[1 << 21];
+		private long[][] levels = new long[7][];
+		private int nodeCount = 0;
+		private int[] workCards = new int[7];
+		
+		/**
+		 * Finds every node, then fills in the table.
+		 * @return the finished table
+		 */
+		int[] build() {
+			levels[0] = new long[] {0L};
+			addNode(0L);
+			for (int level = 1; level < 7; level++) {
+				long[] ids = new long[1024];
+				int count = 0;
+				for (long id: levels[level - 1]) {
+					for (int card = 0; card < Card.DECK_SIZE; card++) {
+						long next = makeId(id, card, level);
+						if ((next != 0L) && (findNode(next) < 0)) {
+							addNode(next);
+							if (count == ids.length)
+								ids = Arrays.copyOf(ids, count * 2);
+							ids[count++] = next;
+						}
+					}
+				}
+				levels[level] = Arrays.copyOf(ids, count);
+			}
+			
+			int[] table = new int[nodeCount * NODE_SIZE];
+			for (int level = 0; level < 7; level++) {
+				for (long id: levels[level]) {
+					int base = findNode(id) * NODE_SIZE;
+					if (level >= 5)
+						table[base] = score(id);
+					if (level == 6) {
+						for (int card = 0; card < Card.DECK_SIZE; card++) {
+							long next = makeId(id, card, 7);
+							if (next != 0L)
+								table[base + 1 + card] = score(next);
+						}
+					}
+					else {
+						for (int card = 0; card < Card.DECK_SIZE; card++) {
+							long next = makeId(id, card, level + 1);
+							if (next != 0L)
+								table[base + 1 + card] = findNode(next) * NODE_SIZE;
+						}
+					}
+				}
+			}
+			return table;
+		}
+		
+		/**
+		 * Adds one card to a node id.
+		 * @param id the id of the node
+		 * @param card the index of the card to add
+		 * @param numCards the number of cards after adding the card
+		 * @return the id of the next node, 0 if the card can't be added
+		 */
+		long makeId(long id, int card, int numCards) {
+			int rank = card % Card.NUM_RANKS;
+			int newCard = ((rank + 1) << 4) | (card / Card.NUM_RANKS + 1);
+			int rankCount = 1;
+			int n = 0;
+			for (int i = 0; i < numCards - 1; i++) {
+				int c = (int) (id >>> (8 * i)) & 0xff;
+				if (c == newCard) return 0L;
+				if ((c >> 4) == (rank + 1)) rankCount++;
+				workCards[n++] = c;
+			}
+			if (rankCount > 4) return 0L;
+			workCards[n++] = newCard;
+			
+			//drop the suits that can't reach 5 cards any more
+			int suitCounts = 0;
+			for (int i = 0; i < n; i++)
+				suitCounts += (1 << (4 * (workCards[i] & 0xf))) & ~1;
+			for (int i = 0; i < n; i++) {
+				int suit = workCards[i] & 0xf;
+				if ((suit != 0) && (((suitCounts >> (4 * suit)) & 0xf) + 7 - n < 5))
+					workCards[i] &= 0xf0;
+			}
+			
+			Arrays.sort(workCards, 0, n);
+			long next = 0L;
+			for (int i = 0; i < n; i++)
+				next |= ((long) workCards[n - 1 - i]) << (8 * i);
+			return next;
+		}
+		
+		/**
+		 * Scores the 5 - 7 cards of a node id.
+		 * @param id the id of the node
+		 * @return the hand value of the cards
+		 */
+		int score(long id) {
+			int[] rankCounts = new int[Card.NUM_RANKS];
+			int[] suitMasks = new int[5];
+			for (int i = 0; i < 7; i++) {
+				int c = (int) (id >>> (8 * i)) & 0xff;
+				if (c == 0) break;
+				int rank = (c >> 4) - 1;
+				rankCounts[rank]++;
+				suitMasks[c & 0xf] |= 1 << rank;
+			}
+			
+			int flushMask = 0;
+			for (int suit = 1; suit < 5; suit++) {
+				if (Integer.bitCount(suitMasks[suit]) >= 5)
+					flushMask = suitMasks[suit];
+			}
+			return HandValue.fromRanks(rankCounts, flushMask);
+		}
+		
+		/**
+		 * Adds a node to the id lookup.
+		 * @param id the id of the node
+		 */
+		private void addNode(long id) {
+			int i = slot(id);
+			while (nodes[i] != 0)
+				i = (i + 1) & (keys.length - 1);
+			keys[i] = id;
+			nodes[i] = ++nodeCount;
+		}
+		
+		/**
+		 * Finds the number of a node.
+		 * @param id the id of the node
+		 * @return the node's number, or -1 if it hasn't been added
+		 */
+		private int findNode(long id) {
+			int i = slot(id);
+			while (nodes[i] != 0) {
+				if (keys[i] == id)
+					return nodes[i] - 1;
+				i = (i + 1) & (keys.length - 1);
+			}
+			return -1;
+		}
+		
+		private int slot(long id) {
+			long h = id * 0x9E3779B97F4A7C15L;
+			return (int) (h >>> 43);
+		}
+	}
+
+}
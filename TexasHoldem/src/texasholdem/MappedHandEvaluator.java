@@ -0,0 +1,275 @@
+package texasholdem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A <code>HandEvaluator</code> that reads 7 card hand values from a
+ * precomputed rank file. The file holds an entry for each of the
+ * C(52,7) sets of 7 cards, found by the combinatorial number of the
+ * sorted card indexes, and is read through a read only
+ * <code>MappedByteBuffer</code>. Starting up costs no more than paging in
+ * the parts of the file that are used, and every JVM on a host that maps
+ * the same file shares one copy of it through the page cache.
+ * <p>
+ * Each entry is a 2 byte equivalence class, 1 for the worst hand and
+ * 7462 for a royal flush. The header holds the hand value of each class:
+ * <pre>
+ * int magic, int version, int number of classes, int[] class values,
+ * short[] entries
+ * </pre>
+ * 5 and 6 card hands are passed to a <code>BitmaskHandEvaluator</code>.
+ * Only absolute reads are made on the buffer, so one instance can be
+ * shared between threads.
+ * @author John Wardell
+ *
+ */
+public class MappedHandEvaluator implements HandEvaluator {
+	
+	/**
+	 * The system property naming the rank file used by the
+	 * <code>mapped</code> engine of <code>HandEvaluators</code>.
+	 */
+	public static final String FILE_PROPERTY = "texasholdem.rankfile";
+	/**
+	 * The rank file used when the property isn't set.
+	 */
+	public static final String DEFAULT_FILE = "hand_ranks.dat";
+	/**
+	 * The number of sets of 7 cards, C(52,7).
+	 */
+	public static final int NUM_HANDS = 133784560;
+	
+	private static final int MAGIC = 0x48523752;
+	private static final int VERSION = 1;
+	/**
+	 * C(n, k) for n up to 52 and k up to 7.
+	 */
+	private static final int[][] CHOOSE = new int[Card.DECK_SIZE + 1][8];
+	
+	static {
+		for (int n = 0; n <= Card.DECK_SIZE; n++) {
+			CHOOSE[n][0] = 1;
+			for (int k = 1; k < 8; k++) {
+				CHOOSE[n][k] = (n == 0) ? 0 : CHOOSE[n - 1][k - 1] + CHOOSE[n - 1][k];
+			}
+		}
+	}
+	
+	private final ShortBuffer entries;
+	private final int[] classValues;
+	private final HandEvaluator smallHands = new BitmaskHandEvaluator();
+	
+	private MappedHandEvaluator(ShortBuffer entries, int[] classValues) {
+		this.entries = entries;
+		this.classValues = classValues;
+	}
+	
+	/**
+	 * Maps an existing rank file.
+	 * @param file the rank file
+	 * @return the evaluator reading from the file
+	 * @throws IOException if the file can't be read or isn't a rank file
+	 */
+	public static MappedHandEvaluator open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+				throw new IOException("Not a rank file: " + file);
+			}
+			int numClasses = buffer.getInt(8);
+			int[] classValues = new int[numClasses + 1];
+			for (int i = 1; i <= numClasses; i++) {
+				classValues[i] = buffer.getInt(8 + 4 * i);
+			}
+			int header = 12 + 4 * numClasses;
+			if (channel.size() != header + 2L * NUM_HANDS) {
+				throw new IOException("Rank file is the wrong size: " + file);
+			}
+			buffer.position(header);
+			ShortBuffer entries = buffer.slice().asShortBuffer();
+			return new MappedHandEvaluator(entries, classValues);
+		}
+	}
+	
+	/**
+	 * Maps a rank file, generating it first if it doesn't exist.
+	 * @param file the rank file
+	 * @return the evaluator reading from the file
+	 * @throws IOException if the file can't be written or read
+	 */
+	public static MappedHandEvaluator openOrGenerate(File file) throws IOException {
+		if (!file.exists()) {
+			generate(file, new BitmaskHandEvaluator());
+		}
+		return open(file);
+	}
+	
+	/**
+	 * Writes a rank file. The file is written under a temporary name and
+	 * then moved into place, so several workers starting at once never
+	 * map a partly written file.
+	 * @param file the rank file to write
+	 * @param source the evaluator used to score every hand
+	 * @throws IOException if the file can't be written
+	 */
+	public static void generate(File file, HandEvaluator source) throws IOException {
+		int[] classValues = allValues();
+		File temp = File.createTempFile(file.getName(), ".tmp",
+				file.getAbsoluteFile().getParentFile());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(classValues.length);
+			for (int value: classValues) {
+				out.writeInt(value);
+			}
+			//in order of combinatorial number
+			int[] cards = new int[7];
+			for (cards[6] = 6; cards[6] < Card.DECK_SIZE; cards[6]++)
+			for (cards[5] = 5; cards[5] < cards[6]; cards[5]++)
+			for (cards[4] = 4; cards[4] < cards[5]; cards[4]++)
+			for (cards[3] = 3; cards[3] < cards[4]; cards[3]++)
+			for (cards[2] = 2; cards[2] < cards[3]; cards[2]++)
+			for (cards[1] = 1; cards[1] < cards[2]; cards[1]++)
+			for (cards[0] = 0; cards[0] < cards[1]; cards[0]++) {
+				int value = source.evaluate(cards, 0, 7);
+				out.writeShort(Arrays.binarySearch(classValues, value) + 1);
+			}
+		}
+		catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Finds every possible 5 card hand value.
+	 * @return the 7462 hand values in ascending order
+	 */
+	private static int[] allValues() {
+		int[] values = new int[7462];
+		int[] rankCounts = new int[Card.NUM_RANKS];
+		int n = 0;
+		for (int a = 0; a < Card.NUM_RANKS; a++)
+		for (int b = a; b < Card.NUM_RANKS; b++)
+		for (int c = b; c < Card.NUM_RANKS; c++)
+		for (int d = c; d < Card.NUM_RANKS; d++)
+		for (int e = d; e < Card.NUM_RANKS; e++) {
+			if (a == e) continue;
+			rankCounts[a]++; rankCounts[b]++; rankCounts[c]++;
+			rankCounts[d]++; rankCounts[e]++;
+			int mask = (1 << a) | (1 << b) | (1 << c) | (1 << d) | (1 << e);
+			values[n++] = HandValue.fromRanks(rankCounts, 0);
+			if (Integer.bitCount(mask) == 5) {
+				values[n++] = HandValue.fromRanks(rankCounts, mask);
+			}
+			rankCounts[a] = 0; rankCounts[b] = 0; rankCounts[c] = 0;
+			rankCounts[d] = 0; rankCounts[e] = 0;
+		}
+		Arrays.sort(values);
+		return values;
+	}
+	
+	/**
+	 * Gets the combinatorial number of 7 different cards. The cards don't
+	 * need to be sorted, each card's place is counted from a card mask.
+	 * @param cards the array holding the indexes of the cards
+	 * @param offset the position of the first card in <code>cards</code>
+	 * @return the index of the cards' entry, 0 to C(52,7) - 1
+	 */
+	public static int handIndex(int[] cards, int offset) {
+		long mask = 0L;
+		for (int i = offset; i < offset + 7; i++) {
+			mask |= 1L << cards[i];
+		}
+		int index = 0;
+		for (int i = offset; i < offset + 7; i++) {
+			int card = cards[i];
+			int below = Long.bitCount(mask & ((1L << card) - 1));
+			index += CHOOSE[card][below + 1];
+		}
+		return index;
+	}
+	
+	/**
+	 * Evaluates cards given as card indexes.
+	 * @param cards the array holding the indexes of the cards
+	 * @param offset the position of the first card in <code>cards</code>
+	 * @param length the number of cards, 5 - 7
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(int[] cards, int offset, int length) {
+		if (length != 7) {
+			return smallHands.evaluate(cards, offset, length);
+		}
+		return classValues[entries.get(handIndex(cards, offset)) & 0xffff];
+	}
+	
+	/**
+	 * Evaluates the cards in a <code>Card</code> array.
+	 * @param cards the 5 - 7 cards to evaluate
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(Card[] cards) {
+		if (cards.length != 7) {
+			return smallHands.evaluate(cards);
+		}
+		long mask = 0L;
+		for (int i = 0; i < 7; i++) {
+			mask |= 1L << cards[i].getIndex();
+		}
+		int index = 0;
+		for (int i = 0; i < 7; i++) {
+			int card = cards[i].getIndex();
+			index += CHOOSE[card][Long.bitCount(mask & ((1L << card) - 1)) + 1];
+		}
+		return classValues[entries.get(index) & 0xffff];
+	}
+	
+	/**
+	 * Generates the rank file named by the first argument, or by the
+	 * <code>texasholdem.rankfile</code> property, and checks it against
+	 * the bitmask evaluator.
+	 * @param args
+	 * @throws IOException if the file can't be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File((args.length > 0) ? args[0] :
+				System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+		long start = System.nanoTime();
+		MappedHandEvaluator mapped = openOrGenerate(file);
+		System.out.println("Opened " + file + " in " +
+				((System.nanoTime() - start) / 1000000) + " ms");
+		
+		HandEvaluator bitmask = new BitmaskHandEvaluator();
+		Deck deck = new Deck();
+		int[] cards = new int[7];
+		int mismatches = 0;
+		for (int n = 0; n < 1000000; n++) {
+			deck.fillDeck();
+			for (int i = 0; i < 7; i++)
+				cards[i] = deck.drawCard().getIndex();
+			if (mapped.evaluate(cards, 0, 7) != bitmask.evaluate(cards, 0, 7))
+				mismatches++;
+		}
+		System.out.println(mismatches + " mismatches");
+	}
+
+}
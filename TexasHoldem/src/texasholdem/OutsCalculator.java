@@ -0,0 +1,357 @@
+package texasholdem;
+
+/**
+ * Finds a player's draws after the flop and the cards that complete them.
+ * Cards are held as 52 bit masks by card index, 13 bits for each suit, so
+ * each draw is found with a few mask operations and table lookups and no
+ * objects are made. One calculator is meant to be reused for each decision.
+ * <p>
+ * For each <code>PartialHand</code> the calculator gives the outs, the
+ * chance of hitting one on the next card and by the river, and which outs
+ * are dirty: outs that pair the board, or for a straight put a third card
+ * of a suit on the board, and so may give another player a better hand.
+ * Only draws that use at least one hole card are counted, and no draws are
+ * counted for a flush or straight already made.
+ * @author John Wardell
+ *
+ */
+public class OutsCalculator {
+	
+	private static final PartialHand[] PARTIALS = PartialHand.values();
+	private static final int RANK_MASK = (1 << Card.NUM_RANKS) - 1;
+	/**
+	 * The value ordinals that would complete a straight for each value mask,
+	 * none if the mask already holds a straight.
+	 */
+	private static final short[] STRAIGHT_OUTS = new short[1 << Card.NUM_RANKS];
+	
+	static {
+		for (int ranks = 0; ranks < STRAIGHT_OUTS.length; ranks++) {
+			if (BitmaskHandEvaluator.isStraight(ranks)) continue;
+			for (int rank = 0; rank < Card.NUM_RANKS; rank++) {
+				if (BitmaskHandEvaluator.isStraight(ranks | (1 << rank))) {
+					STRAIGHT_OUTS[ranks] |= 1 << rank;
+				}
+			}
+		}
+	}
+	
+	private final long[] outs = new long[PARTIALS.length];
+	private final double[] nextCard = new double[PARTIALS.length];
+	private final double[] byRiver = new double[PARTIALS.length];
+	private final int[] rankCounts = new int[Card.NUM_RANKS];
+	private long dirty;
+	private int unseen;
+	
+	/**
+	 * Gets the mask of some cards.
+	 * @param cards the cards
+	 * @return a mask with the bit of each card's index set
+	 */
+	public static long mask(Card[] cards) {
+		long mask = 0L;
+		for (Card card: cards)
+			mask |= 1L << card.getIndex();
+		return mask;
+	}
+	
+	/**
+	 * Finds the draws of a player.
+	 * @param hole the player's 2 cards
+	 * @param board the 3 or 4 community cards
+	 */
+	public void calculate(Card[] hole, Card[] board) {
+		calculate(mask(hole), mask(board));
+	}
+	
+	/**
+	 * Finds the draws of a player.
+	 * @param hole the mask of the player's 2 cards
+	 * @param board the mask of the 3 or 4 community cards
+	 */
+	public void calculate(long hole, long board) {
+		for (int i = 0; i < PARTIALS.length; i++) {
+			outs[i] = 0L;
+			nextCard[i] = 0;
+			byRiver[i] = 0;
+		}
+		long known = hole | board;
+		int boardSize = Long.bitCount(board);
+		unseen = Card.DECK_SIZE - Long.bitCount(known);
+		long unknown = ~known & ((1L << Card.DECK_SIZE) - 1);
+		
+		int allRanks = 0;
+		int boardRanks = 0;
+		long pairsBoard = 0L;
+		long suitDirty = 0L;
+		for (int suit = 0; suit < 4; suit++) {
+			int shift = suit * Card.NUM_RANKS;
+			allRanks |= (int) (known >>> shift) & RANK_MASK;
+			boardRanks |= (int) (board >>> shift) & RANK_MASK;
+			if (Long.bitCount(board & ((long) RANK_MASK << shift)) >= 2) {
+				suitDirty |= (long) RANK_MASK << shift;
+			}
+		}
+		for (int suit = 0; suit < 4; suit++)
+			pairsBoard |= (long) boardRanks << (suit * Card.NUM_RANKS);
+		boolean madeFlush = false;
+		
+		for (int suit = 0; suit < 4; suit++) {
+			long suitMask = (long) RANK_MASK << (suit * Card.NUM_RANKS);
+			int count = Long.bitCount(known & suitMask);
+			if (count >= 5) madeFlush = true;
+			if ((hole & suitMask) == 0) continue;
+			if (count == 4) {
+				outs[PartialHand.FLUSH_DRAW.ordinal()] |= unknown & suitMask;
+			}
+			else if ((count == 3) && (boardSize == 3)) {
+				outs[PartialHand.BACKDOOR_FLUSH.ordinal()] |= unknown & suitMask;
+			}
+		}
+		if (madeFlush) {
+			outs[PartialHand.FLUSH_DRAW.ordinal()] = 0L;
+			outs[PartialHand.BACKDOOR_FLUSH.ordinal()] = 0L;
+		}
+		
+		//values that make a straight the board alone doesn't make
+		int straightRanks = STRAIGHT_OUTS[allRanks] & ~STRAIGHT_OUTS[boardRanks];
+		if (BitmaskHandEvaluator.isStraight(allRanks)) {
+			straightRanks = 0;
+		}
+		long straightOuts = unknown & spread(straightRanks);
+		if (Integer.bitCount(straightRanks) >= 2) {
+			outs[PartialHand.OPEN_STRAIGHT.ordinal()] = straightOuts;
+		}
+		else if (straightRanks != 0) {
+			outs[PartialHand.INSIDE_STRAIGHT.ordinal()] = straightOuts;
+		}
+		
+		int backdoorRanks = 0;
+		if ((boardSize == 3) && (straightRanks == 0) && !BitmaskHandEvaluator.isStraight(allRanks)) {
+			for (int rank = 0; rank < Card.NUM_RANKS; rank++) {
+				int with = allRanks | (1 << rank);
+				if ((with != allRanks) &&
+						((STRAIGHT_OUTS[with] & ~STRAIGHT_OUTS[boardRanks | (1 << rank)]) != 0)) {
+					backdoorRanks |= 1 << rank;
+				}
+			}
+			outs[PartialHand.BACKDOOR_STRAIGHT.ordinal()] = unknown & spread(backdoorRanks);
+		}
+		
+		//a straight out that makes the player's own flush is never dirty
+		long flushOuts = outs[PartialHand.FLUSH_DRAW.ordinal()];
+		dirty = ((flushOuts & pairsBoard) |
+				(straightOuts & ~flushOuts & (pairsBoard | suitDirty))) & getOuts();
+		
+		//the chances of hitting
+		int cardsToCome = 5 - boardSize;
+		for (PartialHand partial: PARTIALS) {
+			int i = partial.ordinal();
+			int n = Long.bitCount(outs[i]);
+			if ((partial == PartialHand.BACKDOOR_FLUSH) || (partial == PartialHand.BACKDOOR_STRAIGHT)) {
+				continue;
+			}
+			nextCard[i] = (double) n / unseen;
+			byRiver[i] = (cardsToCome == 2) ?
+					1 - (double) (unseen - n) * (unseen - n - 1) / (unseen * (unseen - 1)) :
+					nextCard[i];
+		}
+		if (outs[PartialHand.BACKDOOR_FLUSH.ordinal()] != 0) {
+			int n = Long.bitCount(outs[PartialHand.BACKDOOR_FLUSH.ordinal()]);
+			byRiver[PartialHand.BACKDOOR_FLUSH.ordinal()] =
+					(double) n * (n - 1) / (unseen * (unseen - 1));
+		}
+		if (backdoorRanks != 0) {
+			byRiver[PartialHand.BACKDOOR_STRAIGHT.ordinal()] =
+					backdoorStraightOdds(allRanks, boardRanks, unknown);
+		}
+	}
+	
+	/**
+	 * Counts the pairs of turn and river cards that make a straight the
+	 * board alone doesn't make.
+	 */
+	private double backdoorStraightOdds(int allRanks, int boardRanks, long unknown) {
+		long hits = 0;
+		for (int rank = 0; rank < Card.NUM_RANKS; rank++) {
+			rankCounts[rank] = Long.bitCount(unknown & spread(1 << rank));
+		}
+		for (int high = 0; high < Card.NUM_RANKS; high++) {
+			for (int low = 0; low < high; low++) {
+				int pair = (1 << high) | (1 << low);
+				if (BitmaskHandEvaluator.isStraight(allRanks | pair) &&
+						!BitmaskHandEvaluator.isStraight(boardRanks | pair)) {
+					hits += rankCounts[high] * rankCounts[low];
+				}
+			}
+		}
+		return (double) hits * 2 / (unseen * (unseen - 1));
+	}
+	
+	/**
+	 * Makes a card mask of every suit of some values.
+	 */
+	private static long spread(int ranks) {
+		long mask = ranks;
+		return mask | (mask << 13) | (mask << 26) | (mask << 39);
+	}
+	
+	/**
+	 * @param partial a kind of draw
+	 * @return true if the player has that draw.
+	 */
+	public boolean has(PartialHand partial) {
+		return outs[partial.ordinal()] != 0;
+	}
+	
+	/**
+	 * Gets the outs of a draw. For a backdoor draw these are the cards
+	 * that turn it into a draw on the turn.
+	 * @param partial a kind of draw
+	 * @return the mask of the outs
+	 */
+	public long getOuts(PartialHand partial) {
+		return outs[partial.ordinal()];
+	}
+	
+	/**
+	 * Gets the outs of every flush and straight draw, not counting backdoors.
+	 * @return the mask of the outs
+	 */
+	public long getOuts() {
+		return outs[PartialHand.FLUSH_DRAW.ordinal()] |
+				outs[PartialHand.OPEN_STRAIGHT.ordinal()] |
+				outs[PartialHand.INSIDE_STRAIGHT.ordinal()];
+	}
+	
+	/**
+	 * @return the mask of the outs that can't give another player a better hand.
+	 */
+	public long getCleanOuts() {
+		return getOuts() & ~dirty;
+	}
+	
+	/**
+	 * @return the mask of the outs that may give another player a better hand.
+	 */
+	public long getDirtyOuts() {
+		return dirty;
+	}
+	
+	/**
+	 * Gets the chance of completing a draw with the next card. This is 0
+	 * for a backdoor draw, which needs 2 more cards.
+	 * @param partial a kind of draw
+	 * @return the chance, 0 - 1
+	 */
+	public double getNextCardOdds(PartialHand partial) {
+		return nextCard[partial.ordinal()];
+	}
+	
+	/**
+	 * Gets the chance of completing a draw by the river.
+	 * @param partial a kind of draw
+	 * @return the chance, 0 - 1
+	 */
+	public double getRiverOdds(PartialHand partial) {
+		return byRiver[partial.ordinal()];
+	}
+	
+	/**
+	 * Gets the chance of hitting one of a set of outs by the river.
+	 * @param outs the mask of the outs
+	 * @return the chance, 0 - 1
+	 */
+	public double getRiverOdds(long outs) {
+		int n = Long.bitCount(outs);
+		if (unseen == 46) {
+			return (double) n / unseen;
+		}
+		return 1 - (double) (unseen - n) * (unseen - n - 1) / (unseen * (unseen - 1));
+	}
+	
+	/**
+	 * Lists the cards of a mask.
+	 * @param mask the mask of the cards
+	 * @return the cards, in index order
+	 */
+	public static Card[] toCards(long mask) {
+		Card[] cards = new Card[Long.bitCount(mask)];
+		for (int i = 0; i < cards.length; i++) {
+			int index = Long.numberOfTrailingZeros(mask);
+			cards[i] = Card.getCard(index);
+			mask &= mask - 1;
+		}
+		return cards;
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Prints the draws of some flops.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Card[][][] deals = {
+			{{Card.getCard(Suit.HEARTS, Number.ACE), Card.getCard(Suit.HEARTS, Number.TEN)},
+			 {Card.getCard(Suit.HEARTS, Number.KING), Card.getCard(Suit.HEARTS, Number.FOUR),
+			  Card.getCard(Suit.CLUBS, Number.FOUR)}},
+			{{Card.getCard(Suit.SPADES, Number.NINE), Card.getCard(Suit.HEARTS, Number.EIGHT)},
+			 {Card.getCard(Suit.CLUBS, Number.SEVEN), Card.getCard(Suit.DIAMONDS, Number.SIX),
+			  Card.getCard(Suit.SPADES, Number.KING)}},
+			{{Card.getCard(Suit.SPADES, Number.NINE), Card.getCard(Suit.SPADES, Number.EIGHT)},
+			 {Card.getCard(Suit.SPADES, Number.SEVEN), Card.getCard(Suit.DIAMONDS, Number.FIVE),
+			  Card.getCard(Suit.SPADES, Number.KING)}},
+			{{Card.getCard(Suit.CLUBS, Number.ACE), Card.getCard(Suit.HEARTS, Number.TWO)},
+			 {Card.getCard(Suit.CLUBS, Number.THREE), Card.getCard(Suit.DIAMONDS, Number.FOUR),
+			  Card.getCard(Suit.SPADES, Number.KING)}},
+			{{Card.getCard(Suit.CLUBS, Number.JACK), Card.getCard(Suit.CLUBS, Number.TEN)},
+			 {Card.getCard(Suit.CLUBS, Number.NINE), Card.getCard(Suit.DIAMONDS, Number.TWO),
+			  Card.getCard(Suit.SPADES, Number.KING)}},
+		};
+		OutsCalculator calculator = new OutsCalculator();
+		for (Card[][] deal: deals) {
+			calculator.calculate(deal[0], deal[1]);
+			System.out.println(java.util.Arrays.toString(deal[0]) + " on " +
+					java.util.Arrays.toString(deal[1]));
+			for (PartialHand partial: PARTIALS) {
+				if (calculator.has(partial)) {
+					System.out.println(String.format("  %s: %d outs, %.3f next card, %.3f by river",
+							partial, Long.bitCount(calculator.getOuts(partial)),
+							calculator.getNextCardOdds(partial), calculator.getRiverOdds(partial)));
+				}
+			}
+			System.out.println("  clean " + Long.bitCount(calculator.getCleanOuts()) + ", dirty " +
+					java.util.Arrays.toString(toCards(calculator.getDirtyOuts())));
+		}
+		
+		//time every flop for one hand, after letting the JIT compile
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)
+				java.lang.management.ManagementFactory.getThreadMXBean();
+		long sum = 0;
+		long start = 0;
+		long allocated = 0;
+		int count = 0;
+		for (int round = 0; round < 25; round++) {
+			if (round == 5) {
+				start = System.nanoTime();
+				allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+				count = 0;
+			}
+			long hole = (1L << 12) | (1L << 24);
+			for (int a = 0; a < Card.DECK_SIZE; a++)
+			for (int b = a + 1; b < Card.DECK_SIZE; b++)
+			for (int c = b + 1; c < Card.DECK_SIZE; c++) {
+				long board = (1L << a) | (1L << b) | (1L << c);
+				if ((board & hole) != 0) continue;
+				calculator.calculate(hole, board);
+				sum += calculator.getOuts();
+				count++;
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+		System.out.println(nanos / count + " ns and " + allocated + " bytes for " + count +
+				" flops " + (sum & 1));
+	}
+
+}
@@ -0,0 +1,236 @@
+package texasholdem;
+
+/**
+ * A low memory <code>HandEvaluator</code> in the style of Cactus Kev's
+ * 5 card evaluator. Cards are handled in their packed code form.
+ * Flushes are looked up by the value mask of the 5 cards, hands with 5
+ * different values by the same mask in a second table, and every other
+ * hand by the product of the primes of its card values, which is
+ * unique to the values. The products are found with a perfect hash.
+ * 6 and 7 card hands are evaluated by trying all 6 or 21 of their 5 card
+ * subsets.
+ * <p>
+ * The tables take about 100 KB and are built the first time a hand is
+ * evaluated. This evaluator holds no other state, so one instance can be
+ * shared between threads.
+ * @author John Wardell
+ *
+ */
+public class PerfectHashHandEvaluator implements HandEvaluator {
+	
+	/**
+	 * Holds the tables until they are first needed.
+	 */
+	private static class Tables {
+		static final int[] FLUSHES = new int[1 << Card.NUM_RANKS];
+		static final int[] UNIQUE5 = new int[1 << Card.NUM_RANKS];
+		static final int HASH_BITS = 13;
+		static final int BUCKET_BITS = 11;
+		static final int MAX_BUCKET = 12;
+		static final int[] DISPLACEMENTS = new int[1 << BUCKET_BITS];
+		static final int[] HASH_VALUES = new int[1 << HASH_BITS];
+		static int seed;
+		
+		static {
+			int[] rankCounts = new int[Card.NUM_RANKS];
+			int[] products = new int[4888];
+			int[] values = new int[4888];
+			int n = 0;
+			//every multiset of 5 card values with no more than 4 of a value
+			for (int a = 0; a < Card.NUM_RANKS; a++)
+			for (int b = a; b < Card.NUM_RANKS; b++)
+			for (int c = b; c < Card.NUM_RANKS; c++)
+			for (int d = c; d < Card.NUM_RANKS; d++)
+			for (int e = d; e < Card.NUM_RANKS; e++) {
+				if (a == e) continue;
+				rankCounts[a]++; rankCounts[b]++; rankCounts[c]++;
+				rankCounts[d]++; rankCounts[e]++;
+				int mask = (1 << a) | (1 << b) | (1 << c) | (1 << d) | (1 << e);
+				if (Integer.bitCount(mask) == 5) {
+					FLUSHES[mask] = HandValue.fromRanks(rankCounts, mask);
+					UNIQUE5[mask] = HandValue.fromRanks(rankCounts, 0);
+				}
+				else {
+					products[n] = Card.PRIMES[a] * Card.PRIMES[b] * Card.PRIMES[c] *
+							Card.PRIMES[d] * Card.PRIMES[e];
+					values[n] = HandValue.fromRanks(rankCounts, 0);
+					n++;
+				}
+				rankCounts[a] = 0; rankCounts[b] = 0; rankCounts[c] = 0;
+				rankCounts[d] = 0; rankCounts[e] = 0;
+			}
+			
+			while (!buildHash(products, values))
+				seed++;
+		}
+		
+		/**
+		 * Tries to place every product in the hash with the current seed.
+		 * Buckets are placed largest first, each with the first
+		 * displacement that puts all its products in empty slots.
+		 * @param products the prime products
+		 * @param values the hand value of each product
+		 * @return true if the hash was built, false if the seed must change
+		 */
+		static boolean buildHash(int[] products, int[] values) {
+			int numBuckets = DISPLACEMENTS.length;
+			int[] bucketSizes = new int[numBuckets];
+			int[] bucketStarts = new int[numBuckets + 1];
+			int[] sorted = new int[products.length];
+			for (int p: products)
+				bucketSizes[hash(p) >>> (32 - BUCKET_BITS)]++;
+			for (int i = 0; i < numBuckets; i++)
+				bucketStarts[i + 1] = bucketStarts[i] + bucketSizes[i];
+			int[] fill = bucketStarts.clone();
+			for (int i = 0; i < products.length; i++)
+				sorted[fill[hash(products[i]) >>> (32 - BUCKET_BITS)]++] = i;
+			
+			boolean[] used = new boolean[HASH_VALUES.length];
+			int mask = HASH_VALUES.length - 1;
+			for (int size = MAX_BUCKET; size > 0; size--) {
+				for (int bucket = 0; bucket < numBuckets; bucket++) {
+					if (bucketSizes[bucket] > MAX_BUCKET) return false;
+					if (bucketSizes[bucket] != size) continue;
+					int start = bucketStarts[bucket];
+					int d = 0;
+					while (d <= mask) {
+						boolean fits = true;
+						for (int i = start; fits && (i < start + size); i++) {
+							int slot = (hash(products[sorted[i]]) ^ d) & mask;
+							if (used[slot]) fits = false;
+							//two products of a bucket in one slot
+							for (int j = start; fits && (j < i); j++) {
+								if (((hash(products[sorted[j]]) ^ d) & mask) == slot)
+									fits = false;
+							}
+						}
+						if (fits) break;
+						d++;
+					}
+					if (d > mask) return false;
+					DISPLACEMENTS[bucket] = d;
+					for (int i = start; i < start + size; i++) {
+						int slot = (hash(products[sorted[i]]) ^ d) & mask;
+						used[slot] = true;
+						HASH_VALUES[slot] = values[sorted[i]];
+					}
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Mixes a prime product with the seed.
+		 * @param product the prime product
+		 * @return the hash of the product
+		 */
+		static int hash(int product) {
+			int h = product + seed * 0x9E3779B9;
+			h ^= h >>> 16;
+			h *= 0x85EBCA6B;
+			h ^= h >>> 13;
+			h *= 0xC2B2AE35;
+			h ^= h >>> 16;
+			return h;
+		}
+	}
+	
+	/**
+	 * A no argument constructor.
+	 */
+	public PerfectHashHandEvaluator() {}
+	
+	/**
+	 * Evaluates 5 cards given as packed codes.
+	 * @param c1 the first card
+	 * @param c2 the second card
+	 * @param c3 the third card
+	 * @param c4 the fourth card
+	 * @param c5 the fifth card
+	 * @return the hand value of the cards
+	 */
+	public int evaluate5(int c1, int c2, int c3, int c4, int c5) {
+		int mask = (c1 | c2 | c3 | c4 | c5) >>> 16;
+		if ((c1 & c2 & c3 & c4 & c5 & 0xf000) != 0)
+			return Tables.FLUSHES[mask];
+		int value = Tables.UNIQUE5[mask];
+		if (value != 0)
+			return value;
+		int product = (c1 & 0x3f) * (c2 & 0x3f) * (c3 & 0x3f) * (c4 & 0x3f) * (c5 & 0x3f);
+		int h = Tables.hash(product);
+		int slot = (h ^ Tables.DISPLACEMENTS[h >>> (32 - Tables.BUCKET_BITS)]) &
+				((1 << Tables.HASH_BITS) - 1);
+		return Tables.HASH_VALUES[slot];
+	}
+	
+	/**
+	 * Evaluates cards given as card indexes.
+	 * @param cards the array holding the indexes of the cards
+	 * @param offset the position of the first card in <code>cards</code>
+	 * @param length the number of cards, 5 - 7
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(int[] cards, int offset, int length) {
+		int c0 = Card.codeOf(cards[offset]);
+		int c1 = Card.codeOf(cards[offset + 1]);
+		int c2 = Card.codeOf(cards[offset + 2]);
+		int c3 = Card.codeOf(cards[offset + 3]);
+		int c4 = Card.codeOf(cards[offset + 4]);
+		int c5 = (length > 5) ? Card.codeOf(cards[offset + 5]) : 0;
+		int c6 = (length > 6) ? Card.codeOf(cards[offset + 6]) : 0;
+		return evaluateCodes(c0, c1, c2, c3, c4, c5, c6, length);
+	}
+	
+	/**
+	 * Evaluates the cards in a <code>Card</code> array.
+	 * @param cards the 5 - 7 cards to evaluate
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(Card[] cards) {
+		int length = cards.length;
+		int c5 = (length > 5) ? cards[5].getCode() : 0;
+		int c6 = (length > 6) ? cards[6].getCode() : 0;
+		return evaluateCodes(cards[0].getCode(), cards[1].getCode(), cards[2].getCode(),
+				cards[3].getCode(), cards[4].getCode(), c5, c6, length);
+	}
+	
+	/**
+	 * Evaluates every 5 card subset of the cards and keeps the best value.
+	 * @param length the number of cards, 5 - 7
+	 * @return the hand value of the cards
+	 */
+	private int evaluateCodes(int c0, int c1, int c2, int c3, int c4, int c5, int c6,
+			int length) {
+		if (length == 5)
+			return evaluate5(c0, c1, c2, c3, c4);
+		
+		//the 6 subsets without c6
+		int best = evaluate5(c0, c1, c2, c3, c4);
+		best = Math.max(best, evaluate5(c0, c1, c2, c3, c5));
+		best = Math.max(best, evaluate5(c0, c1, c2, c4, c5));
+		best = Math.max(best, evaluate5(c0, c1, c3, c4, c5));
+		best = Math.max(best, evaluate5(c0, c2, c3, c4, c5));
+		best = Math.max(best, evaluate5(c1, c2, c3, c4, c5));
+		if (length == 6)
+			return best;
+		
+		//the 15 subsets with c6
+		best = Math.max(best, evaluate5(c0, c1, c2, c3, c6));
+		best = Math.max(best, evaluate5(c0, c1, c2, c4, c6));
+		best = Math.max(best, evaluate5(c0, c1, c2, c5, c6));
+		best = Math.max(best, evaluate5(c0, c1, c3, c4, c6));
+		best = Math.max(best, evaluate5(c0, c1, c3, c5, c6));
+		best = Math.max(best, evaluate5(c0, c1, c4, c5, c6));
+		best = Math.max(best, evaluate5(c0, c2, c3, c4, c6));
+		best = Math.max(best, evaluate5(c0, c2, c3, c5, c6));
+		best = Math.max(best, evaluate5(c0, c2, c4, c5, c6));
+		best = Math.max(best, evaluate5(c0, c3, c4, c5, c6));
+		best = Math.max(best, evaluate5(c1, c2, c3, c4, c6));
+		best = Math.max(best, evaluate5(c1, c2, c3, c5, c6));
+		best = Math.max(best, evaluate5(c1, c2, c4, c5, c6));
+		best = Math.max(best, evaluate5(c1, c3, c4, c5, c6));
+		best = Math.max(best, evaluate5(c2, c3, c4, c5, c6));
+		return best;
+	}
+
+}
@@ -9,7 +9,7 @@ package texasholdem;
  *
  */
 public class Player {
-	private Card[] cards;
+	private final Card[] cards = new Card[2];
 	private int chips;
 	private String name;
 	private boolean active = true;
@@ -19,6 +19,8 @@ public class Player {
 	private int personality = 0;
 	
 	private int bet = 0;
+	private int bustHand = -1;
+	private int bustLevel = -1;
 	
 	/**
 	 * Not the constructor used in the game.
@@ -38,7 +40,16 @@ public class Player {
 	 * @param cards the cards this player will have.
 	 */
 	public void setCards(Card[] cards) {
-		this.cards = cards;
+		setCards(cards[0], cards[1]);
+	}
+	/**
+	 * Sets this player's cards without needing an array for them.
+	 * @param first the first card
+	 * @param second the second card
+	 */
+	public void setCards(Card first, Card second) {
+		cards[0] = first;
+		cards[1] = second;
 	}
 	/**
 	 * 
@@ -163,6 +174,31 @@ public class Player {
 	public int getBet() {
 		return bet;
 	}
+	/**
+	 * Records when the player ran out of chips.
+	 * @param hand the number of the hand the player lost their last chips in.
+	 * @param blindLevel the blind level of that hand, 0 for the first.
+	 */
+	public void setBust(int hand, int blindLevel) {
+		bustHand = hand;
+		bustLevel = blindLevel;
+	}
+	/**
+	 * 
+	 * @return the number of the hand the player lost their last chips in,
+	 * or -1 if they haven't.
+	 */
+	public int getBustHand() {
+		return bustHand;
+	}
+	/**
+	 * 
+	 * @return the blind level when the player lost their last chips, 0 for
+	 * the first, or -1 if they haven't.
+	 */
+	public int getBustLevel() {
+		return bustLevel;
+	}
 	
 	
 }
@@ -0,0 +1,176 @@
+package texasholdem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The equity of each of the 169 starting hands against 1 - 8 opponents
+ * holding random cards, so preflop decisions cost one array lookup.
+ * <p>
+ * The table is made offline by the main method, which runs the
+ * <code>EquityCalculator</code> simulation for every starting hand and
+ * number of opponents, and is shipped as the resource
+ * <code>preflop_equity.dat</code> next to this class:
+ * <pre>
+ * int magic, int version, int number of starting hands,
+ * int most opponents, char[] equities
+ * </pre>
+ * Each equity is stored in 16 bits, 65535 standing for 1, by starting hand
+ * and then number of opponents. The table is loaded when it is first used.
+ * @author John Wardell
+ *
+ */
+public class PreflopEquityTable {
+	
+	/**
+	 * The name of the table resource.
+	 */
+	public static final String RESOURCE = "preflop_equity.dat";
+	/**
+	 * The most opponents in the table.
+	 */
+	public static final int MAX_OPPONENTS = 8;
+	
+	private static final int MAGIC = 0x50464551;
+	private static final int VERSION = 1;
+	
+	/**
+	 * Holds the table until it is first needed.
+	 */
+	private static class Table {
+		static final char[] EQUITIES = load();
+	}
+	
+	private PreflopEquityTable() {}
+	
+	/**
+	 * Gets the equity of a starting hand.
+	 * @param startingHand the starting hand index
+	 * @param numOpponents the number of opponents, 1 - 8
+	 * @return the average share of the pot won, 0 - 1
+	 * @see SuitIsomorphism#startingHandIndex(int, int)
+	 */
+	public static double getEquity(int startingHand, int numOpponents) {
+		if ((numOpponents < 1) || (numOpponents > MAX_OPPONENTS)) {
+			throw new IllegalArgumentException("Need 1 - " + MAX_OPPONENTS + " opponents");
+		}
+		return Table.EQUITIES[startingHand * MAX_OPPONENTS + numOpponents - 1] / 65535.0;
+	}
+	
+	/**
+	 * Gets the equity of 2 hole cards.
+	 * @param card1 the first card
+	 * @param card2 the second card
+	 * @param numOpponents the number of opponents, 1 - 8
+	 * @return the average share of the pot won, 0 - 1
+	 */
+	public static double getEquity(Card card1, Card card2, int numOpponents) {
+		return getEquity(SuitIsomorphism.startingHandIndex(card1, card2), numOpponents);
+	}
+	
+	/**
+	 * Reads the table resource.
+	 */
+	private static char[] load() {
+		InputStream resource = PreflopEquityTable.class.getResourceAsStream(RESOURCE);
+		if (resource == null) {
+			throw new IllegalStateException("Missing resource " + RESOURCE);
+		}
+		try (DataInputStream in = new DataInputStream(resource)) {
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) ||
+					(in.readInt() != SuitIsomorphism.NUM_STARTING_HANDS) ||
+					(in.readInt() != MAX_OPPONENTS)) {
+				throw new IllegalStateException("Bad resource " + RESOURCE);
+			}
+			byte[] bytes = new byte[2 * SuitIsomorphism.NUM_STARTING_HANDS * MAX_OPPONENTS];
+			in.readFully(bytes);
+			char[] equities = new char[bytes.length / 2];
+			for (int i = 0; i < equities.length; i++) {
+				equities[i] = (char) (((bytes[2 * i] & 0xff) << 8) | (bytes[2 * i + 1] & 0xff));
+			}
+			return equities;
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Can't read resource " + RESOURCE, e);
+		}
+	}
+	
+	/**
+	 * Simulates every starting hand against 1 - 8 opponents and writes
+	 * the table. Each starting hand and number of opponents has its own
+	 * random stream taken from the seed, so the table can be made again.
+	 * @param file the file to write
+	 * @param trials the number of deals simulated for each entry
+	 * @param seed the seed of the simulation
+	 * @throws IOException if the file can't be written
+	 */
+	public static void generate(File file, int trials, long seed) throws IOException {
+		EquityCalculator calculator = EquityCalculator.getDefault();
+		FastRandom random = new FastRandom(seed);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(SuitIsomorphism.NUM_STARTING_HANDS);
+			out.writeInt(MAX_OPPONENTS);
+			for (int hand = 0; hand < SuitIsomorphism.NUM_STARTING_HANDS; hand++) {
+				int[] hole = exampleCards(hand);
+				for (int opponents = 1; opponents <= MAX_OPPONENTS; opponents++) {
+					Equity equity = calculator.calculate(hole, new int[0], opponents, trials,
+							Long.MAX_VALUE, random.split());
+					out.writeChar((int) Math.round(equity.getEquity() * 65535));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets 2 cards making up a starting hand.
+	 * @param startingHand the starting hand index
+	 * @return the indexes of the 2 cards
+	 */
+	private static int[] exampleCards(int startingHand) {
+		int row = startingHand / Card.NUM_RANKS;
+		int column = startingHand % Card.NUM_RANKS;
+		if (row < column) {
+			//suited
+			return new int[] {column, row};
+		}
+		return new int[] {row, Card.NUM_RANKS + column};
+	}
+	
+	/**
+	 * The main method makes the table resource when given
+	 * <code>generate &lt;file&gt; [trials]</code>, otherwise it prints the table.
+	 * @param args
+	 * @throws IOException if the table can't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if ((args.length >= 2) && args[0].equals("generate")) {
+			int trials = (args.length > 2) ? Integer.parseInt(args[2]) : 1000000;
+			long start = System.nanoTime();
+			generate(new File(args[1]), trials, 169);
+			System.out.println("Generated in " + (System.nanoTime() - start) / 1000000 + " ms");
+			return;
+		}
+		long start = System.nanoTime();
+		getEquity(0, 1);
+		System.out.println("First use in " + (System.nanoTime() - start) / 1000 + " us");
+		start = System.nanoTime();
+		load();
+		System.out.println("Loaded again in " + (System.nanoTime() - start) / 1000 + " us");
+		for (int hand = SuitIsomorphism.NUM_STARTING_HANDS - 1; hand >= 0; hand--) {
+			StringBuilder line = new StringBuilder(SuitIsomorphism.startingHandName(hand));
+			for (int opponents = 1; opponents <= MAX_OPPONENTS; opponents++) {
+				line.append(String.format(" %.3f", getEquity(hand, opponents)));
+			}
+			System.out.println(line);
+		}
+	}
+
+}
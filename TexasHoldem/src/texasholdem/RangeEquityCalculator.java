@@ -0,0 +1,474 @@
+package texasholdem;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Gets the equity of each player in a hand where every player holds a
+ * weighted <code>HandRange</code> rather than known cards. Card removal is
+ * handled by only counting deals where no card is used twice, checked with
+ * the combos' card masks.
+ * <p>
+ * On a complete board every combo is scored once and the deals of the
+ * ranges are counted exactly, each weighted by the product of the combos'
+ * weights. Otherwise deals are sampled, each player's combo being picked in
+ * proportion to its weight and the whole deal drawn again if two combos or
+ * a combo and the board share a card. Either way the work is split between
+ * the threads of the <code>EquityCalculator</code>'s pool.
+ * @author John Wardell
+ *
+ */
+public class RangeEquityCalculator {
+	
+	/**
+	 * The number of deals sampled when none is given.
+	 */
+	public static final int DEFAULT_TRIALS = 100000;
+	/**
+	 * The most deals of the ranges, before card removal, counted by an
+	 * exact calculation when the equity is asked for without saying how.
+	 */
+	public static final long EXACT_LIMIT = 20000000L;
+	/**
+	 * The most times a sampled deal is drawn again because of a shared card.
+	 */
+	private static final int MAX_ATTEMPTS = 10000;
+	private static final int CHUNK_TRIALS = 1024;
+	
+	private final EquityCalculator hands;
+	
+	/**
+	 * Holds the shared calculator.
+	 */
+	private static class DefaultHolder {
+		static final RangeEquityCalculator INSTANCE =
+				new RangeEquityCalculator(EquityCalculator.getDefault());
+	}
+	
+	/**
+	 * Constructs a RangeEquityCalculator object.
+	 * @param hands the calculator whose evaluator and pool are used
+	 */
+	public RangeEquityCalculator(EquityCalculator hands) {
+		this.hands = hands;
+	}
+	
+	/**
+	 * Gets the shared calculator.
+	 * @return the shared calculator
+	 */
+	public static RangeEquityCalculator getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+	
+	/**
+	 * Gets the equity of each range. It is counted exactly on a complete board
+	 * if there are no more than <code>EXACT_LIMIT</code> deals, otherwise it is
+	 * estimated from the default number of deals.
+	 * @param ranges the range of each player
+	 * @param board the 0 - 5 community cards
+	 * @return the equity of each player
+	 */
+	public Equity[] calculate(HandRange[] ranges, Card[] board) {
+		return calculate(ranges, Card.toIndexes(board, new int[board.length]));
+	}
+	
+	/**
+	 * Gets the equity of each range. It is counted exactly on a complete board
+	 * if there are no more than <code>EXACT_LIMIT</code> deals, otherwise it is
+	 * estimated from the default number of deals.
+	 * @param ranges the range of each player
+	 * @param board the indexes of the 0 - 5 community cards
+	 * @return the equity of each player
+	 */
+	public Equity[] calculate(HandRange[] ranges, int[] board) {
+		if ((board.length == 5) && canCountExactly(ranges, combos(ranges, board))) {
+			return calculateExact(ranges, board);
+		}
+		return calculate(ranges, board, DEFAULT_TRIALS, Long.MAX_VALUE, new FastRandom());
+	}
+	
+	/**
+	 * Lists each range's combos that don't use a board card.
+	 * @throws IllegalArgumentException if a range has no such combos
+	 */
+	private static int[][] combos(HandRange[] ranges, int[] board) {
+		if ((ranges.length < 2) || (board.length > 5)) {
+			throw new IllegalArgumentException("Need 2 or more ranges and at most 5 board cards");
+		}
+		long dead = boardMask(board);
+		int[][] combos = new int[ranges.length][];
+		for (int p = 0; p < ranges.length; p++) {
+			combos[p] = ranges[p].getCombos(dead);
+			if (combos[p].length == 0) {
+				throw new IllegalArgumentException("Range " + p + " is empty on this board");
+			}
+		}
+		return combos;
+	}
+	
+	private static long boardMask(int[] board) {
+		long mask = 0L;
+		for (int card: board) {
+			if ((card < 0) || (card >= Card.DECK_SIZE) || ((mask & (1L << card)) != 0)) {
+				throw new IllegalArgumentException("Bad or repeated card: " + card);
+			}
+			mask |= 1L << card;
+		}
+		return mask;
+	}
+	
+	/**
+	 * Checks that the deals are few enough to count and that their
+	 * weighted counts can't overflow.
+	 */
+	private static boolean canCountExactly(HandRange[] ranges, int[][] combos) {
+		double deals = 1;
+		for (int[] playerCombos: combos)
+			deals *= playerCombos.length;
+		return (deals <= EXACT_LIMIT) &&
+				(deals * Math.pow(HandRange.MAX_WEIGHT, ranges.length) < Long.MAX_VALUE / 2);
+	}
+	
+	/**
+	 * Counts the equity of each range exactly over every deal of the combos
+	 * on a complete board.
+	 * @param ranges the range of each player
+	 * @param board the indexes of the 5 community cards
+	 * @return the equity of each player, counting each deal as many times
+	 * as the product of its combos' weights
+	 * @throws IllegalArgumentException if the board isn't complete, a range
+	 * is empty, or there are too many deals
+	 */
+	public Equity[] calculateExact(HandRange[] ranges, int[] board) {
+		int[][] combos = combos(ranges, board);
+		if ((board.length != 5) || !canCountExactly(ranges, combos)) {
+			throw new IllegalArgumentException("Need a complete board and fewer deals");
+		}
+		//score each combo once
+		int[] cards = new int[7];
+		System.arraycopy(board, 0, cards, 0, 5);
+		int node = hands.boardNode(cards);
+		int[] values = new int[HandRange.NUM_COMBOS];
+		for (int[] playerCombos: combos) {
+			for (int combo: playerCombos) {
+				if (values[combo] == 0) {
+					cards[5] = HandRange.lowCard(combo);
+					cards[6] = HandRange.highCard(combo);
+					values[combo] = hands.evaluate(cards, node);
+				}
+			}
+		}
+		Counts counts = hands.getPool().invoke(new ExactDeals(ranges, combos, values, 0,
+				combos[0].length));
+		return counts.toEquities(true);
+	}
+	
+	/**
+	 * Estimates the equity of each range by sampling deals. The estimate is
+	 * made from fewer deals than asked for if the time budget runs out.
+	 * @param ranges the range of each player
+	 * @param board the indexes of the 0 - 5 community cards
+	 * @param trials the number of deals to sample
+	 * @param budgetNanos the most time to spend, in nanoseconds
+	 * @param random the generator the deals are seeded from
+	 * @return the equity of each player
+	 * @throws IllegalArgumentException if a range is empty or the ranges
+	 * almost never fit together
+	 */
+	public Equity[] calculate(HandRange[] ranges, int[] board, int trials, long budgetNanos,
+			FastRandom random) {
+		int[][] combos = combos(ranges, board);
+		int[][] cumulative = new int[ranges.length][];
+		for (int p = 0; p < ranges.length; p++) {
+			cumulative[p] = new int[combos[p].length];
+			int total = 0;
+			for (int i = 0; i < combos[p].length; i++) {
+				total += ranges[p].getWeight(combos[p][i]);
+				cumulative[p][i] = total;
+			}
+		}
+		long now = System.nanoTime();
+		long deadline = (budgetNanos > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + budgetNanos;
+		Counts counts = hands.getPool().invoke(new SampledDeals(board, combos, cumulative,
+				trials, deadline, random));
+		return counts.toEquities(false);
+	}
+	
+	/**
+	 * The wins, ties, losses and pot share of each player.
+	 */
+	private static class Counts {
+		final long[] wins;
+		final long[] ties;
+		final long[] losses;
+		final double[] shares;
+		
+		Counts(int numPlayers) {
+			wins = new long[numPlayers];
+			ties = new long[numPlayers];
+			losses = new long[numPlayers];
+			shares = new double[numPlayers];
+		}
+		
+		/**
+		 * Adds a deal, given the hand value of each player.
+		 */
+		void add(int[] values, long weight) {
+			int best = 0;
+			int numBest = 0;
+			for (int value: values) {
+				if (value > best) {
+					best = value;
+					numBest = 1;
+				}
+				else if (value == best) {
+					numBest++;
+				}
+			}
+			for (int p = 0; p < values.length; p++) {
+				if (values[p] < best) {
+					losses[p] += weight;
+				}
+				else {
+					if (numBest == 1) {
+						wins[p] += weight;
+					}
+					else {
+						ties[p] += weight;
+					}
+					shares[p] += (double) weight / numBest;
+				}
+			}
+		}
+		
+		Counts add(Counts other) {
+			for (int p = 0; p < wins.length; p++) {
+				wins[p] += other.wins[p];
+				ties[p] += other.ties[p];
+				losses[p] += other.losses[p];
+				shares[p] += other.shares[p];
+			}
+			return this;
+		}
+		
+		Equity[] toEquities(boolean exact) {
+			Equity[] equities = new Equity[wins.length];
+			for (int p = 0; p < equities.length; p++) {
+				equities[p] = new Equity(wins[p], ties[p], losses[p], shares[p], exact);
+			}
+			return equities;
+		}
+	}
+	
+	/**
+	 * The deals starting with a range of the first player's combos. Splits
+	 * itself in half until it has a single combo, then deals the other
+	 * players' combos around it.
+	 */
+	private class ExactDeals extends RecursiveTask<Counts> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final HandRange[] ranges;
+		private final int[][] combos;
+		private final int[] values;
+		private final int from;
+		private final int to;
+		
+		private Counts counts;
+		private int[] dealValues;
+		
+		ExactDeals(HandRange[] ranges, int[][] combos, int[] values, int from, int to) {
+			this.ranges = ranges;
+			this.combos = combos;
+			this.values = values;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Counts compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				ExactDeals left = new ExactDeals(ranges, combos, values, from, middle);
+				ExactDeals right = new ExactDeals(ranges, combos, values, middle, to);
+				left.fork();
+				Counts result = right.compute();
+				return result.add(left.join());
+			}
+			counts = new Counts(ranges.length);
+			dealValues = new int[ranges.length];
+			int combo = combos[0][from];
+			dealValues[0] = values[combo];
+			deal(1, HandRange.comboMask(combo), ranges[0].getWeight(combo));
+			return counts;
+		}
+		
+		/**
+		 * Deals each combo of a player that doesn't share a card with
+		 * the players before.
+		 */
+		private void deal(int player, long used, long weight) {
+			if (player == ranges.length) {
+				counts.add(dealValues, weight);
+				return;
+			}
+			for (int combo: combos[player]) {
+				if ((HandRange.comboMask(combo) & used) == 0) {
+					dealValues[player] = values[combo];
+					deal(player + 1, used | HandRange.comboMask(combo),
+							weight * ranges[player].getWeight(combo));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A share of the sampled deals. Splits itself in half until it is small
+	 * enough to run, giving each half its own random stream.
+	 */
+	private class SampledDeals extends RecursiveTask<Counts> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int[] board;
+		private final int[][] combos;
+		private final int[][] cumulative;
+		private final int trials;
+		private final long deadline;
+		private final FastRandom random;
+		
+		SampledDeals(int[] board, int[][] combos, int[][] cumulative, int trials,
+				long deadline, FastRandom random) {
+			this.board = board;
+			this.combos = combos;
+			this.cumulative = cumulative;
+			this.trials = trials;
+			this.deadline = deadline;
+			this.random = random;
+		}
+		
+		@Override
+		protected Counts compute() {
+			if (trials > CHUNK_TRIALS) {
+				SampledDeals left = new SampledDeals(board, combos, cumulative, trials / 2,
+						deadline, random.split());
+				SampledDeals right = new SampledDeals(board, combos, cumulative,
+						trials - trials / 2, deadline, random);
+				left.fork();
+				Counts result = right.compute();
+				return result.add(left.join());
+			}
+			return run();
+		}
+		
+		private Counts run() {
+			int numPlayers = combos.length;
+			Counts counts = new Counts(numPlayers);
+			int[] chosen = new int[numPlayers];
+			int[] values = new int[numPlayers];
+			int[] cards = new int[7];
+			System.arraycopy(board, 0, cards, 0, board.length);
+			long boardMask = boardMask(board);
+			
+			for (int t = 0; t < trials; t++) {
+				if (((t & 63) == 0) && (System.nanoTime() > deadline) && (t > 0)) {
+					break;
+				}
+				long used = deal(chosen, boardMask);
+				for (int i = board.length; i < 5; i++) {
+					int card;
+					do {
+						card = random.nextInt(Card.DECK_SIZE);
+					} while ((used & (1L << card)) != 0);
+					used |= 1L << card;
+					cards[i] = card;
+				}
+				int node = hands.boardNode(cards);
+				for (int p = 0; p < numPlayers; p++) {
+					cards[5] = HandRange.lowCard(chosen[p]);
+					cards[6] = HandRange.highCard(chosen[p]);
+					values[p] = hands.evaluate(cards, node);
+				}
+				counts.add(values, 1);
+			}
+			return counts;
+		}
+		
+		/**
+		 * Picks a combo for each player in proportion to the weights,
+		 * starting again whenever a card is used twice.
+		 * @return the mask of the used cards
+		 */
+		private long deal(int[] chosen, long boardMask) {
+			for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+				long used = boardMask;
+				int p = 0;
+				for (; p < chosen.length; p++) {
+					int[] sums = cumulative[p];
+					int target = random.nextInt(sums[sums.length - 1]);
+					//the first combo whose running total passes the target
+					int low = 0;
+					int high = sums.length - 1;
+					while (low < high) {
+						int middle = (low + high) >>> 1;
+						if (sums[middle] > target) high = middle;
+						else low = middle + 1;
+					}
+					long mask = HandRange.comboMask(combos[p][low]);
+					if ((used & mask) != 0) break;
+					used |= mask;
+					chosen[p] = combos[p][low];
+				}
+				if (p == chosen.length) {
+					return used;
+				}
+			}
+			throw new IllegalArgumentException("The ranges almost never fit together");
+		}
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Prints the equity of some range match ups.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		RangeEquityCalculator calculator = getDefault();
+		String[][] matchUps = {
+				{"AsAh", "random"},
+				{"AA", "KK"},
+				{"QQ+, AKs", "22+, A2s+, KTs+, ATo+"},
+				{"AKs, AQo:0.5", "TT-77", "76s-54s"},
+		};
+		for (String[] matchUp: matchUps) {
+			HandRange[] ranges = new HandRange[matchUp.length];
+			for (int p = 0; p < ranges.length; p++)
+				ranges[p] = HandRange.parse(matchUp[p]);
+			long start = System.nanoTime();
+			Equity[] equities = calculator.calculate(ranges, new int[0], 1000000,
+					Long.MAX_VALUE, new FastRandom(1));
+			long nanos = System.nanoTime() - start;
+			for (int p = 0; p < ranges.length; p++)
+				System.out.println(matchUp[p] + " (" + ranges[p] + "): " + equities[p]);
+			System.out.println("  in " + nanos / 1000000 + " ms");
+		}
+		
+		//exact against sampled on a complete board
+		HandRange[] ranges = {HandRange.parse("22+, A2s+, K9s+, QTs+, ATo+, KJo+"),
+				HandRange.parse("random")};
+		int[] board = {Card.getCard(Suit.SPADES, Number.KING).getIndex(),
+				Card.getCard(Suit.HEARTS, Number.NINE).getIndex(),
+				Card.getCard(Suit.HEARTS, Number.FOUR).getIndex(),
+				Card.getCard(Suit.CLUBS, Number.TWO).getIndex(),
+				Card.getCard(Suit.DIAMONDS, Number.JACK).getIndex()};
+		long start = System.nanoTime();
+		Equity[] exact = calculator.calculate(ranges, board);
+		System.out.println("exact " + exact[0] + " in " + (System.nanoTime() - start) / 1000000 +
+				" ms");
+		Equity[] sampled = calculator.calculate(ranges, board, 2000000, Long.MAX_VALUE,
+				new FastRandom(1));
+		System.out.println("sampled " + sampled[0]);
+	}
+
+}
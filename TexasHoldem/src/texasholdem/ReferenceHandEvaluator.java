@@ -0,0 +1,393 @@
+package texasholdem;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedList;
+
+/**
+ * The original <code>FinalHandChecker</code> hand checks, kept as the
+ * reference <code>HandEvaluator</code> that the faster engines are tested
+ * against. The cards are sorted and then checked for each poker hand in
+ * ascending order, each check replacing the best cards when it finds its hand.
+ * This evaluator keeps working state in fields, so an instance must not
+ * be shared between threads.
+ * @author John Wardell
+ *
+ */
+public class ReferenceHandEvaluator implements HandEvaluator {
+	
+	private static final CardNumComparator<Card> CNC = new CardNumComparator<>();
+	
+	private Card[] currentCards = new Card[5];
+	
+	private EnumMap<Hand, Boolean> handPresenceMap = new EnumMap<>(Hand.class);
+	
+	/**
+	 * A no argument constructor.
+	 */
+	public ReferenceHandEvaluator() {}
+	
+	/**
+	 * Evaluates cards given as card indexes.
+	 * @param cards the array holding the indexes of the cards
+	 * @param offset the position of the first card in <code>cards</code>
+	 * @param length the number of cards, 5 - 7
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(int[] cards, int offset, int length) {
+		Card[] handCards = new Card[length];
+		for (int i = 0; i < length; i++)
+			handCards[i] = Card.getCard(cards[offset + i]);
+		return check(handCards);
+	}
+	
+	/**
+	 * Evaluates the cards in a <code>Card</code> array.
+	 * The array is not modified.
+	 * @param cards the 5 - 7 cards to evaluate
+	 * @return the hand value of the cards
+	 */
+	public int evaluate(Card[] cards) {
+		return check(Arrays.copyOf(cards, cards.length));
+	}
+	
+	/**
+	 * Gets the best cards of the last cards evaluated, least important first.
+	 * @return the <code>currentCards</code> array
+	 */
+	public Card[] getBestCards() {
+		return currentCards;
+	}
+	
+	/**
+	 * Runs the hand checks and turns the result into a hand value.
+	 * @param cards the cards to check, will be sorted
+	 * @return the hand value of the cards
+	 */
+	private int check(Card[] cards) {
+		//reset handPresenceMap
+		for (Hand h: Hand.values())
+			handPresenceMap.put(h, false);
+		
+		handCheck(cards);
+		
+		Hand hand = null;
+		for (Hand h: Hand.values()) {
+			if (handPresenceMap.get(h))
+				hand = h;
+		}
+		return HandValue.make(hand.ordinal(), rank(4), rank(3), rank(2), rank(1), rank(0));
+	}
+	
+	/**
+	 * Gets the value ordinal of one of the current cards.
+	 * @param i the index in <code>currentCards</code>
+	 * @return the value ordinal of the card
+	 */
+	private int rank(int i) {
+		return currentCards[i].getNumber().ordinal();
+	}
+	
+	/**
+	 * Checks the 1 hand passed to it for the presence of a poker hand.
+	 * Updates the <code>handPresenceMap</code> for current hand.
+	 * Puts the best 5 cards from <code>cards</code> into 
+	 * <code>currentCards</code>.
+	 * @param cards the 5 - 7 <code>Card</code> array that the
+	 * hand can be made out of
+	 */
+	private void handCheck(Card[] cards) {
+		//sort cards in ascending number order
+		Arrays.sort(cards, CNC);
+		
+		//call the hand check methods in ascending hand order
+		highCardCheck(cards);
+		pairCheck(cards);
+		threeKindCheck(cards);
+		straightCheck(cards);
+		flushCheck(cards);
+		fullHouseCheck(cards);
+		fourKindCheck(cards);
+		straightFlushCheck(cards);
+		
+		
+	}
+	
+	/**
+	 * Must be called first among the 'hand' methods.
+	 * @param cards the current cards being analyzed
+	 */
+	private void highCardCheck(Card[] cards) {
+		int j = cards.length;
+		for (int i = currentCards.length - 1; i >= 0; i--) { 
+			j--;
+			if (j >= 0) {
+				currentCards[i] = cards[j];
+			}
+		}
+		handPresenceMap.put(Hand.HIGH_CARD, true);
+	}
+	
+	/**
+	 * Must be called second among the 'hand' methods.
+	 * @param cards the current cards being analyzed
+	 */
+	private void pairCheck(Card[] cards) {
+		LinkedList<Card> pairs = new LinkedList<>();
+		LinkedList<Card> tempHand = new LinkedList<>();
+		
+		int pairCount = 0;
+		int i = cards.length - 1;
+		while (i >= 0) {
+			if ((i > 0) && (cards[i].isSameNum(cards[i - 1]))) {
+				pairCount++;
+				if (pairCount < 3) { 
+				    pairs.addFirst(cards[i]);
+				    pairs.addFirst(cards[i - 1]);
+				    i -= 2;
+				}
+				else {
+					tempHand.addFirst(cards[i]);
+					tempHand.addFirst(cards[i-1]);
+					i -= 2;
+				}
+			}
+			else {
+				tempHand.addFirst(cards[i]);
+				i--;
+			}
+		}
+		//combine lists 
+		tempHand.addAll(pairs);
+		//trim to 5 elements
+		while (tempHand.size() > 5) tempHand.remove();
+		
+		if (pairCount > 0)
+		    currentCards = tempHand.toArray(currentCards);
+		
+		if (pairCount == 1) {
+			handPresenceMap.put(Hand.PAIR, true);
+		}
+		else if (pairCount > 1) {
+			handPresenceMap.put(Hand.TWO_PAIR, true);
+		}
+		
+	}
+	
+	/**
+	 * Must be called third among the 'hand' methods.
+	 * @param cards the current cards being analyzed
+	 */
+	private void threeKindCheck(Card[] cards) {
+		LinkedList<Card> threeKind = new LinkedList<>();
+		LinkedList<Card> tempHand = new LinkedList<>();
+		
+		int i = cards.length - 1;
+		while(i >= 0) {
+			if ((i > 1) && (cards[i].isSameNum(cards[i - 2]))) {
+				threeKind.addFirst(cards[i]);
+				threeKind.addFirst(cards[i - 1]);
+				threeKind.addFirst(cards[i - 2]);
+				i -= 3;
+				handPresenceMap.put(Hand.THREE_OF_A_KIND, true);
+			}
+			else {
+				tempHand.addFirst(cards[i]);
+				i--;
+			}
+		}
+		tempHand.addAll(threeKind);
+		while (tempHand.size() > 5) tempHand.remove();
+			
+		if (handPresenceMap.get(Hand.THREE_OF_A_KIND)) 
+		    currentCards = tempHand.toArray(currentCards);
+	}
+	
+	/**
+	 * Must be called fourth among the 'hand' methods.
+	 * Used in straightFlush method.
+	 * @param cards the current cards being analyzed
+	 * @return true if straight present, otherwise false
+	 */
+	private boolean straightCheck(Card[] cards) {
+		LinkedList<Card> tempHand = new LinkedList<>();
+		
+		for (int i = cards.length-1; i > cards.length-5; i--) {
+			tempHand.clear();
+			tempHand.add(cards[i]);
+			
+			int j = i;
+			while (j > 0) {
+				if (cards[j - 1].isNumNext(cards[j])) {
+					j--;
+					tempHand.addFirst(cards[j]);
+				}
+				else if (cards[j].isSameNum(cards[j-1])) {
+					j--;
+				}
+				else break;
+			}
+			if (tempHand.size() > 4) {
+				while (tempHand.size() > 5) tempHand.remove();
+				currentCards = tempHand.toArray(currentCards);
+				handPresenceMap.put(Hand.STRAIGHT, true);
+				return true;
+			}
+			//in case there is an A,2,3,4,5 straight
+			if ((tempHand.size() == 4) && (cards[cards.length-1].getNumber() ==
+					Number.ACE) && (tempHand.getFirst().getNumber() ==
+					Number.TWO)) {
+				tempHand.addFirst(cards[cards.length-1]);
+				while (tempHand.size() > 5) tempHand.remove();
+				currentCards = tempHand.toArray(currentCards);
+				handPresenceMap.put(Hand.STRAIGHT, true);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Must be called fifth among the 'hand' methods.
+	 * @param cards the current cards being analyzed
+	 */
+	private void flushCheck(Card[] cards) {
+		LinkedList<Card> tempHand = new LinkedList<>();
+		
+		for (int i = cards.length - 1; i > 3; i--) {
+			tempHand.clear();
+			tempHand.add(cards[i]);
+			for (int j = i - 1; j >= 0; j--) {
+				if (cards[i].isSameSuit(cards[j])) 
+					tempHand.addFirst(cards[j]);
+			}
+			if (tempHand.size() >= 5) {
+				handPresenceMap.put(Hand.FLUSH, true);
+				break;
+			}
+		}
+		if (tempHand.size() < 5) return;
+		while (tempHand.size() > 5) tempHand.remove();
+		
+		if (handPresenceMap.get(Hand.FLUSH))
+			currentCards = tempHand.toArray(currentCards);
+	}
+	
+	/**
+	 * Must be called sixth among the 'hand' methods.
+	 * @param cards the current cards being analyzed
+	 */
+	private void fullHouseCheck(Card[] cards) {
+		//if there is no three of kind, there is no full house
+		if (!handPresenceMap.get(Hand.THREE_OF_A_KIND)) return;
+		
+		LinkedList<Card> tempHand = new LinkedList<>();
+		
+		for (int i = cards.length - 1; i > 1; i--) {
+			if (cards[i].isSameNum(cards[i-2])) {
+				tempHand.addFirst(cards[i]);
+				tempHand.addFirst(cards[i-1]);
+				tempHand.addFirst(cards[i-2]);
+				break;
+			}
+		}
+		
+		for (int i = cards.length-1; i > 0; i--) {
+			if ((i > 1) && cards[i].isSameNum(cards[i-2]) &&
+					cards[i].equals(tempHand.peekLast()))
+				i -= 3;
+			
+			if ((i > 0) && cards[i].isSameNum(cards[i-1])) {
+				tempHand.addFirst(cards[i]);
+				tempHand.addFirst(cards[i-1]);
+				handPresenceMap.put(Hand.FULL_HOUSE, true);
+				break;
+			}
+		}
+		
+		if (handPresenceMap.get(Hand.FULL_HOUSE))
+			currentCards = tempHand.toArray(currentCards);
+		
+	}
+	
+	/**
+	 * Must be called seventh among the 'hand' methods.
+	 * @param cards the current cards being analyzed
+	 */
+	private void fourKindCheck(Card[] cards) {
+		int i = cards.length - 1;
+		while (i > 2) {
+			if (cards[i].isSameNum(cards[i - 3])) {
+				for (int j = currentCards.length - 1; j > 0; j--) {
+					currentCards[j] = cards[i - (j - 1)];
+				}
+				//add next highest card to bestHand
+				if (i == cards.length - 1) 
+					currentCards[0] = cards[i - 4];
+				else currentCards[0] = cards[cards.length - 1];
+				
+				handPresenceMap.put(Hand.FOUR_OF_A_KIND, true);
+				break;
+			}
+			else i--;
+		}
+	}
+	
+	/**
+	 * Must be called eighth among the 'hand' methods.
+	 * Relies on the straightCheck method called inside.
+	 * @param cards the current cards being analyzed
+	 */
+	private void straightFlushCheck(Card[] cards) {
+		if (!handPresenceMap.get(Hand.FLUSH) ||
+				!handPresenceMap.get(Hand.STRAIGHT)) return;
+		
+		LinkedList<Card> tempHand = new LinkedList<>();
+		
+		for (int i = cards.length-1; i > 3; i--) {
+			tempHand.clear();
+			tempHand.add(cards[i]);
+			for (int j = i-1; j >= 0; j--) {
+				if (cards[i].isSameSuit(cards[j]))
+					tempHand.addFirst(cards[j]);
+			}
+			if (tempHand.size() >= 5) break;
+		}
+		if (tempHand.size() < 5) return;
+		
+		Card[] tempArray = new Card[tempHand.size()];
+		tempArray = tempHand.toArray(tempArray);
+		//the following call to straightCheck will fill bestHand appropriately
+		if (!this.straightCheck(tempArray)) return;
+		
+		handPresenceMap.put(Hand.STRAIGHT_FLUSH, true);
+		
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Compares this evaluator on random hands with the evaluator named
+	 * by the first argument, the lookup evaluator by default.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		HandEvaluator other = HandEvaluators.forName((args.length > 0) ? args[0] : "lookup");
+		HandEvaluator reference = new ReferenceHandEvaluator();
+		Deck deck = new Deck();
+		int[] cards = new int[7];
+		int mismatches = 0;
+		for (int n = 0; n < 1000000; n++) {
+			deck.fillDeck();
+			int length = 5 + (n % 3);
+			for (int i = 0; i < length; i++)
+				cards[i] = deck.drawCard().getIndex();
+			int expected = reference.evaluate(cards, 0, length);
+			int actual = other.evaluate(cards, 0, length);
+			if (expected != actual && mismatches++ < 20) {
+				System.out.println(Arrays.toString(Arrays.copyOf(cards, length)) + " " +
+						HandValue.toString(expected) + " / " + HandValue.toString(actual));
+			}
+		}
+		System.out.println(mismatches + " mismatches");
+	}
+}
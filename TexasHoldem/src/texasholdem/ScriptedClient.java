@@ -0,0 +1,283 @@
+package texasholdem;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Plays many games against a <code>TableFrontEnd</code> at once, each
+ * over its own connection, from one thread. Every client takes a seat,
+ * some leave their first table at their first turn and sit at another,
+ * and each bets by a simple seeded script whenever it is sent a turn, and follows
+ * its chips from the events it is sent, which must agree with the chips
+ * the server reports when the game is over. It is for testing the whole
+ * path from the socket to the tables and back.
+ * @author John Wardell
+ *
+ */
+public class ScriptedClient {
+	
+	private final InetSocketAddress address;
+	private final int numClients;
+	private final int numPlayers;
+	private final int handsPerBlindLevel;
+	private final long seed;
+	private Selector selector;
+	private int finished;
+	private int connected;
+	private int won;
+	private int mismatched;
+	private int errors;
+	private long turns;
+	private long events;
+	private long hands;
+	private int moves;
+	
+	/**
+	 * Constructs a ScriptedClient.
+	 * @param address the front end's address.
+	 * @param numClients the number of connections, each playing one game.
+	 * @param numPlayers the number of players at each client's table.
+	 * @param handsPerBlindLevel the number of hands between blind increases.
+	 * @param seed the seed of the clients' betting.
+	 */
+	public ScriptedClient(InetSocketAddress address, int numClients, int numPlayers,
+			int handsPerBlindLevel, long seed) {
+		this.address = address;
+		this.numClients = numClients;
+		this.numPlayers = numPlayers;
+		this.handsPerBlindLevel = handsPerBlindLevel;
+		this.seed = seed;
+	}
+	
+	/**
+	 * Connects every client and plays until every game is over or the
+	 * time runs out.
+	 * @param timeoutMillis the most time to take.
+	 * @return true if every game finished.
+	 * @throws IOException if the connections fail.
+	 */
+	public boolean run(long timeoutMillis) throws IOException {
+		selector = Selector.open();
+		FastRandom seeds = new FastRandom(seed);
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		int started = 0;
+		while (finished < numClients) {
+			//connect a few at a time so the listen queue isn't flooded
+			for (int i = 0; (i < 256) && (started < numClients) && (started - finished - connected < 256); i++) {
+				SocketChannel channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				channel.connect(address);
+				channel.register(selector, SelectionKey.OP_CONNECT, new Client(seeds.split()));
+				started++;
+			}
+			long left = deadline - System.currentTimeMillis();
+			if (left <= 0) break;
+			selector.select(Math.min(left, 100));
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Client client = (Client) key.attachment();
+				try {
+					if (key.isConnectable()) {
+						client.connect(key);
+					}
+					else if (key.isReadable()) {
+						client.read(key);
+					}
+				}
+				catch (IOException e) {
+					errors++;
+					client.finish(key);
+				}
+			}
+		}
+		for (SelectionKey key: selector.keys()) {
+			key.channel().close();
+		}
+		selector.close();
+		return finished == numClients;
+	}
+	
+	/**
+	 * One scripted connection.
+	 */
+	private class Client {
+		
+		private final FastRandom random;
+		private final ByteBuffer in = ByteBuffer.allocate(TableProtocol.MAX_MESSAGE * 4);
+		private final ByteBuffer out = ByteBuffer.allocate(TableProtocol.MAX_CLIENT_MESSAGE);
+		private int seat = -1;
+		private int chips;
+		private boolean moved;
+		private boolean done;
+		
+		Client(FastRandom random) {
+			this.random = random;
+		}
+		
+		void connect(SelectionKey key) throws IOException {
+			SocketChannel channel = (SocketChannel) key.channel();
+			channel.finishConnect();
+			connected++;
+			key.interestOps(SelectionKey.OP_READ);
+			out.clear();
+			TableProtocol.putSeat(out, numPlayers, handsPerBlindLevel);
+			send(channel);
+		}
+		
+		void read(SelectionKey key) throws IOException {
+			SocketChannel channel = (SocketChannel) key.channel();
+			if (channel.read(in) < 0) {
+				errors++;
+				finish(key);
+				return;
+			}
+			in.flip();
+			int length;
+			while (!done && ((length = TableProtocol.messageLength(in)) > 0)) {
+				int end = in.position() + length;
+				in.getShort();
+				handle(key, in.get() & 0xff);
+				in.position(end);
+			}
+			in.compact();
+		}
+		
+		private void handle(SelectionKey key, int type) throws IOException {
+			if ((seat < 0) && (type != TableProtocol.SEATED)) {
+				//sent by the table that was left before it was closed
+				return;
+			}
+			switch (type) {
+			case TableProtocol.SEATED:
+				in.getInt();
+				seat = in.get();
+				in.get();
+				chips = in.getInt();
+				break;
+			case TableProtocol.EVENTS:
+				for (int i = in.get() & 0xff; i > 0; i--) {
+					long event = in.getLong();
+					events++;
+					int eventType = GameEvent.type(event);
+					if ((GameEvent.seat(event) == seat) && ((eventType == GameEvent.BET) ||
+							(eventType == GameEvent.REFUND) || (eventType == GameEvent.AWARD))) {
+						chips = GameEvent.b(event);
+					}
+				}
+				break;
+			case TableProtocol.TURN:
+				if (!moved && (random.nextInt(8) == 0)) {
+					moved = true;
+					moves++;
+					seat = -1;
+					out.clear();
+					TableProtocol.putLeave(out);
+					TableProtocol.putSeat(out, numPlayers, handsPerBlindLevel);
+					send((SocketChannel) key.channel());
+					break;
+				}
+				moved = true;
+				turns++;
+				int toCall = in.getInt();
+				int maxBet = in.getInt();
+				int minBet = in.getInt();
+				int bet = toCall;
+				int roll = random.nextInt(100);
+				if ((roll < 15) && (toCall > 0)) {
+					bet = PokerTools.FOLD;
+				}
+				else if (roll < 30) {
+					bet = Math.min(toCall + minBet, maxBet);
+				}
+				out.clear();
+				TableProtocol.putAct(out, bet);
+				send((SocketChannel) key.channel());
+				break;
+			case TableProtocol.GAME_OVER:
+				boolean win = in.get() != 0;
+				int finalChips = in.getInt();
+				hands += in.getInt();
+				if (win) won++;
+				if (finalChips != chips) mismatched++;
+				finish(key);
+				break;
+			case TableProtocol.ERROR:
+				int code = in.get();
+				if (code != TableProtocol.EVENTS_LOST) {
+					errors++;
+				}
+				break;
+			default:
+				errors++;
+			}
+		}
+		
+		private void send(SocketChannel channel) throws IOException {
+			out.flip();
+			//a few bytes always fit in the socket's buffer
+			channel.write(out);
+		}
+		
+		void finish(SelectionKey key) throws IOException {
+			if (done) return;
+			done = true;
+			finished++;
+			connected--;
+			key.cancel();
+			key.channel().close();
+		}
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Starts a server and front end on the loopback address and plays
+	 * scripted clients against it.
+	 * Arguments: [clients] [players a table] [threads]
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		int numClients = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+		int numPlayers = (args.length > 1) ? Integer.parseInt(args[1]) : 6;
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) :
+			Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		TableServer server = new TableServer(executor, 12);
+		TableFrontEnd frontEnd = new TableFrontEnd(server, new InetSocketAddress("127.0.0.1", 0));
+		Thread frontEndThread = new Thread(frontEnd, "front end");
+		frontEndThread.start();
+		
+		ScriptedClient clients = new ScriptedClient(frontEnd.getAddress(), numClients, numPlayers, 20, 7);
+		long start = System.nanoTime();
+		boolean done = clients.run(120000);
+		long nanos = System.nanoTime() - start;
+		System.out.println(clients.finished + " of " + numClients + " games finished" +
+				(done ? "" : " (timed out)") + " in " + (nanos / 1000000) + " ms");
+		System.out.println(clients.moves + " moved tables, " + clients.won + " won, " + clients.hands + " hands, " + clients.turns +
+				" turns, " + clients.events + " events, " + (clients.hands * 1000000000L / nanos) +
+				" hands a second");
+		System.out.println("chips that disagreed with the events: " + clients.mismatched +
+				", errors: " + clients.errors);
+		System.out.println(frontEnd.getMessagesIn() + " messages in, " + frontEnd.getBytesOut() +
+				" bytes out, " + frontEnd.getDropped() + " dropped, " + frontEnd.getBufferPool().getCreated() +
+				" buffers made");
+		
+		frontEnd.close();
+		frontEndThread.join();
+		server.shutdown();
+		executor.shutdown();
+		System.out.println(server.getNumTables() + " tables and " + frontEnd.getNumConnections() +
+				" connections left");
+	}
+
+}
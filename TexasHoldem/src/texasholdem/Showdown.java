@@ -0,0 +1,113 @@
+package texasholdem;
+
+import java.util.Arrays;
+
+/**
+ * The immutable result of a showdown, returned by
+ * <code>ShowdownEvaluator</code>. Players are identified by their index
+ * in the array of hands that was evaluated.
+ * @author John Wardell
+ *
+ */
+public final class Showdown {
+	
+	private final int[] winners;
+	private final int[] values;
+	private final Hand winningHand;
+	private final Card[] winningCards;
+	
+	/**
+	 * Constructs a <code>Showdown</code>. The arrays are kept, not copied,
+	 * and must not be changed afterwards.
+	 * @param winners the indexes of the 1 or more winners, in order
+	 * @param values the hand value of each player
+	 * @param winningHand the hand of the winners
+	 * @param winningCards the best cards of the first winner
+	 */
+	Showdown(int[] winners, int[] values, Hand winningHand, Card[] winningCards) {
+		this.winners = winners;
+		this.values = values;
+		this.winningHand = winningHand;
+		this.winningCards = winningCards;
+	}
+	
+	/**
+	 * 
+	 * @return the number of winners, more than 1 for a tie.
+	 */
+	public int getNumWinners() {
+		return winners.length;
+	}
+	
+	/**
+	 * Gets one of the winners.
+	 * @param i 0 for the first winner
+	 * @return the index of the winning player
+	 */
+	public int getWinner(int i) {
+		return winners[i];
+	}
+	
+	/**
+	 * 
+	 * @return a copy of the indexes of the winners, in order.
+	 */
+	public int[] getWinners() {
+		return winners.clone();
+	}
+	
+	/**
+	 * Checks if a player won or tied for the win.
+	 * @param index the index of the player
+	 * @return true if the player is a winner
+	 */
+	public boolean isWinner(int index) {
+		for (int winner: winners) {
+			if (winner == index) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @return true if there is more than one winner.
+	 */
+	public boolean isTie() {
+		return winners.length > 1;
+	}
+	
+	/**
+	 * Gets the hand value a player had.
+	 * @param index the index of the player
+	 * @return the player's hand value
+	 */
+	public int getValue(int index) {
+		return values[index];
+	}
+	
+	/**
+	 * 
+	 * @return the winning hand, e.g. <code>Hand.PAIR</code>.
+	 */
+	public Hand getWinningHand() {
+		return winningHand;
+	}
+	
+	/**
+	 * Gets the best cards of the first winner, least important first.
+	 * With fewer than 5 cards these are simply all of the winner's cards.
+	 * @return a copy of the winning cards
+	 */
+	public Card[] getWinningCards() {
+		return winningCards.clone();
+	}
+	
+	/**
+	 * Creates and returns a string description of this showdown.
+	 */
+	public String toString() {
+		return "Showdown winners " + Arrays.toString(winners) + " with " +
+				winningHand + " " + Arrays.toString(winningCards);
+	}
+
+}
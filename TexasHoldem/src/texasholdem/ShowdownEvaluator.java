@@ -0,0 +1,98 @@
+package texasholdem;
+
+/**
+ * Finds the winners of a showdown without keeping any state, so one
+ * instance can be shared by any number of tables and threads as long as
+ * its <code>HandEvaluator</code> is thread safe, which all of them are
+ * except the <code>ReferenceHandEvaluator</code>. Each call returns its
+ * result in an immutable <code>Showdown</code>.
+ * @author John Wardell
+ *
+ */
+public class ShowdownEvaluator {
+	
+	private final HandEvaluator evaluator;
+	/**
+	 * Used for fewer than 5 cards, which the other evaluators don't handle.
+	 */
+	private final HandEvaluator smallHands = new BitmaskHandEvaluator();
+	
+	/**
+	 * Holds the shared instance until it is first needed.
+	 */
+	private static class Holder {
+		static final ShowdownEvaluator INSTANCE =
+				new ShowdownEvaluator(HandEvaluators.getDefault());
+	}
+	
+	/**
+	 * Constructs a <code>ShowdownEvaluator</code> that scores hands
+	 * with the supplied evaluator.
+	 * @param evaluator the <code>HandEvaluator</code> to use
+	 */
+	public ShowdownEvaluator(HandEvaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+	
+	/**
+	 * Gets the shared instance, which uses <code>HandEvaluators.getDefault</code>.
+	 * @return the shared <code>ShowdownEvaluator</code>
+	 */
+	public static ShowdownEvaluator getDefault() {
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * Checks all players' cards and shared cards to determine the winner.
+	 * The winning indices are based on the order of the array
+	 * <code>hands</code>.
+	 * @param commCards the 0 - 5 community cards shared by all players 
+	 * @param hands the array of arrays of cards that represent each player's
+	 * individual hand.
+	 * @return the result of the showdown
+	 */
+	public Showdown evaluate(Card[] commCards, Card[][] hands) {
+		int length = commCards.length + 2;
+		HandEvaluator handEvaluator = (length < 5) ? smallHands : evaluator;
+		int[] cards = new int[length];
+		for (int i = 0; i < commCards.length; i++)
+			cards[i + 2] = commCards[i].getIndex();
+		
+		int[] values = new int[hands.length];
+		int best = -1;
+		int numWinners = 0;
+		for (int m = 0; m < hands.length; m++) {
+			cards[0] = hands[m][0].getIndex();
+			cards[1] = hands[m][1].getIndex();
+			values[m] = handEvaluator.evaluate(cards, 0, length);
+			if (values[m] > best) {
+				best = values[m];
+				numWinners = 1;
+			}
+			else if (values[m] == best) {
+				numWinners++;
+			}
+		}
+		
+		int[] winners = new int[numWinners];
+		int n = 0;
+		for (int m = 0; m < hands.length; m++) {
+			if (values[m] == best)
+				winners[n++] = m;
+		}
+		
+		//the first winner's best cards
+		cards[0] = hands[winners[0]][0].getIndex();
+		cards[1] = hands[winners[0]][1].getIndex();
+		Card[] winningCards;
+		if (length < 5) {
+			winningCards = Card.fromIndexes(cards, new Card[length]);
+		}
+		else {
+			winningCards = new Card[5];
+			HandValue.fillCards(best, cards, 0, length, winningCards);
+		}
+		return new Showdown(winners, values, HandValue.getHand(best), winningCards);
+	}
+
+}
@@ -0,0 +1,427 @@
+package texasholdem;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Splits the chips bet in a hand into a main pot and side pots.
+ * Each pot is a layer of the players' contributions, and a player can
+ * only win the layers they put in all of, so a short stack all in
+ * can't win more from each player than they put in themselves.
+ * <p>
+ * The seats are kept sorted by contribution as the bets arrive, so
+ * the layers are built in one pass over the sorted seats. Players who
+ * fold still leave their chips in the layers they reached, but can't
+ * win any of them. Eligibility is kept as a bitmask of seats.
+ * @author John Wardell
+ *
+ */
+public final class SidePots {
+	/**
+	 * The most seats a <code>SidePots</code> can hold, one for each bit of an <code>int</code>.
+	 */
+	public static final int MAX_SEATS = 32;
+	
+	private final int numSeats;
+	private final int[] contributions;
+	/**
+	 * The seats in order of contribution, smallest first.
+	 */
+	private final int[] order;
+	/**
+	 * Where each seat is in <code>order</code>.
+	 */
+	private final int[] position;
+	private int eligible;
+	
+	private final int[] amounts;
+	private final int[] potEligible;
+	private int numPots;
+	private boolean built;
+	
+	/**
+	 * Constructs the pots for a table, with every seat still in and
+	 * nothing bet.
+	 * @param numSeats the number of seats at the table.
+	 */
+	public SidePots(int numSeats) {
+		if ((numSeats < 1) || (numSeats > MAX_SEATS)) {
+			throw new IllegalArgumentException("Can't keep pots for " + numSeats + " seats");
+		}
+		this.numSeats = numSeats;
+		contributions = new int[numSeats];
+		order = new int[numSeats];
+		position = new int[numSeats];
+		amounts = new int[numSeats];
+		potEligible = new int[numSeats];
+		reset();
+	}
+	
+	/**
+	 * Empties the pots for a new hand. Every seat is in until it folds.
+	 */
+	public void reset() {
+		for (int i = 0; i < numSeats; i++) {
+			contributions[i] = 0;
+			order[i] = i;
+			position[i] = i;
+		}
+		eligible = (numSeats == MAX_SEATS) ? -1 : (1 << numSeats) - 1;
+		built = false;
+	}
+	
+	/**
+	 * @return the number of seats at the table.
+	 */
+	public int getNumSeats() {
+		return numSeats;
+	}
+	
+	/**
+	 * Sets how much a seat has put in this hand, moving it to its place
+	 * in the order. A bet only moves a seat past the seats it overtakes.
+	 * @param seat the seat.
+	 * @param total the seat's total contribution, e.g. <code>Player.getBet()</code>.
+	 */
+	public void setContribution(int seat, int total) {
+		if (total < 0) {
+			throw new IllegalArgumentException("Contribution " + total + " is negative");
+		}
+		contributions[seat] = total;
+		int p = position[seat];
+		while ((p + 1 < numSeats) && (contributions[order[p + 1]] < total)) {
+			order[p] = order[p + 1];
+			position[order[p]] = p;
+			p++;
+		}
+		while ((p > 0) && (contributions[order[p - 1]] > total)) {
+			order[p] = order[p - 1];
+			position[order[p]] = p;
+			p--;
+		}
+		order[p] = seat;
+		position[seat] = p;
+		built = false;
+	}
+	
+	/**
+	 *
+	 * @param seat the seat.
+	 * @return how much the seat has put in this hand.
+	 */
+	public int getContribution(int seat) {
+		return contributions[seat];
+	}
+	
+	/**
+	 * Takes a seat out of the running for every pot. Its chips stay in them.
+	 * @param seat the seat, folded or not dealt in.
+	 */
+	public void fold(int seat) {
+		eligible &= ~(1 << seat);
+		built = false;
+	}
+	
+	/**
+	 *
+	 * @param seat the seat.
+	 * @return true if the seat can still win a pot.
+	 */
+	public boolean isIn(int seat) {
+		return (eligible & (1 << seat)) != 0;
+	}
+	
+	/**
+	 * @return the seat that has put in the most, the lowest such seat
+	 * if it is shared.
+	 */
+	public int getTopSeat() {
+		return order[numSeats - 1];
+	}
+	
+	/**
+	 * Gets how much of the top seat's contribution nobody else matched,
+	 * which goes back to it rather than into a pot.
+	 * @return the uncalled amount, 0 if the top contribution is matched.
+	 */
+	public int getUncalled() {
+		if (numSeats == 1) {
+			return 0;
+		}
+		return contributions[order[numSeats - 1]] - contributions[order[numSeats - 2]];
+	}
+	
+	/**
+	 * @return the chips in all the pots.
+	 */
+	public int getTotal() {
+		int total = 0;
+		for (int c: contributions) {
+			total += c;
+		}
+		return total;
+	}
+	
+	/**
+	 * Builds the pots if a bet or fold has changed them.
+	 * A pot starts at each level a seat still in has put in, holding
+	 * everyone's chips between that level and the one below, and the
+	 * seats still in that reached it can win it. Chips put in above the
+	 * top level by players who folded go in the last pot.
+	 */
+	private void build() {
+		if (built) {
+			return;
+		}
+		numPots = 0;
+		int remaining = eligible;
+		int below = 0;
+		int capped = 0;
+		for (int j = 0; j < numSeats; j++) {
+			int seat = order[j];
+			int level = contributions[seat];
+			int bit = 1 << seat;
+			if ((remaining & bit) != 0) {
+				int total = below + level * (numSeats - j);
+				if (total > capped) {
+					amounts[numPots] = total - capped;
+					potEligible[numPots] = remaining;
+					numPots++;
+					capped = total;
+				}
+				remaining &= ~bit;
+			}
+			below += level;
+		}
+		if (numPots > 0) {
+			amounts[numPots - 1] += below - capped;
+		}
+		built = true;
+	}
+	
+	/**
+	 * @return the number of pots, 1 for the main pot and 1 more for each
+	 * side pot.
+	 */
+	public int getNumPots() {
+		build();
+		return numPots;
+	}
+	
+	/**
+	 *
+	 * @param pot the pot, 0 for the main pot.
+	 * @return the chips in the pot.
+	 */
+	public int getAmount(int pot) {
+		build();
+		checkPot(pot);
+		return amounts[pot];
+	}
+	
+	/**
+	 *
+	 * @param pot the pot, 0 for the main pot.
+	 * @return the seats that can win the pot, a bit for each seat.
+	 */
+	public int getEligible(int pot) {
+		build();
+		checkPot(pot);
+		return potEligible[pot];
+	}
+	
+	private void checkPot(int pot) {
+		if ((pot < 0) || (pot >= numPots)) {
+			throw new IllegalArgumentException("There is no pot " + pot + " of " + numPots);
+		}
+	}
+	
+	/**
+	 * Finds who wins a pot and splits it between them. The winners are
+	 * the seats that can win it with the highest hand value. Chips that
+	 * don't split evenly go 1 each to the winners first after
+	 * <code>firstSeat</code>, going round the table, so the same hand is
+	 * always paid the same way.
+	 * @param pot the pot, 0 for the main pot.
+	 * @param values the hand value of each seat, only read for seats that can win.
+	 * @param firstSeat the seat to start from, e.g. the small blind.
+	 * @param winners the array the winning seats are written to, in order
+	 * round the table from <code>firstSeat</code>.
+	 * @param shares the array each winner's chips are written to.
+	 * @return the number of winners.
+	 */
+	public int split(int pot, int[] values, int firstSeat, int[] winners, int[] shares) {
+		int mask = getEligible(pot);
+		int best = Integer.MIN_VALUE;
+		int n = 0;
+		for (int k = 0; k < numSeats; k++) {
+			int seat = (firstSeat + k) % numSeats;
+			if ((mask & (1 << seat)) != 0) {
+				if (values[seat] > best) {
+					best = values[seat];
+					n = 0;
+				}
+				if (values[seat] == best) {
+					winners[n++] = seat;
+				}
+			}
+		}
+		int amount = amounts[pot];
+		int share = amount / n;
+		int odd = amount % n;
+		for (int k = 0; k < n; k++) {
+			shares[k] = (k < odd) ? share + 1 : share;
+		}
+		return n;
+	}
+	
+	/**
+	 * Pays the pots out by brute force to check <code>split</code>
+	 * against. The pots are made a chip's height at a time, the next
+	 * chip going in the same pot as the last while the same seats can
+	 * win it.
+	 */
+	private static int[] payByChip(int[] contributions, boolean[] in, int[] values, int firstSeat) {
+		int n = contributions.length;
+		int top = 0;
+		for (int c: contributions) {
+			top = Math.max(top, c);
+		}
+		int[] potMasks = new int[n + 1];
+		int[] potAmounts = new int[n + 1];
+		int numPots = 0;
+		for (int height = 1; height <= top; height++) {
+			int mask = 0;
+			int chips = 0;
+			for (int i = 0; i < n; i++) {
+				if (contributions[i] >= height) {
+					chips++;
+					if (in[i]) {
+						mask |= 1 << i;
+					}
+				}
+			}
+			if ((mask != 0) && ((numPots == 0) || (potMasks[numPots - 1] != mask))) {
+				potMasks[numPots++] = mask;
+			}
+			potAmounts[numPots - 1] += chips;
+		}
+		int[] paid = new int[n];
+		for (int p = 0; p < numPots; p++) {
+			int best = Integer.MIN_VALUE;
+			for (int i = 0; i < n; i++) {
+				if ((potMasks[p] & (1 << i)) != 0) {
+					best = Math.max(best, values[i]);
+				}
+			}
+			int numWinners = 0;
+			for (int i = 0; i < n; i++) {
+				if (((potMasks[p] & (1 << i)) != 0) && (values[i] == best)) {
+					numWinners++;
+				}
+			}
+			int odd = potAmounts[p] % numWinners;
+			for (int k = 0; k < n; k++) {
+				int seat = (firstSeat + k) % n;
+				if (((potMasks[p] & (1 << seat)) != 0) && (values[seat] == best)) {
+					paid[seat] += potAmounts[p] / numWinners;
+					if (odd > 0) {
+						paid[seat]++;
+						odd--;
+					}
+				}
+			}
+		}
+		return paid;
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Checks random 9 handed hands with folds, all ins and tied hands
+	 * against paying the pots a chip at a time, then times building
+	 * and paying the pots of a hand.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(3);
+		int seats = 9;
+		SidePots pots = new SidePots(seats);
+		int[] values = new int[seats];
+		int[] winners = new int[seats];
+		int[] shares = new int[seats];
+		int hands = 200000;
+		int wrong = 0;
+		int sidePots = 0;
+		for (int h = 0; h < hands; h++) {
+			pots.reset();
+			int[] contributions = new int[seats];
+			boolean[] in = new boolean[seats];
+			for (int i = 0; i < seats; i++) {
+				//a few stack sizes, so seats often put in the same
+				contributions[i] = (1 + random.nextInt(6)) * 15 + random.nextInt(2);
+				in[i] = random.nextInt(3) > 0;
+				values[i] = random.nextInt(4);
+			}
+			in[random.nextInt(seats)] = true;
+			//the bets come in a little at a time, in any order
+			int[] bet = new int[seats];
+			boolean more = true;
+			while (more) {
+				more = false;
+				for (int i = 0; i < seats; i++) {
+					if (bet[i] < contributions[i]) {
+						bet[i] = Math.min(contributions[i], bet[i] + 1 + random.nextInt(40));
+						pots.setContribution(i, bet[i]);
+						more = true;
+					}
+				}
+			}
+			for (int i = 0; i < seats; i++) {
+				if (!in[i]) {
+					pots.fold(i);
+				}
+			}
+			int first = random.nextInt(seats);
+			int[] paid = new int[seats];
+			int total = 0;
+			for (int p = 0; p < pots.getNumPots(); p++) {
+				int numWinners = pots.split(p, values, first, winners, shares);
+				for (int k = 0; k < numWinners; k++) {
+					paid[winners[k]] += shares[k];
+					total += shares[k];
+				}
+			}
+			sidePots += pots.getNumPots() - 1;
+			int[] expected = payByChip(contributions, in, values, first);
+			if ((total != pots.getTotal()) || !Arrays.equals(paid, expected)) {
+				if (wrong++ < 5) {
+					System.out.println(Arrays.toString(contributions) + " " + Arrays.toString(in) + " " +
+							Arrays.toString(values) + " paid " + Arrays.toString(paid) +
+							" expected " + Arrays.toString(expected));
+				}
+			}
+		}
+		System.out.printf("%d hands, %.2f side pots a hand, %d paid wrongly%n",
+				hands, sidePots / (double) hands, wrong);
+		
+		int[] stacks = {100, 250, 400, 400, 700, 1000, 1500, 2000, 5000};
+		for (int trial = 0; trial < 3; trial++) {
+			int reps = 2000000;
+			long sum = 0;
+			long start = System.nanoTime();
+			for (int r = 0; r < reps; r++) {
+				pots.reset();
+				for (int i = seats - 1; i >= 0; i--) {
+					pots.setContribution(i, stacks[i]);
+				}
+				pots.fold(r % seats);
+				for (int p = 0; p < pots.getNumPots(); p++) {
+					sum += pots.split(p, values, r % seats, winners, shares);
+				}
+			}
+			long nanos = System.nanoTime() - start;
+			System.out.printf("%.1f ns to build and split the pots of a 9 handed hand (%d)%n",
+					(double) nanos / reps, sum % 10);
+		}
+	}
+}
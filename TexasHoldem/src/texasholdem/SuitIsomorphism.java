@@ -0,0 +1,321 @@
+package texasholdem;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Maps hole cards and community cards to canonical forms that are the
+ * same for every relabeling of the suits, since swapping e.g. hearts and
+ * spades everywhere can't change the value of a hand. Keying caches and
+ * tables by these forms makes them about 20 times smaller.
+ * <ul>
+ * <li>The 1326 pairs of hole cards reduce to 169 starting hands,
+ * see <code>startingHandIndex</code>.</li>
+ * <li>The 22100 flops reduce to 1755, see <code>flopIndex</code>.</li>
+ * <li>Any hole cards with any board reduce to a <code>canonicalKey</code>,
+ * e.g. 1,286,792 keys for the 25,989,600 hole card and flop pairs.</li>
+ * </ul>
+ * Cards are card indexes, with versions of the methods for
+ * <code>Card[]</code> and packed card codes. Suits are ordered by the hole cards they hold, then by
+ * the board cards, and renamed in that order.
+ * @author John Wardell
+ *
+ */
+public class SuitIsomorphism {
+	
+	/**
+	 * The number of starting hands.
+	 */
+	public static final int NUM_STARTING_HANDS = 169;
+	/**
+	 * The number of flops.
+	 */
+	public static final int NUM_FLOPS = 1755;
+	
+	private static final char[] RANK_NAMES = "23456789TJQKA".toCharArray();
+	
+	/**
+	 * Holds the flop table until it is first needed.
+	 */
+	private static class Flops {
+		/**
+		 * The canonical flop index of each flop by combinatorial number.
+		 */
+		static final short[] INDEXES = new short[22100];
+		
+		static {
+			HashMap<Long, Integer> found = new HashMap<>();
+			int[] board = new int[3];
+			int n = 0;
+			for (board[2] = 2; board[2] < Card.DECK_SIZE; board[2]++)
+			for (board[1] = 1; board[1] < board[2]; board[1]++)
+			for (board[0] = 0; board[0] < board[1]; board[0]++) {
+				Long key = canonicalKey(board, 0, 0, 0, 3);
+				Integer index = found.get(key);
+				if (index == null) {
+					index = found.size();
+					found.put(key, index);
+				}
+				INDEXES[n++] = (short) (int) index;
+			}
+		}
+	}
+	
+	private SuitIsomorphism() {}
+	
+	/**
+	 * Gets the starting hand of 2 hole cards, 0 - 168. Pairs are at
+	 * value * 14, suited hands at low * 13 + high and the others at
+	 * high * 13 + low, using value ordinals.
+	 * @param card1 the index of the first card
+	 * @param card2 the index of the second card
+	 * @return the starting hand index
+	 */
+	public static int startingHandIndex(int card1, int card2) {
+		int rank1 = card1 % Card.NUM_RANKS;
+		int rank2 = card2 % Card.NUM_RANKS;
+		int high = Math.max(rank1, rank2);
+		int low = Math.min(rank1, rank2);
+		if (card1 / Card.NUM_RANKS == card2 / Card.NUM_RANKS) {
+			return low * Card.NUM_RANKS + high;
+		}
+		return high * Card.NUM_RANKS + low;
+	}
+	
+	/**
+	 * Gets the starting hand of 2 hole cards, 0 - 168.
+	 * @param card1 the first card
+	 * @param card2 the second card
+	 * @return the starting hand index
+	 */
+	public static int startingHandIndex(Card card1, Card card2) {
+		return startingHandIndex(card1.getIndex(), card2.getIndex());
+	}
+	
+	/**
+	 * Gets the usual name of a starting hand, e.g. "AKs", "T9o" or "77".
+	 * @param index the starting hand index
+	 * @return the name of the starting hand
+	 */
+	public static String startingHandName(int index) {
+		int row = index / Card.NUM_RANKS;
+		int column = index % Card.NUM_RANKS;
+		if (row == column) {
+			return "" + RANK_NAMES[row] + RANK_NAMES[row];
+		}
+		if (row < column) {
+			return "" + RANK_NAMES[column] + RANK_NAMES[row] + "s";
+		}
+		return "" + RANK_NAMES[row] + RANK_NAMES[column] + "o";
+	}
+	
+	/**
+	 * Gets the number of hole card pairs that make up a starting hand,
+	 * 6 for a pair, 4 for suited and 12 for the others.
+	 * @param index the starting hand index
+	 * @return the number of combinations
+	 */
+	public static int startingHandCombos(int index) {
+		int row = index / Card.NUM_RANKS;
+		int column = index % Card.NUM_RANKS;
+		if (row == column) return 6;
+		return (row < column) ? 4 : 12;
+	}
+	
+	/**
+	 * Gets the canonical flop of 3 cards, 0 - 1754. The table behind
+	 * this method is built the first time it is called.
+	 * @param card1 the index of the first card
+	 * @param card2 the index of the second card
+	 * @param card3 the index of the third card
+	 * @return the flop index
+	 */
+	public static int flopIndex(int card1, int card2, int card3) {
+		//sort the cards to find the combinatorial number
+		int low = Math.min(card1, Math.min(card2, card3));
+		int high = Math.max(card1, Math.max(card2, card3));
+		int middle = card1 + card2 + card3 - low - high;
+		int number = low + middle * (middle - 1) / 2 +
+				high * (high - 1) * (high - 2) / 6;
+		return Flops.INDEXES[number];
+	}
+	
+	/**
+	 * Gets the canonical flop of 3 cards, 0 - 1754.
+	 * @param flop the 3 flop cards
+	 * @return the flop index
+	 */
+	public static int flopIndex(Card[] flop) {
+		return flopIndex(flop[0].getIndex(), flop[1].getIndex(), flop[2].getIndex());
+	}
+	
+	/**
+	 * Gets a key that is the same for hole cards and a board exactly when
+	 * they are the same with the suits renamed. The key holds the renamed
+	 * cards, hole cards first, 6 bits each.
+	 * @param cards the array holding the indexes of the cards
+	 * @param holeOffset the position of the hole cards
+	 * @param numHole the number of hole cards, 0 - 2
+	 * @param boardOffset the position of the board cards
+	 * @param numBoard the number of board cards, 0 - 5
+	 * @return the canonical key
+	 */
+	public static long canonicalKey(int[] cards, int holeOffset, int numHole,
+			int boardOffset, int numBoard) {
+		//a 13 bit value mask for each suit, 16 bits apart
+		long hole = 0L;
+		long board = 0L;
+		for (int i = holeOffset; i < holeOffset + numHole; i++)
+			hole |= 1L << (16 * (cards[i] / Card.NUM_RANKS) + cards[i] % Card.NUM_RANKS);
+		for (int i = boardOffset; i < boardOffset + numBoard; i++)
+			board |= 1L << (16 * (cards[i] / Card.NUM_RANKS) + cards[i] % Card.NUM_RANKS);
+		return canonicalKey(hole, board);
+	}
+	
+	/**
+	 * Gets the canonical key of hole cards and a board given as packed
+	 * card codes.
+	 * @param codes the array holding the packed codes of the cards
+	 * @param holeOffset the position of the hole cards
+	 * @param numHole the number of hole cards, 0 - 2
+	 * @param boardOffset the position of the board cards
+	 * @param numBoard the number of board cards, 0 - 5
+	 * @return the canonical key
+	 * @see Card#getCode()
+	 */
+	public static long canonicalCodeKey(int[] codes, int holeOffset, int numHole,
+			int boardOffset, int numBoard) {
+		long hole = 0L;
+		long board = 0L;
+		for (int i = holeOffset; i < holeOffset + numHole; i++)
+			hole |= (long) Card.rankBitOf(codes[i]) << (16 * Card.suitOf(codes[i]));
+		for (int i = boardOffset; i < boardOffset + numBoard; i++)
+			board |= (long) Card.rankBitOf(codes[i]) << (16 * Card.suitOf(codes[i]));
+		return canonicalKey(hole, board);
+	}
+	
+	/**
+	 * Gets the canonical key of hole cards and a board.
+	 * @param hole the 0 - 2 hole cards
+	 * @param board the 0 - 5 board cards
+	 * @return the canonical key
+	 */
+	public static long canonicalKey(Card[] hole, Card[] board) {
+		long holeMasks = 0L;
+		long boardMasks = 0L;
+		for (Card card: hole)
+			holeMasks |= 1L << (16 * card.getSuit().ordinal() + card.getNumber().ordinal());
+		for (Card card: board)
+			boardMasks |= 1L << (16 * card.getSuit().ordinal() + card.getNumber().ordinal());
+		return canonicalKey(holeMasks, boardMasks);
+	}
+	
+	/**
+	 * Gets the canonical key of hole cards and a board given as value
+	 * masks, 16 bits for each suit in <code>Suit</code> order.
+	 * @param hole the value masks of the hole cards
+	 * @param board the value masks of the board cards
+	 * @return the canonical key
+	 */
+	public static long canonicalKey(long hole, long board) {
+		//order the suits by hole cards, then board cards, suit in the low bits
+		long s0 = sortKey(hole, board, 0);
+		long s1 = sortKey(hole, board, 1);
+		long s2 = sortKey(hole, board, 2);
+		long s3 = sortKey(hole, board, 3);
+		long t;
+		if (s0 < s1) { t = s0; s0 = s1; s1 = t; }
+		if (s2 < s3) { t = s2; s2 = s3; s3 = t; }
+		if (s0 < s2) { t = s0; s0 = s2; s2 = t; }
+		if (s1 < s3) { t = s1; s1 = s3; s3 = t; }
+		if (s1 < s2) { t = s1; s1 = s2; s2 = t; }
+		
+		long key = 0L;
+		key = appendCards(key, hole, s0, 0);
+		key = appendCards(key, hole, s1, 1);
+		key = appendCards(key, hole, s2, 2);
+		key = appendCards(key, hole, s3, 3);
+		//keeps the hole cards apart from the board cards
+		key = (key << 6) | 63;
+		key = appendCards(key, board, s0, 0);
+		key = appendCards(key, board, s1, 1);
+		key = appendCards(key, board, s2, 2);
+		key = appendCards(key, board, s3, 3);
+		return key;
+	}
+	
+	/**
+	 * Builds the key a suit is ordered by.
+	 */
+	private static long sortKey(long hole, long board, int suit) {
+		long holeMask = (hole >>> (16 * suit)) & 0x1fff;
+		long boardMask = (board >>> (16 * suit)) & 0x1fff;
+		return (holeMask << 15) | (boardMask << 2) | suit;
+	}
+	
+	/**
+	 * Adds the cards of one suit to a key under their new suit.
+	 * @param key the key so far
+	 * @param masks the value masks of the cards
+	 * @param sortKey the sort key of the suit, the old suit in the low bits
+	 * @param newSuit the suit ordinal the cards are renamed to
+	 * @return the key with the cards added
+	 */
+	private static long appendCards(long key, long masks, long sortKey, int newSuit) {
+		int mask = (int) (masks >>> (16 * (sortKey & 3))) & 0x1fff;
+		while (mask != 0) {
+			int rank = 31 - Integer.numberOfLeadingZeros(mask);
+			mask &= ~(1 << rank);
+			key = (key << 6) | (newSuit * Card.NUM_RANKS + rank);
+		}
+		return key;
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Counts the canonical starting hands, flops, and hole card and flop pairs.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		HashSet<Integer> startingHands = new HashSet<>();
+		int combos = 0;
+		for (int c1 = 0; c1 < Card.DECK_SIZE; c1++) {
+			for (int c2 = c1 + 1; c2 < Card.DECK_SIZE; c2++) {
+				startingHands.add(startingHandIndex(c1, c2));
+			}
+		}
+		for (int index: startingHands)
+			combos += startingHandCombos(index);
+		System.out.println(startingHands.size() + " starting hands, " + combos + " combos");
+		
+		HashSet<Integer> flops = new HashSet<>();
+		for (int c1 = 0; c1 < Card.DECK_SIZE; c1++)
+			for (int c2 = c1 + 1; c2 < Card.DECK_SIZE; c2++)
+				for (int c3 = c2 + 1; c3 < Card.DECK_SIZE; c3++)
+					flops.add(flopIndex(c3, c1, c2));
+		System.out.println(flops.size() + " flops");
+		
+		HashSet<Long> keys = new HashSet<>();
+		int[] cards = new int[5];
+		for (cards[0] = 0; cards[0] < Card.DECK_SIZE; cards[0]++)
+		for (cards[1] = cards[0] + 1; cards[1] < Card.DECK_SIZE; cards[1]++)
+		for (cards[2] = 0; cards[2] < Card.DECK_SIZE; cards[2]++)
+		for (cards[3] = cards[2] + 1; cards[3] < Card.DECK_SIZE; cards[3]++)
+		for (cards[4] = cards[3] + 1; cards[4] < Card.DECK_SIZE; cards[4]++) {
+			if ((cards[2] == cards[0]) || (cards[2] == cards[1]) ||
+					(cards[3] == cards[0]) || (cards[3] == cards[1]) ||
+					(cards[4] == cards[0]) || (cards[4] == cards[1]))
+				continue;
+			keys.add(canonicalKey(cards, 0, 2, 2, 3));
+		}
+		int[] codes = new int[5];
+		for (int i = 0; i < codes.length; i++)
+			codes[i] = Card.codeOf(cards[i] = (i * 11) % Card.DECK_SIZE);
+		System.out.println("packed codes match: " +
+				(canonicalCodeKey(codes, 0, 2, 2, 3) == canonicalKey(cards, 0, 2, 2, 3)));
+		System.out.println(keys.size() + " hole card and flop keys");
+		System.out.println(startingHandName(startingHandIndex(
+				Card.getCard(Suit.HEARTS, Number.ACE), Card.getCard(Suit.HEARTS, Number.KING))));
+	}
+
+}
@@ -0,0 +1,565 @@
+package texasholdem;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The network front end of a <code>TableServer</code>. One thread runs a
+ * selector over every connection, reading <code>TableProtocol</code>
+ * messages and handing them to the client's table, and writing whatever
+ * the tables have queued. It never waits on a table and a table never
+ * waits on the network: each table writes its messages into pooled
+ * direct buffers on its own thread and queues them, and a client that
+ * lets too many pile up is dropped rather than holding anything up.
+ * <p>
+ * Clients are sent what changed, as the table's <code>GameEvent</code>s,
+ * rather than the whole table each time.
+ * @author John Wardell
+ *
+ */
+public class TableFrontEnd implements Runnable {
+	
+	/**
+	 * The most messages buffers waiting to be written to a client
+	 * before it is dropped.
+	 */
+	public static final int MAX_QUEUED = 64;
+	private static final int BUFFER_SIZE = 4096;
+	
+	private final TableServer server;
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final BufferPool pool = new BufferPool(BUFFER_SIZE, 4096);
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final ConcurrentLinkedQueue<Connection> flushes = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger numConnections = new AtomicInteger();
+	private final AtomicLong messagesIn = new AtomicLong();
+	private final AtomicLong bytesOut = new AtomicLong();
+	private final AtomicInteger dropped = new AtomicInteger();
+	private int nextConnection = 0;
+	private volatile boolean running = true;
+	
+	/**
+	 * Constructs a TableFrontEnd and starts listening. Connections are
+	 * only served once <code>run</code> is called. The tables the bots
+	 * play from are loaded first if they haven't been, which can take
+	 * some seconds, so that opening a table never holds up the selector.
+	 * @param server the server whose tables clients play at.
+	 * @param address the address to listen on, port 0 for any free port.
+	 * @throws IOException if the address can't be listened on.
+	 */
+	public TableFrontEnd(TableServer server, InetSocketAddress address) throws IOException {
+		HandEvaluators.getDefault();
+		PreflopEquityTable.getEquity(0, 1);
+		this.server = server;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(address, 1024);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+	
+	/**
+	 * @return the address being listened on.
+	 * @throws IOException if the address can't be found.
+	 */
+	public InetSocketAddress getAddress() throws IOException {
+		return (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+	
+	/**
+	 * @return the number of clients connected.
+	 */
+	public int getNumConnections() {
+		return numConnections.get();
+	}
+	
+	/**
+	 * @return the number of messages read from clients.
+	 */
+	public long getMessagesIn() {
+		return messagesIn.get();
+	}
+	
+	/**
+	 * @return the number of bytes written to clients.
+	 */
+	public long getBytesOut() {
+		return bytesOut.get();
+	}
+	
+	/**
+	 * @return the number of clients dropped for not keeping up.
+	 */
+	public int getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * @return the pool the message buffers come from.
+	 */
+	public BufferPool getBufferPool() {
+		return pool;
+	}
+	
+	/**
+	 * Serves connections until <code>close</code> is called.
+	 */
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+				Connection connection;
+				while ((connection = flushes.poll()) != null) {
+					connection.flushPending.set(false);
+					connection.flush();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					connection = (Connection) key.attachment();
+					if (key.isWritable()) {
+						connection.flush();
+					}
+					if (key.isValid() && key.isReadable()) {
+						connection.read();
+					}
+				}
+			}
+		}
+		catch (ClosedSelectorException e) {
+			//closed while selecting
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("The front end's selector failed", e);
+		}
+		finally {
+			for (SelectionKey key: selector.keys()) {
+				if (key.attachment() != null) {
+					((Connection) key.attachment()).close();
+				}
+			}
+			try {
+				serverChannel.close();
+				selector.close();
+			}
+			catch (IOException e) {
+				//nothing more can be done
+			}
+		}
+	}
+	
+	/**
+	 * Stops serving and closes every connection. Their tables are closed too.
+	 */
+	public void close() {
+		running = false;
+		selector.wakeup();
+	}
+	
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			Connection connection = new Connection(nextConnection++, channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			numConnections.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * One client. Reading, writing and closing happen on the selector's
+	 * thread; each time the client sits at a table, a <code>Seating</code>
+	 * follows that table on the table's thread.
+	 */
+	private class Connection {
+		
+		private final int id;
+		private final SocketChannel channel;
+		private SelectionKey key;
+		private ByteBuffer partial;
+		private ByteBuffer writing;
+		private final ConcurrentLinkedQueue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger queued = new AtomicInteger();
+		private final AtomicBoolean flushPending = new AtomicBoolean();
+		private volatile boolean closed;
+		private volatile boolean overloaded;
+		/**
+		 * The seating at the client's table, changed only while holding
+		 * the connection's lock so a table that was left can't queue
+		 * anything after it.
+		 */
+		private volatile Seating seating;
+		
+		Connection(int id, SocketChannel channel) {
+			this.id = id;
+			this.channel = channel;
+		}
+		
+		/**
+		 * Reads what the client has sent and handles each whole message.
+		 */
+		void read() {
+			readBuffer.clear();
+			if (partial != null) {
+				partial.flip();
+				readBuffer.put(partial);
+				pool.release(partial);
+				partial = null;
+			}
+			try {
+				if (channel.read(readBuffer) < 0) {
+					close();
+					return;
+				}
+			}
+			catch (IOException e) {
+				close();
+				return;
+			}
+			readBuffer.flip();
+			while (readBuffer.remaining() >= 2) {
+				if ((readBuffer.getShort(readBuffer.position()) & 0xffff) + 2 > TableProtocol.MAX_CLIENT_MESSAGE) {
+					sendError(TableProtocol.BAD_MESSAGE);
+					close();
+					return;
+				}
+				int length = TableProtocol.messageLength(readBuffer);
+				if (length == 0) break;
+				int end = readBuffer.position() + length;
+				readBuffer.getShort();
+				messagesIn.incrementAndGet();
+				handle(readBuffer.get() & 0xff, length - 3);
+				readBuffer.position(end);
+			}
+			if (readBuffer.hasRemaining()) {
+				partial = pool.acquire();
+				partial.put(readBuffer);
+			}
+		}
+		
+		private void handle(int type, int length) {
+			if ((type == TableProtocol.SEAT) && (length == 3)) {
+				int numPlayers = readBuffer.get() & 0xff;
+				int handsPerBlindLevel = readBuffer.getShort() & 0xffff;
+				if (seating != null) {
+					sendError(TableProtocol.ALREADY_SEATED);
+				}
+				else if ((numPlayers < 2) || (numPlayers > Deck.MAX_PLAYERS)) {
+					sendError(TableProtocol.BAD_MESSAGE);
+				}
+				else {
+					seat(numPlayers, handsPerBlindLevel);
+				}
+			}
+			else if ((type == TableProtocol.ACT) && (length == 4)) {
+				final int bet = readBuffer.getInt();
+				final Seating seated = seating;
+				if (seated == null) {
+					sendError(TableProtocol.NOT_SEATED);
+				}
+				else {
+					seated.table.send(new Runnable() {
+						public void run() {
+							seated.act(bet);
+						}
+					});
+				}
+			}
+			else if ((type == TableProtocol.LEAVE) && (length == 0)) {
+				leave();
+			}
+			else {
+				sendError(TableProtocol.BAD_MESSAGE);
+			}
+		}
+		
+		private void seat(int numPlayers, int handsPerBlindLevel) {
+			TableServer.Table table = server.openTable(numPlayers, handsPerBlindLevel, true);
+			Seating seated = new Seating(table, 0);
+			synchronized (this) {
+				seating = seated;
+			}
+			table.seatUser(seated.seat, "Player " + id, seated);
+			table.start();
+		}
+		
+		/**
+		 * Leaves the client's table, if any, and closes it. Nothing the
+		 * table does afterwards reaches the client.
+		 */
+		private void leave() {
+			Seating left;
+			synchronized (this) {
+				left = seating;
+				seating = null;
+			}
+			if (left != null) {
+				left.table.close();
+			}
+		}
+		
+		private void sendError(int code) {
+			ByteBuffer buffer = pool.acquire();
+			TableProtocol.putError(buffer, code);
+			queue(buffer);
+		}
+		
+		/**
+		 * Queues a seating's buffer unless the client has left its table.
+		 */
+		private synchronized void queue(Seating from, ByteBuffer buffer) {
+			if (seating == from) {
+				queue(buffer);
+			}
+			else {
+				pool.release(buffer);
+			}
+		}
+		
+		/**
+		 * The client's seat at one table. Everything here but the table
+		 * and seat is only used on the table's thread, and a new seating
+		 * is made each time the client sits down, so a table that was
+		 * left and is still closing never shares it with the next.
+		 */
+		private class Seating implements TableServer.TableObserver {
+			
+			private final TableServer.Table table;
+			private final int seat;
+			private final EventRing.Cursor cursor;
+			private boolean seatedSent;
+			private boolean turnSent;
+			private boolean over;
+			private ByteBuffer out;
+			private final long[] events = new long[32];
+			private int eventsStart = -1;
+			private int numEvents;
+			
+			Seating(TableServer.Table table, int seat) {
+				this.table = table;
+				this.seat = seat;
+				cursor = table.getEvents().newCursor();
+			}
+			
+			/**
+			 * Makes the client's bet, on the table's thread.
+			 */
+			void act(int bet) {
+				HoldemManager hm = table.getManager();
+				if ((hm == null) || !hm.isUserTurn() || (hm.getTurnIndex() != seat)) {
+					return;
+				}
+				turnSent = false;
+				if ((bet != PokerTools.FOLD) && ((bet < hm.getAmtToSee()) || (bet > hm.getMaxBet()))) {
+					ensure(TableProtocol.MAX_MESSAGE);
+					TableProtocol.putError(out, TableProtocol.BAD_BET);
+					send();
+				}
+				else {
+					hm.acceptUserBet(bet);
+				}
+			}
+			
+			/**
+			 * Sends the client what changed at the table, on the table's thread.
+			 */
+			@Override
+			public void tableChanged(TableServer.Table changed) {
+				HoldemManager hm = changed.getManager();
+				if ((hm == null) || over || closed || (seating != this)) {
+					return;
+				}
+				if (!hm.isUserTurn()) {
+					//the turn was taken, by the client or by the turn clock
+					turnSent = false;
+				}
+				if (!seatedSent) {
+					seatedSent = true;
+					ensure(TableProtocol.MAX_MESSAGE);
+					TableProtocol.putSeated(out, changed.getId(), seat, changed.getNumPlayers(),
+							hm.getPlayers()[seat].getChips());
+				}
+				long lost = cursor.getLost();
+				int n;
+				while ((n = cursor.drain(events)) > 0) {
+					for (int i = 0; i < n; i++) {
+						if ((GameEvent.type(events[i]) == GameEvent.DEAL) &&
+								(GameEvent.seat(events[i]) != seat)) {
+							continue;
+						}
+						putEvent(events[i]);
+					}
+				}
+				endEvents();
+				if (cursor.getLost() != lost) {
+					ensure(TableProtocol.MAX_MESSAGE);
+					TableProtocol.putError(out, TableProtocol.EVENTS_LOST);
+				}
+				Player me = hm.getPlayers()[seat];
+				TableServer.State state = changed.getState();
+				if ((me.getBustHand() >= 0) || (state == TableServer.State.FINISHED)) {
+					over = true;
+					ensure(TableProtocol.MAX_MESSAGE);
+					TableProtocol.putGameOver(out, me.getChips() > 0, me.getChips(), hm.getHandsPlayed());
+					changed.close();
+				}
+				else if (state == TableServer.State.FAILED) {
+					over = true;
+					ensure(TableProtocol.MAX_MESSAGE);
+					TableProtocol.putError(out, TableProtocol.TABLE_FAILED);
+					changed.close();
+				}
+				else if (hm.isUserTurn() && (hm.getTurnIndex() == seat) && !turnSent) {
+					turnSent = true;
+					ensure(TableProtocol.MAX_MESSAGE);
+					TableProtocol.putTurn(out, hm.getAmtToSee(), hm.getMaxBet(), hm.getMinBet(), hm.getPot());
+				}
+				send();
+			}
+			
+			private void putEvent(long event) {
+				if ((eventsStart < 0) || (numEvents == TableProtocol.MAX_EVENTS)) {
+					endEvents();
+					ensure(TableProtocol.MAX_MESSAGE);
+					eventsStart = TableProtocol.begin(out, TableProtocol.EVENTS);
+					out.put((byte) 0);
+				}
+				out.putLong(event);
+				numEvents++;
+			}
+			
+			private void endEvents() {
+				if (eventsStart >= 0) {
+					out.put(eventsStart + 3, (byte) numEvents);
+					TableProtocol.end(out, eventsStart);
+					eventsStart = -1;
+					numEvents = 0;
+				}
+			}
+			
+			/**
+			 * Makes sure the next message fits, starting a new buffer if not.
+			 */
+			private void ensure(int length) {
+				if ((out != null) && (out.remaining() < length)) {
+					queue(this, out);
+					out = null;
+				}
+				if (out == null) {
+					out = pool.acquire();
+				}
+			}
+			
+			/**
+			 * Queues what has been written.
+			 */
+			private void send() {
+				if (out != null) {
+					queue(this, out);
+					out = null;
+				}
+			}
+		}
+		
+		/**
+		 * Queues a written buffer to be sent, from any thread.
+		 */
+		private void queue(ByteBuffer buffer) {
+			if (closed) {
+				pool.release(buffer);
+				return;
+			}
+			buffer.flip();
+			outgoing.add(buffer);
+			if (queued.incrementAndGet() > MAX_QUEUED) {
+				overloaded = true;
+			}
+			if (flushPending.compareAndSet(false, true)) {
+				flushes.add(this);
+				selector.wakeup();
+			}
+		}
+		
+		/**
+		 * Writes as much of the queue as the socket takes.
+		 */
+		void flush() {
+			if (closed) return;
+			if (overloaded) {
+				dropped.incrementAndGet();
+				close();
+				return;
+			}
+			try {
+				while (true) {
+					if (writing == null) {
+						writing = outgoing.poll();
+						if (writing == null) break;
+						queued.decrementAndGet();
+					}
+					bytesOut.addAndGet(channel.write(writing));
+					if (writing.hasRemaining()) {
+						key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+						return;
+					}
+					pool.release(writing);
+					writing = null;
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			}
+			catch (IOException e) {
+				close();
+			}
+		}
+		
+		/**
+		 * Closes the connection and its table.
+		 */
+		void close() {
+			if (closed) return;
+			closed = true;
+			numConnections.decrementAndGet();
+			key.cancel();
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				//already gone
+			}
+			leave();
+			if (partial != null) {
+				pool.release(partial);
+				partial = null;
+			}
+			if (writing != null) {
+				pool.release(writing);
+				writing = null;
+			}
+			ByteBuffer buffer;
+			while ((buffer = outgoing.poll()) != null) {
+				pool.release(buffer);
+			}
+		}
+	}
+
+}
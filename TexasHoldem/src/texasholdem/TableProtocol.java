@@ -0,0 +1,178 @@
+package texasholdem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol spoken between <code>TableFrontEnd</code> and its
+ * clients. Every message is a 2 byte length, counting the bytes after
+ * it, then a 1 byte type and the type's fields, all big endian.
+ * <p>
+ * Client to server:
+ * <ul>
+ * <li><code>SEAT</code>: 1 byte number of players, 2 byte hands per blind
+ * level. Opens a table of bots with the client in seat 0 and starts it.</li>
+ * <li><code>ACT</code>: 4 byte bet, or <code>PokerTools.FOLD</code>.</li>
+ * <li><code>LEAVE</code>: nothing. Closes the client's table.</li>
+ * </ul>
+ * Server to client:
+ * <ul>
+ * <li><code>SEATED</code>: 4 byte table id, 1 byte seat, 1 byte number of
+ * players, 4 byte chips each player starts with.</li>
+ * <li><code>EVENTS</code>: 1 byte count, then that many 8 byte
+ * <code>GameEvent</code>s. Only what changed is sent; other players'
+ * <code>DEAL</code> events are left out.</li>
+ * <li><code>TURN</code>: 4 bytes each of the amount to call, the most the
+ * client can bet, the big blind and the pot.</li>
+ * <li><code>GAME_OVER</code>: 1 byte 1 if the client won, 4 byte chips,
+ * 4 byte hands played.</li>
+ * <li><code>ERROR</code>: 1 byte error code.</li>
+ * </ul>
+ * @author John Wardell
+ *
+ */
+public final class TableProtocol {
+	
+	public static final int SEAT = 1;
+	public static final int ACT = 2;
+	public static final int LEAVE = 3;
+	
+	public static final int SEATED = 16;
+	public static final int EVENTS = 17;
+	public static final int TURN = 18;
+	public static final int GAME_OVER = 19;
+	public static final int ERROR = 20;
+	
+	/** A message the server doesn't understand. */
+	public static final int BAD_MESSAGE = 1;
+	/** A <code>SEAT</code> from a client that already has a seat. */
+	public static final int ALREADY_SEATED = 2;
+	/** An <code>ACT</code> from a client without a seat. */
+	public static final int NOT_SEATED = 3;
+	/** A bet less than the amount to call or more than the client's chips. */
+	public static final int BAD_BET = 4;
+	/** Events were lost and the client's view of the table may be wrong. */
+	public static final int EVENTS_LOST = 5;
+	/** The client's table threw an exception and stopped. */
+	public static final int TABLE_FAILED = 6;
+	
+	/**
+	 * The most events in one <code>EVENTS</code> message.
+	 */
+	public static final int MAX_EVENTS = 255;
+	/**
+	 * The length of the longest message, length included.
+	 */
+	public static final int MAX_MESSAGE = 2 + 2 + 8 * MAX_EVENTS;
+	
+	/**
+	 * The length of the longest message a client may send, length included.
+	 */
+	public static final int MAX_CLIENT_MESSAGE = 16;
+	
+	private TableProtocol() {}
+	
+	/**
+	 * Checks if a buffer, ready to be read, holds a whole message.
+	 * @param buffer the buffer.
+	 * @return the length of the message, length included, or 0 if
+	 * it isn't all there yet.
+	 */
+	public static int messageLength(ByteBuffer buffer) {
+		if (buffer.remaining() < 2) return 0;
+		int length = 2 + (buffer.getShort(buffer.position()) & 0xffff);
+		return (buffer.remaining() >= length) ? length : 0;
+	}
+	
+	/**
+	 * Writes the start of a message. Its length is filled in by <code>end</code>.
+	 * @param buffer the buffer to write to.
+	 * @param type the message type.
+	 * @return the position of the message, for <code>end</code>.
+	 */
+	public static int begin(ByteBuffer buffer, int type) {
+		int start = buffer.position();
+		buffer.putShort((short) 0);
+		buffer.put((byte) type);
+		return start;
+	}
+	
+	/**
+	 * Fills in the length of the message started at <code>start</code>.
+	 * @param buffer the buffer written to.
+	 * @param start the position returned by <code>begin</code>.
+	 */
+	public static void end(ByteBuffer buffer, int start) {
+		buffer.putShort(start, (short) (buffer.position() - start - 2));
+	}
+	
+	/**
+	 * Writes a <code>SEAT</code> message.
+	 */
+	public static void putSeat(ByteBuffer buffer, int numPlayers, int handsPerBlindLevel) {
+		int start = begin(buffer, SEAT);
+		buffer.put((byte) numPlayers);
+		buffer.putShort((short) handsPerBlindLevel);
+		end(buffer, start);
+	}
+	
+	/**
+	 * Writes a <code>ACT</code> message.
+	 */
+	public static void putAct(ByteBuffer buffer, int bet) {
+		int start = begin(buffer, ACT);
+		buffer.putInt(bet);
+		end(buffer, start);
+	}
+	
+	/**
+	 * Writes a <code>LEAVE</code> message.
+	 */
+	public static void putLeave(ByteBuffer buffer) {
+		end(buffer, begin(buffer, LEAVE));
+	}
+	
+	/**
+	 * Writes a <code>SEATED</code> message.
+	 */
+	public static void putSeated(ByteBuffer buffer, int tableId, int seat, int numPlayers, int chips) {
+		int start = begin(buffer, SEATED);
+		buffer.putInt(tableId);
+		buffer.put((byte) seat);
+		buffer.put((byte) numPlayers);
+		buffer.putInt(chips);
+		end(buffer, start);
+	}
+	
+	/**
+	 * Writes a <code>TURN</code> message.
+	 */
+	public static void putTurn(ByteBuffer buffer, int toCall, int maxBet, int minBet, int pot) {
+		int start = begin(buffer, TURN);
+		buffer.putInt(toCall);
+		buffer.putInt(maxBet);
+		buffer.putInt(minBet);
+		buffer.putInt(pot);
+		end(buffer, start);
+	}
+	
+	/**
+	 * Writes a <code>GAME_OVER</code> message.
+	 */
+	public static void putGameOver(ByteBuffer buffer, boolean won, int chips, int hands) {
+		int start = begin(buffer, GAME_OVER);
+		buffer.put((byte) (won ? 1 : 0));
+		buffer.putInt(chips);
+		buffer.putInt(hands);
+		end(buffer, start);
+	}
+	
+	/**
+	 * Writes a <code>ERROR</code> message.
+	 */
+	public static void putError(ByteBuffer buffer, int code) {
+		int start = begin(buffer, ERROR);
+		buffer.put((byte) code);
+		end(buffer, start);
+	}
+
+}
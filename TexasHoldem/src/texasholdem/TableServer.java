@@ -0,0 +1,671 @@
+package texasholdem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many independent headless tables in one JVM. Each table is a
+ * small actor: commands sent to it wait in its own queue, and whenever it
+ * has work it runs as one task on a shared <code>ExecutorService</code>,
+ * so a few threads can drive thousands of tables and no table is ever
+ * run by two threads at once. A running table plays a few hands each time
+ * it gets a thread and then gives the thread up, so busy tables can't
+ * starve the others. A table with a user seated stops when it is the
+ * user's turn and waits for the bet to be sent to it.
+ * <p>
+ * The server's tables share one <code>TimingWheel</code> for their
+ * clocks: a user's turn clock and time bank, after which the user checks
+ * or folds, and the blinds going up every so often if they aren't raised
+ * every so many hands. Given a virtual wheel, a simulation can move the
+ * clocks on as fast as it likes.
+ * <p>
+ * The tables share everything that never changes, such as the hand
+ * evaluator's tables and the preflop equity table, and a table without
+ * an event ring takes about 2.5 KB.
+ * @author John Wardell
+ *
+ */
+public class TableServer {
+	
+	/**
+	 * The number of hands a table plays each time it gets a thread.
+	 */
+	public static final int HANDS_PER_TURN = 16;
+	/**
+	 * The capacity of the event ring a table is opened with, if it has one.
+	 */
+	public static final int TABLE_EVENT_CAPACITY = 256;
+	
+	/**
+	 * The stages of a table's life.
+	 */
+	public enum State {
+		/** Dealt no cards yet, or paused. */
+		OPEN,
+		/** Playing hands. */
+		RUNNING,
+		/** The game is over. The table can start a new one. */
+		FINISHED,
+		/** The table threw an exception and stopped. */
+		FAILED,
+		/** Closed and removed from the server. */
+		CLOSED
+	}
+	
+	/**
+	 * Told when a table stops because its game is over, it failed or it
+	 * was closed, on the thread that ran the table.
+	 */
+	public interface TableListener {
+		/**
+		 * @param table the table whose state changed.
+		 */
+		void tableStopped(Table table);
+	}
+	
+	/**
+	 * Told each time a table has done something, on the thread running
+	 * the table, so it can look at the game safely.
+	 */
+	public interface TableObserver {
+		/**
+		 * @param table the table, which may be waiting for a user.
+		 */
+		void tableChanged(Table table);
+	}
+	
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+	private final long masterSeed;
+	private final Map<Integer, Table> tables = new ConcurrentHashMap<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private volatile TableListener listener;
+	private volatile TimingWheel wheel = TimingWheel.getShared();
+	private volatile long turnMillis;
+	private volatile long timeBankMillis;
+	private volatile long blindMillis;
+	
+	/**
+	 * Constructs a TableServer with a thread for each core.
+	 * @param masterSeed the seed every table's seed is made from.
+	 */
+	public TableServer(long masterSeed) {
+		this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()),
+				masterSeed, true);
+	}
+	
+	/**
+	 * Constructs a TableServer that runs its tables on the executor given.
+	 * The executor isn't shut down with the server.
+	 * @param executor the executor the tables run on.
+	 * @param masterSeed the seed every table's seed is made from.
+	 */
+	public TableServer(ExecutorService executor, long masterSeed) {
+		this(executor, masterSeed, false);
+	}
+	
+	private TableServer(ExecutorService executor, long masterSeed, boolean ownExecutor) {
+		this.executor = executor;
+		this.masterSeed = masterSeed;
+		this.ownExecutor = ownExecutor;
+	}
+	
+	/**
+	 * Sets the listener told when tables stop.
+	 * @param listener the listener, or null for none.
+	 */
+	public void setListener(TableListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Sets the wheel the tables' clocks run on, the shared wheel unless
+	 * this is called. Only tables opened afterwards use it.
+	 * @param wheel the wheel, e.g. a virtual one for simulations.
+	 */
+	public void setTimingWheel(TimingWheel wheel) {
+		this.wheel = wheel;
+	}
+	
+	/**
+	 * Gives users a turn clock in tables opened afterwards. When a user's
+	 * time is up, the time bank left is used; when that is up too, the
+	 * user checks if possible and otherwise folds.
+	 * @param turnMillis the time for each turn, 0 for no clock.
+	 * @param timeBankMillis the extra time for the whole game.
+	 */
+	public void setTurnClock(long turnMillis, long timeBankMillis) {
+		this.turnMillis = turnMillis;
+		this.timeBankMillis = timeBankMillis;
+	}
+	
+	/**
+	 * Raises the blinds of tables opened afterwards every so often while
+	 * they are running, as well as any raises every so many hands.
+	 * @param blindMillis the time between raises, 0 for none.
+	 */
+	public void setBlindInterval(long blindMillis) {
+		this.blindMillis = blindMillis;
+	}
+	
+	/**
+	 * Opens a table. It deals no cards until it is started.
+	 * @param numPlayers the number of bots at the table.
+	 * @param handsPerBlindLevel the number of hands between blind increases.
+	 * @param events true to give the table an event ring to follow it by.
+	 * @return the table.
+	 */
+	public Table openTable(int numPlayers, int handsPerBlindLevel, boolean events) {
+		if ((numPlayers < 2) || (numPlayers > Deck.MAX_PLAYERS)) {
+			throw new IllegalArgumentException("Can't seat " + numPlayers + " players");
+		}
+		Table table = new Table(nextId.getAndIncrement(), numPlayers, handsPerBlindLevel,
+				events ? new EventRing(TABLE_EVENT_CAPACITY) : null);
+		tables.put(table.id, table);
+		return table;
+	}
+	
+	/**
+	 * @param id the table's id.
+	 * @return the table, or null if there is no open table with that id.
+	 */
+	public Table getTable(int id) {
+		return tables.get(id);
+	}
+	
+	/**
+	 * @return the number of tables that haven't been closed.
+	 */
+	public int getNumTables() {
+		return tables.size();
+	}
+	
+	/**
+	 * @return the tables that haven't been closed.
+	 */
+	public List<Table> getTables() {
+		return new ArrayList<Table>(tables.values());
+	}
+	
+	/**
+	 * Closes every table and, if the server made its own threads,
+	 * stops them.
+	 */
+	public void shutdown() {
+		for (Table table: getTables()) {
+			table.close();
+		}
+		if (ownExecutor) {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Mixes the master seed with a table's id and game number.
+	 */
+	private long seed(int id, int game) {
+		long z = masterSeed + (((long) id << 20) + game + 1) * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * One table of the server. Its methods can be called from any thread;
+	 * each sends the table a command, which the table carries out in turn
+	 * on the server's threads.
+	 */
+	public class Table implements Runnable {
+		
+		private final int id;
+		private final int numPlayers;
+		private final int handsPerBlindLevel;
+		private final EventRing events;
+		private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private HoldemManager hm;
+		private int game;
+		private volatile State state = State.OPEN;
+		private volatile int handsPlayed;
+		private volatile RuntimeException failure;
+		private TableObserver observer;
+		private final TimingWheel clock = wheel;
+		private final long turnTime = turnMillis;
+		private final long blindTime = blindMillis;
+		private TimingWheel.Timeout turnTimeout;
+		private TimingWheel.Timeout blindTimeout;
+		private int clockSerial;
+		private final long bankTime = timeBankMillis;
+		private long timeBank = bankTime;
+		private long timeBankStarted = -1;
+		
+		private Table(int id, int numPlayers, int handsPerBlindLevel, EventRing events) {
+			this.id = id;
+			this.numPlayers = numPlayers;
+			this.handsPerBlindLevel = handsPerBlindLevel;
+			this.events = events;
+			newGame();
+		}
+		
+		/**
+		 * @return the table's id.
+		 */
+		public int getId() {
+			return id;
+		}
+		
+		/**
+		 * @return the number of seats at the table.
+		 */
+		public int getNumPlayers() {
+			return numPlayers;
+		}
+		
+		/**
+		 * @return the table's state.
+		 */
+		public State getState() {
+			return state;
+		}
+		
+		/**
+		 * @return the number of hands played in the table's current game.
+		 */
+		public int getHandsPlayed() {
+			return handsPlayed;
+		}
+		
+		/**
+		 * @return the number of the table's current game, 0 for the first.
+		 */
+		public int getGame() {
+			return game;
+		}
+		
+		/**
+		 * @return the exception that stopped the table, or null.
+		 */
+		public RuntimeException getFailure() {
+			return failure;
+		}
+		
+		/**
+		 * @return the table's event ring, or null if it was opened without one.
+		 * The ring carries on from game to game.
+		 */
+		public EventRing getEvents() {
+			return events;
+		}
+		
+		/**
+		 * Starts or resumes playing hands.
+		 */
+		public void start() {
+			send(new Runnable() {
+				public void run() {
+					if (state == State.OPEN) {
+						state = State.RUNNING;
+						startBlindClock();
+					}
+				}
+			});
+		}
+		
+		/**
+		 * Stops playing hands after the hand being played.
+		 */
+		public void pause() {
+			send(new Runnable() {
+				public void run() {
+					if (state == State.RUNNING) {
+						state = State.OPEN;
+						stopClocks();
+					}
+				}
+			});
+		}
+		
+		/**
+		 * Throws the current game away and seats new bots for the next one.
+		 * The table is left open, so it has to be started again.
+		 */
+		public void restart() {
+			send(new Runnable() {
+				public void run() {
+					if (state != State.CLOSED) {
+						stopClocks();
+						game++;
+						newGame();
+						state = State.OPEN;
+					}
+				}
+			});
+		}
+		
+		/**
+		 * Seats a user in place of a bot. The table then waits for the
+		 * user's bets, which an action sent to the table gives to the
+		 * game's <code>acceptUserBet</code>.
+		 * @param seat the user's seat.
+		 * @param name the user's name.
+		 * @param observer told each time the table has done something,
+		 * or null for no one.
+		 */
+		public void seatUser(final int seat, final String name, final TableObserver observer) {
+			send(new Runnable() {
+				public void run() {
+					if (hm != null) {
+						hm.seatUser(seat, name);
+						Table.this.observer = observer;
+					}
+				}
+			});
+		}
+		
+		/**
+		 * Closes the table and removes it from the server.
+		 */
+		public void close() {
+			send(new Runnable() {
+				public void run() {
+					state = State.CLOSED;
+					stopClocks();
+					tables.remove(id);
+					hm = null;
+				}
+			});
+		}
+		
+		/**
+		 * Runs an action on the table in turn with its other commands, so
+		 * the action can look at the game without racing the hands.
+		 * @param action the action, which is passed nothing and should be quick.
+		 */
+		public void send(Runnable action) {
+			mailbox.add(action);
+			schedule();
+		}
+		
+		/**
+		 * Gets the chips of each player. Only safe to call from an action
+		 * sent to the table.
+		 * @return the chips, by seat.
+		 */
+		public int[] getChips() {
+			int[] chips = new int[numPlayers];
+			if (hm != null) {
+				Player[] players = hm.getPlayers();
+				for (int i = 0; i < numPlayers; i++) {
+					chips[i] = players[i].getChips();
+				}
+			}
+			return chips;
+		}
+		
+		/**
+		 * Gets the table's game. Only safe to use from an action sent to
+		 * the table or a <code>TableObserver</code>.
+		 * @return the game, or null if the table is closed.
+		 */
+		HoldemManager getManager() {
+			return hm;
+		}
+		
+		/**
+		 * Raises the blinds every <code>blindTime</code> while the table runs.
+		 */
+		private void startBlindClock() {
+			if (blindTime <= 0) return;
+			final int serial = clockSerial;
+			blindTimeout = clock.schedule(new Runnable() {
+				public void run() {
+					send(new Runnable() {
+						public void run() {
+							if ((serial == clockSerial) && (state == State.RUNNING)) {
+								hm.raiseBlinds();
+								startBlindClock();
+							}
+						}
+					});
+				}
+			}, blindTime, TimeUnit.MILLISECONDS);
+		}
+		
+		/**
+		 * Starts the user's turn clock, or the time bank once the turn's
+		 * time is up.
+		 */
+		private void startTurnClock(long millis) {
+			final int serial = clockSerial;
+			turnTimeout = clock.schedule(new Runnable() {
+				public void run() {
+					send(new Runnable() {
+						public void run() {
+							if ((serial == clockSerial) && (state == State.RUNNING) && hm.isUserTurn()) {
+								turnTimedOut();
+							}
+						}
+					});
+				}
+			}, millis, TimeUnit.MILLISECONDS);
+		}
+		
+		private void turnTimedOut() {
+			if ((timeBankStarted < 0) && (timeBank > 0)) {
+				timeBankStarted = clock.now();
+				startTurnClock(timeBank);
+				return;
+			}
+			stopTurnClock();
+			timeBank = 0;
+			hm.acceptUserBet((hm.getAmtToSee() == 0) ? 0 : PokerTools.FOLD);
+		}
+		
+		/**
+		 * Stops the turn clock, taking any time bank used off what is left.
+		 */
+		private void stopTurnClock() {
+			if (turnTimeout != null) {
+				turnTimeout.cancel();
+				turnTimeout = null;
+			}
+			if (timeBankStarted >= 0) {
+				long used = TimeUnit.NANOSECONDS.toMillis(clock.now() - timeBankStarted);
+				timeBank = Math.max(0, timeBank - used);
+				timeBankStarted = -1;
+			}
+		}
+		
+		private void stopClocks() {
+			clockSerial++;
+			stopTurnClock();
+			if (blindTimeout != null) {
+				blindTimeout.cancel();
+				blindTimeout = null;
+			}
+		}
+		
+		private void newGame() {
+			hm = new HoldemManager(numPlayers, new FastRandom(seed(id, game)));
+			hm.setHandsPerBlindLevel(handsPerBlindLevel);
+			hm.setEvents(events);
+			handsPlayed = 0;
+			timeBank = bankTime;
+		}
+		
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				executor.execute(this);
+			}
+		}
+		
+		/**
+		 * Carries out the waiting commands, then plays a few hands if the
+		 * table is running. Only ever run by one thread at a time.
+		 */
+		@Override
+		public void run() {
+			State before = state;
+			try {
+				Runnable command;
+				while ((command = mailbox.poll()) != null) {
+					command.run();
+				}
+				if ((turnTimeout != null) && (hm != null) && !hm.isUserTurn()) {
+					stopTurnClock();
+				}
+				if (state == State.RUNNING) {
+					for (int n = 0; (n < HANDS_PER_TURN) && !hm.isGameOver() && !hm.isUserTurn(); n++) {
+						hm.playUntilUser();
+						//keeps an observer within a ring of the events
+						if (observer != null) observer.tableChanged(this);
+					}
+					handsPlayed = hm.getHandsPlayed();
+					if (hm.isGameOver()) {
+						state = State.FINISHED;
+						stopClocks();
+					}
+					else if (hm.isUserTurn() && (turnTimeout == null) && (turnTime > 0)) {
+						startTurnClock(turnTime);
+					}
+				}
+				if (observer != null) observer.tableChanged(this);
+			}
+			catch (RuntimeException e) {
+				failure = e;
+				state = State.FAILED;
+				stopClocks();
+			}
+			if ((state != before) && (state != State.RUNNING) && (state != State.OPEN)) {
+				TableListener l = listener;
+				if (l != null) l.tableStopped(this);
+			}
+			scheduled.set(false);
+			if (((state == State.RUNNING) && !hm.isUserTurn()) || !mailbox.isEmpty()) {
+				schedule();
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return "table " + id + " (" + numPlayers + " players, game " + game + ", " +
+					handsPlayed + " hands, " + state + ")";
+		}
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Opens thousands of tables, plays a game at each and reports the
+	 * memory used per table and the hands played a second. Then plays
+	 * games whose user never bets on a virtual clock, so the turn clock
+	 * checks or folds for the user, until the games are over.
+	 * Arguments: [tables] [threads]
+	 * @param args
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int numTables = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) :
+			Runtime.getRuntime().availableProcessors();
+		HandEvaluators.getDefault();
+		PreflopEquityTable.getEquity(0, 1);
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		TableServer server = new TableServer(executor, 99);
+		final CountDownLatch finished = new CountDownLatch(numTables);
+		final AtomicInteger failed = new AtomicInteger();
+		server.setListener(new TableListener() {
+			public void tableStopped(Table table) {
+				if (table.getState() == State.FAILED) {
+					failed.incrementAndGet();
+					table.getFailure().printStackTrace();
+				}
+				finished.countDown();
+			}
+		});
+		for (int i = 0; i < numTables; i++) {
+			server.openTable(2 + i % 8, 20, false);
+		}
+		System.gc();
+		long after = runtime.totalMemory() - runtime.freeMemory();
+		System.out.println(server.getNumTables() + " tables open, " + (after - before) / numTables +
+				" bytes a table");
+		
+		long start = System.nanoTime();
+		for (Table table: server.getTables()) {
+			table.start();
+		}
+		finished.await();
+		long nanos = System.nanoTime() - start;
+		long hands = 0;
+		for (Table table: server.getTables()) {
+			hands += table.getHandsPlayed();
+		}
+		System.out.println(numTables + " games on " + threads + " threads in " + (nanos / 1000000) +
+				" ms, " + (hands * 1000000000L / nanos) + " hands a second, " + failed.get() + " failed");
+		
+		final Table table = server.getTable(0);
+		final CountDownLatch checked = new CountDownLatch(1);
+		table.restart();
+		table.send(new Runnable() {
+			public void run() {
+				int total = 0;
+				for (int chips: table.getChips())
+					total += chips;
+				System.out.println(table + " restarted, chips " + total);
+				checked.countDown();
+			}
+		});
+		checked.await();
+		
+		//users who never bet, timed out on a virtual clock
+		TimingWheel wheel = TimingWheel.newVirtual();
+		server.setTimingWheel(wheel);
+		server.setTurnClock(15000, 60000);
+		server.setBlindInterval(10 * 60 * 1000);
+		int numIdle = 100;
+		final CountDownLatch idleFinished = new CountDownLatch(numIdle);
+		server.setListener(new TableListener() {
+			public void tableStopped(Table table) {
+				if (table.getState() != State.CLOSED) {
+					idleFinished.countDown();
+				}
+			}
+		});
+		List<Table> idle = new ArrayList<Table>();
+		for (int i = 0; i < numIdle; i++) {
+			Table t = server.openTable(6, 0, false);
+			t.seatUser(0, "Idle", null);
+			t.start();
+			idle.add(t);
+		}
+		start = System.nanoTime();
+		while ((idleFinished.getCount() > 0) && (wheel.now() < TimeUnit.DAYS.toNanos(7))) {
+			wheel.advance(1, TimeUnit.SECONDS);
+			Thread.sleep(0, 100000);
+		}
+		hands = 0;
+		for (Table t: idle) {
+			hands += t.getHandsPlayed();
+		}
+		System.out.printf("%d of %d idle user games finished, %d hands, %.1f virtual hours in %d ms%n",
+				numIdle - idleFinished.getCount(), numIdle, hands, wheel.now() / 3.6e12,
+				(System.nanoTime() - start) / 1000000);
+		server.shutdown();
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		System.out.println(server.getNumTables() + " tables open after shutdown");
+	}
+
+}
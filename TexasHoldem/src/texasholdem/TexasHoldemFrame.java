@@ -1,12 +1,15 @@
 package texasholdem;
 
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -18,6 +21,10 @@ import javax.swing.JTextField;
 /**
  * This is the main frame for the user interface. It is the only part of the 
  * UI that interacts with the underlying game mechanics.
+ * <p>
+ * The chip, bet and pot displays follow the game's events, read from its
+ * <code>EventRing</code> every so often on the Swing event thread, instead of being updated by the
+ * game while it takes bets.
  * @author John Wardell
  *
  */
@@ -32,6 +39,14 @@ public class TexasHoldemFrame extends JFrame implements HoldemUI {
 	private ImageIcon noCard = new ImageIcon("res/images/no_card.jpg");
 	private String lostGame = "You Lost! Would You Like To Play Again?";
 	private String wonGame = "You Won! Would You Like To Play Again?";
+	/**
+	 * How often the game's events are read, in milliseconds.
+	 */
+	private static final int EVENT_DELAY = 40;
+	private EventRing.Cursor events;
+	private long[] eventBuffer = new long[256];
+	private int[] bets;
+	private TimingWheel.Timeout eventTimeout;
 	
 	/**
 	 * This is the constructor used in the game.
@@ -54,6 +69,9 @@ public class TexasHoldemFrame extends JFrame implements HoldemUI {
 		hm = new HoldemManager(numPlayers, userName, this);
 		
 		Player[] players = hm.getPlayers();
+		events = hm.getEvents().newCursor();
+		bets = new int[players.length];
+		scheduleReadEvents();
 		gamePanel = new JPanel();
 		gamePanel.setLayout(new GridBagLayout());
 		
@@ -170,6 +188,85 @@ public class TexasHoldemFrame extends JFrame implements HoldemUI {
 		
 		repaint();
 	}
+	/**
+	 * Reads the game's events on the event thread after a short delay,
+	 * and again after each read until the frame is closed.
+	 */
+	private void scheduleReadEvents() {
+		eventTimeout = TimingWheel.getShared().schedule(new Runnable() {
+			public void run() {
+				EventQueue.invokeLater(new Runnable() {
+					public void run() {
+						if (eventTimeout != null) {
+							readEvents();
+							scheduleReadEvents();
+						}
+					}
+				});
+			}
+		}, EVENT_DELAY, TimeUnit.MILLISECONDS);
+	}
+	/**
+	 * Reads the game's events since the last time and updates the
+	 * displays they change. If events were lost, the displays are
+	 * brought up to date from the players instead.
+	 */
+	private void readEvents() {
+		long lost = events.getLost();
+		int n;
+		while ((n = events.drain(eventBuffer)) > 0) {
+			for (int i = 0; i < n; i++) {
+				long event = eventBuffer[i];
+				int seat = GameEvent.seat(event);
+				switch (GameEvent.type(event)) {
+				case GameEvent.HAND_START:
+					Arrays.fill(bets, 0);
+					break;
+				case GameEvent.BET:
+				case GameEvent.REFUND:
+					bets[seat] = GameEvent.a(event);
+					updateChipDisplays(seat, getPot(), GameEvent.b(event), bets[seat]);
+					break;
+				case GameEvent.AWARD:
+					Arrays.fill(bets, 0);
+					updateChipDisplays(seat, 0, GameEvent.b(event), 0);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		if (events.getLost() != lost) {
+			Player[] players = hm.getPlayers();
+			for (int i = 0; i < players.length; i++) {
+				bets[i] = players[i].getBet();
+			}
+			for (int i = 0; i < players.length; i++) {
+				updateChipDisplays(i, getPot(), players[i].getChips(), bets[i]);
+			}
+		}
+	}
+	/**
+	 * @return the pot, as far as the events read so far show.
+	 */
+	private int getPot() {
+		int pot = 0;
+		for (int bet: bets) {
+			pot += bet;
+		}
+		return pot;
+	}
+	/**
+	 * Stops reading the game's events as well as closing the frame.
+	 */
+	@Override
+	public void dispose() {
+		if (eventTimeout != null) {
+			eventTimeout.cancel();
+			eventTimeout = null;
+		}
+		super.dispose();
+	}
 	/**
 	 * Sets all the bets in the player panels to 0.
 	 */
@@ -0,0 +1,367 @@
+package texasholdem;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hashed timing wheel: one timer for any number of timeouts, e.g. the
+ * turn clocks and blind increases of every table in a server. Time is cut
+ * into ticks and a timeout goes in the slot of the wheel for its tick, so
+ * scheduling and cancelling take the same time however many timeouts are
+ * waiting. A timeout fires on the first tick at or after its deadline, so
+ * it may be up to a tick late but is never early.
+ * <p>
+ * Timeouts can be scheduled and cancelled from any thread. They are run
+ * one at a time, on the wheel's own thread, so they should be quick and
+ * should hand real work on, e.g. to the Swing event thread or a table.
+ * <p>
+ * A virtual wheel has no thread and no real clock; its time only moves
+ * when <code>advance</code> is called, which runs the timeouts due on the
+ * caller's thread. Simulations use it to skip ahead instead of waiting.
+ * @author John Wardell
+ *
+ */
+public class TimingWheel {
+	
+	/**
+	 * The length of a tick of the shared wheel.
+	 */
+	public static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	/**
+	 * The number of slots in the shared wheel.
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+	
+	private static final int WAITING = 0;
+	private static final int CANCELLED = 1;
+	private static final int EXPIRED = 2;
+	
+	private final long tickNanos;
+	private final Timeout[] slots;
+	private final int mask;
+	private final boolean virtual;
+	private final long startNanos = System.nanoTime();
+	private final ConcurrentLinkedQueue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+	private volatile long virtualNanos;
+	private long tick;
+	private int waiting;
+	private Thread thread;
+	private volatile boolean stopped;
+	
+	private static class SharedHolder {
+		static final TimingWheel WHEEL = new TimingWheel(DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE, false);
+	}
+	
+	/**
+	 * Gets the wheel shared by everything that runs in real time,
+	 * such as the game's turn and blind timers.
+	 * @return the shared wheel.
+	 */
+	public static TimingWheel getShared() {
+		return SharedHolder.WHEEL;
+	}
+	
+	/**
+	 * Constructs a TimingWheel. A real wheel starts its thread the first
+	 * time something is scheduled.
+	 * @param tickNanos the length of a tick.
+	 * @param wheelSize the number of slots, a power of 2; timeouts further
+	 * off than a turn of the wheel go round it again.
+	 * @param virtual true for a wheel whose time only moves with <code>advance</code>.
+	 */
+	public TimingWheel(long tickNanos, int wheelSize, boolean virtual) {
+		if ((tickNanos <= 0) || (wheelSize <= 0) || (Integer.bitCount(wheelSize) != 1)) {
+			throw new IllegalArgumentException("The tick must be positive and the size a power of 2");
+		}
+		this.tickNanos = tickNanos;
+		this.virtual = virtual;
+		slots = new Timeout[wheelSize];
+		for (int i = 0; i < wheelSize; i++) {
+			//an empty list is a head linked to itself
+			slots[i] = new Timeout(null, 0, 0);
+			slots[i].next = slots[i];
+			slots[i].previous = slots[i];
+		}
+		mask = wheelSize - 1;
+	}
+	
+	/**
+	 * Constructs a virtual TimingWheel with the default tick and size.
+	 * @return the wheel.
+	 */
+	public static TimingWheel newVirtual() {
+		return new TimingWheel(DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE, true);
+	}
+	
+	/**
+	 * @return true if the wheel's time only moves with <code>advance</code>.
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+	
+	/**
+	 * @return the wheel's time, in nanoseconds since it was made.
+	 */
+	public long now() {
+		return virtual ? virtualNanos : (System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Schedules a task to be run once after a delay.
+	 * @param task the task.
+	 * @param delay the delay.
+	 * @param unit the unit of the delay.
+	 * @return the timeout, which can be cancelled.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		long deadline = now() + Math.max(0, unit.toNanos(delay));
+		Timeout timeout = new Timeout(task, deadline, (deadline + tickNanos - 1) / tickNanos);
+		scheduled.add(timeout);
+		if (!virtual) {
+			startThread();
+		}
+		return timeout;
+	}
+	
+	/**
+	 * Moves a virtual wheel's time on, running every timeout that comes
+	 * due on the way, in order of their ticks, on this thread.
+	 * @param time the time to move on by.
+	 * @param unit the unit of the time.
+	 */
+	public void advance(long time, TimeUnit unit) {
+		if (!virtual) {
+			throw new IllegalStateException("Only a virtual wheel can be advanced");
+		}
+		long target = virtualNanos + unit.toNanos(time);
+		while (tick < target / tickNanos) {
+			virtualNanos = (tick + 1) * tickNanos;
+			expireTo(tick + 1);
+		}
+		virtualNanos = target;
+	}
+	
+	/**
+	 * Stops a real wheel's thread. Timeouts still waiting never run.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+	
+	/**
+	 * @return the number of timeouts in the wheel, as of the last tick.
+	 */
+	public int getWaiting() {
+		return waiting;
+	}
+	
+	private synchronized void startThread() {
+		if ((thread != null) || stopped) return;
+		thread = new Thread("timing wheel") {
+			@Override
+			public void run() {
+				while (!stopped) {
+					long sleep = (tick + 1) * tickNanos - now();
+					if (sleep > 0) {
+						try {
+							TimeUnit.NANOSECONDS.sleep(sleep);
+						}
+						catch (InterruptedException e) {
+							continue;
+						}
+					}
+					expireTo(now() / tickNanos);
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Runs the ticks up to and including the one given. Only ever called
+	 * by one thread at a time.
+	 */
+	private void expireTo(long lastTick) {
+		while (tick < lastTick) {
+			addScheduled();
+			removeCancelled();
+			tick++;
+			Timeout head = slots[(int) tick & mask];
+			Timeout timeout = head.next;
+			while (timeout != head) {
+				Timeout next = timeout.next;
+				if (timeout.deadlineTick <= tick) {
+					unlink(timeout);
+					if (timeout.state.compareAndSet(WAITING, EXPIRED)) {
+						try {
+							timeout.task.run();
+						}
+						catch (RuntimeException e) {
+							e.printStackTrace();
+						}
+					}
+				}
+				timeout = next;
+			}
+		}
+	}
+	
+	private void addScheduled() {
+		Timeout timeout;
+		while ((timeout = scheduled.poll()) != null) {
+			if (timeout.state.get() != WAITING) continue;
+			//a timeout already due goes in the next tick
+			Timeout head = slots[(int) Math.max(timeout.deadlineTick, tick + 1) & mask];
+			timeout.previous = head.previous;
+			timeout.next = head;
+			head.previous.next = timeout;
+			head.previous = timeout;
+			waiting++;
+		}
+	}
+	
+	private void removeCancelled() {
+		Timeout timeout;
+		while ((timeout = cancelled.poll()) != null) {
+			if (timeout.next != null) {
+				unlink(timeout);
+			}
+		}
+	}
+	
+	private void unlink(Timeout timeout) {
+		timeout.previous.next = timeout.next;
+		timeout.next.previous = timeout.previous;
+		timeout.next = null;
+		timeout.previous = null;
+		waiting--;
+	}
+	
+	/**
+	 * A scheduled task, which can be cancelled until it runs.
+	 */
+	public class Timeout {
+		
+		private final Runnable task;
+		private final long deadline;
+		private final long deadlineTick;
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		private Timeout next;
+		private Timeout previous;
+		
+		private Timeout(Runnable task, long deadline, long deadlineTick) {
+			this.task = task;
+			this.deadline = deadline;
+			this.deadlineTick = deadlineTick;
+		}
+		
+		/**
+		 * Stops the task from running, if it hasn't yet.
+		 * @return true if this stopped it.
+		 */
+		public boolean cancel() {
+			if (state.compareAndSet(WAITING, CANCELLED)) {
+				cancelled.add(this);
+				return true;
+			}
+			return false;
+		}
+		
+		/**
+		 * @return true if the timeout was cancelled.
+		 */
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+		
+		/**
+		 * @return true if the task has been run, or is running.
+		 */
+		public boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+		
+		/**
+		 * @return the wheel's time the task is due at.
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Schedules and cancels a million timeouts on a virtual wheel and
+	 * checks each runs once, in order and never early, then times a few
+	 * real ones.
+	 * @param args
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final TimingWheel wheel = newVirtual();
+		final int count = 1000000;
+		final long[] ranAt = new long[count];
+		final int[] ran = new int[1];
+		FastRandom random = new FastRandom(1);
+		TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[count];
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			final int n = i;
+			timeouts[i] = wheel.schedule(new Runnable() {
+				public void run() {
+					ranAt[n] = wheel.now();
+					ran[0]++;
+				}
+			}, random.nextInt(600000), TimeUnit.MILLISECONDS);
+		}
+		int cancelledCount = 0;
+		for (int i = 0; i < count; i += 3) {
+			if (timeouts[i].cancel()) cancelledCount++;
+		}
+		long scheduleNanos = System.nanoTime() - start;
+		start = System.nanoTime();
+		wheel.advance(11, TimeUnit.MINUTES);
+		long advanceNanos = System.nanoTime() - start;
+		boolean correct = (ran[0] == count - cancelledCount);
+		for (int i = 0; i < count; i++) {
+			if (timeouts[i].isCancelled()) {
+				correct &= (ranAt[i] == 0);
+			}
+			else {
+				long late = ranAt[i] - timeouts[i].getDeadline();
+				correct &= (late >= 0) && (late <= wheel.tickNanos);
+			}
+		}
+		System.out.printf("%d scheduled, %d cancelled, %d ran, all on time: %b%n", count,
+				cancelledCount, ran[0], correct);
+		System.out.printf("%.0f ns to schedule or cancel, %.0f ns to expire, %d left%n",
+				(double) scheduleNanos / (count + count / 3), (double) advanceNanos / count,
+				wheel.getWaiting());
+		
+		final TimingWheel shared = getShared();
+		final long[] late = new long[20];
+		final java.util.concurrent.CountDownLatch done = new java.util.concurrent.CountDownLatch(late.length);
+		for (int i = 0; i < late.length; i++) {
+			final int n = i;
+			final long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(25 * i);
+			shared.schedule(new Runnable() {
+				public void run() {
+					late[n] = System.nanoTime() - due;
+					done.countDown();
+				}
+			}, 25 * i, TimeUnit.MILLISECONDS);
+		}
+		done.await();
+		long worst = 0;
+		for (long l: late)
+			worst = Math.max(worst, l);
+		System.out.printf("real timeouts at most %.1f ms late%n", worst / 1e6);
+	}
+
+}
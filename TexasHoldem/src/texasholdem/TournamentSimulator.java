@@ -0,0 +1,365 @@
+package texasholdem;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many headless sit and go games of bots, spread over the threads
+ * of a <code>ForkJoinPool</code>, and adds up how the bots did: where
+ * they finished by personality, how many hands the games took and the
+ * blind level each player went bust at.
+ * <p>
+ * Each game gets its own <code>FastRandom</code> seeded from the master
+ * seed and the game's number, and the results of the games are only ever
+ * summed, so a run gives exactly the same results from the same master
+ * seed whatever the number of threads.
+ * @author John Wardell
+ *
+ */
+public class TournamentSimulator {
+	
+	/**
+	 * The number of bot personalities, 0 - 9.
+	 */
+	public static final int NUM_PERSONALITIES = 10;
+	/**
+	 * Blind levels at or past this one are counted together.
+	 */
+	public static final int MAX_BLIND_LEVEL = 63;
+	/**
+	 * Games still going after this many hands are stopped and counted
+	 * as unfinished.
+	 */
+	public static final int MAX_HANDS = 100000;
+	/**
+	 * Games are split between tasks until there are this many or fewer.
+	 */
+	private static final int CHUNK_GAMES = 16;
+	
+	private final long masterSeed;
+	private final int numPlayers;
+	private final int handsPerBlindLevel;
+	
+	/**
+	 * Constructs a TournamentSimulator object.
+	 * @param masterSeed the seed every game's seed is made from
+	 * @param numPlayers the number of players in each game
+	 * @param handsPerBlindLevel the number of hands between blind increases
+	 */
+	public TournamentSimulator(long masterSeed, int numPlayers, int handsPerBlindLevel) {
+		if (numPlayers < 2) {
+			throw new IllegalArgumentException("Need 2 or more players");
+		}
+		this.masterSeed = masterSeed;
+		this.numPlayers = numPlayers;
+		this.handsPerBlindLevel = handsPerBlindLevel;
+	}
+	
+	/**
+	 * Gets the seed of one game, mixed from the master seed and the
+	 * game's number so games never share a stream.
+	 * @param game the number of the game
+	 * @return the game's seed
+	 */
+	public long gameSeed(long game) {
+		long z = masterSeed + (game + 1) * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Plays a number of games.
+	 * @param games the number of games to play
+	 * @param pool the pool the games are played on
+	 * @return the results of all the games
+	 */
+	public Results run(int games, ForkJoinPool pool) {
+		return pool.invoke(new Games(0, games));
+	}
+	
+	/**
+	 * Plays one game and adds it to the results.
+	 * @param game the number of the game
+	 * @param results the results to add to
+	 */
+	void playGame(int game, Results results) {
+		HoldemManager hm = new HoldemManager(numPlayers, new FastRandom(gameSeed(game)));
+		hm.setHandsPerBlindLevel(handsPerBlindLevel);
+		while (!hm.isGameOver() && (hm.getHandsPlayed() < MAX_HANDS)) {
+			hm.playHand();
+		}
+		results.addGame(game, hm);
+	}
+	
+	/**
+	 * A range of games. Splits itself in half until it is small enough to play.
+	 */
+	private class Games extends RecursiveTask<Results> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int from;
+		private final int to;
+		
+		Games(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Results compute() {
+			if (to - from > CHUNK_GAMES) {
+				int middle = (from + to) >>> 1;
+				Games left = new Games(from, middle);
+				left.fork();
+				Results results = new Games(middle, to).compute();
+				return results.add(left.join());
+			}
+			Results results = new Results(numPlayers);
+			for (int game = from; game < to; game++) {
+				playGame(game, results);
+			}
+			return results;
+		}
+	}
+	
+	/**
+	 * The summed results of a number of games. Positions are counted from
+	 * 1 for the winner; players going bust in the same hand share the
+	 * best of their positions.
+	 */
+	public static class Results {
+		
+		private final int numPlayers;
+		private long games;
+		private long unfinished;
+		private long hands;
+		private long minHands = Long.MAX_VALUE;
+		private long maxHands;
+		private final long[][] finishes;
+		private final long[] bustLevels = new long[MAX_BLIND_LEVEL + 1];
+		private final long[] bustLevelTotals = new long[NUM_PERSONALITIES];
+		private final long[] busts = new long[NUM_PERSONALITIES];
+		private long checksum;
+		
+		Results(int numPlayers) {
+			this.numPlayers = numPlayers;
+			finishes = new long[NUM_PERSONALITIES][numPlayers + 1];
+		}
+		
+		/**
+		 * Adds a finished or stopped game.
+		 */
+		void addGame(int game, HoldemManager hm) {
+			Player[] players = hm.getPlayers();
+			games++;
+			if (!hm.isGameOver()) {
+				unfinished++;
+			}
+			hands += hm.getHandsPlayed();
+			minHands = Math.min(minHands, hm.getHandsPlayed());
+			maxHands = Math.max(maxHands, hm.getHandsPlayed());
+			long hash = game;
+			for (Player p: players) {
+				int position = 1;
+				for (Player other: players) {
+					if (outlasted(other, p)) position++;
+				}
+				finishes[p.getPersonality()][position]++;
+				if (p.getBustLevel() >= 0) {
+					bustLevels[Math.min(p.getBustLevel(), MAX_BLIND_LEVEL)]++;
+					bustLevelTotals[p.getPersonality()] += p.getBustLevel();
+					busts[p.getPersonality()]++;
+				}
+				hash = hash * 31 + p.getChips();
+				hash = hash * 31 + p.getBustHand();
+			}
+			//summed, so the order games are added in doesn't matter
+			checksum += mix(hash * 31 + hm.getHandsPlayed());
+		}
+		
+		/**
+		 * Checks if one player lasted longer than another.
+		 */
+		private static boolean outlasted(Player player, Player other) {
+			if (other.getBustHand() < 0) return false;
+			return (player.getBustHand() < 0) || (player.getBustHand() > other.getBustHand());
+		}
+		
+		private static long mix(long z) {
+			z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+			z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+			return z ^ (z >>> 33);
+		}
+		
+		/**
+		 * Adds another set of results to these.
+		 */
+		Results add(Results other) {
+			games += other.games;
+			unfinished += other.unfinished;
+			hands += other.hands;
+			minHands = Math.min(minHands, other.minHands);
+			maxHands = Math.max(maxHands, other.maxHands);
+			for (int i = 0; i < NUM_PERSONALITIES; i++) {
+				for (int j = 0; j <= numPlayers; j++)
+					finishes[i][j] += other.finishes[i][j];
+				bustLevelTotals[i] += other.bustLevelTotals[i];
+				busts[i] += other.busts[i];
+			}
+			for (int i = 0; i <= MAX_BLIND_LEVEL; i++)
+				bustLevels[i] += other.bustLevels[i];
+			checksum += other.checksum;
+			return this;
+		}
+		
+		/**
+		 * @return the number of games played.
+		 */
+		public long getGames() {
+			return games;
+		}
+		
+		/**
+		 * @return the number of games stopped after <code>MAX_HANDS</code> hands.
+		 */
+		public long getUnfinished() {
+			return unfinished;
+		}
+		
+		/**
+		 * @return the average number of hands in a game.
+		 */
+		public double getAverageHands() {
+			return (games == 0) ? 0 : (double) hands / games;
+		}
+		
+		/**
+		 * @return the fewest hands in a game.
+		 */
+		public long getMinHands() {
+			return minHands;
+		}
+		
+		/**
+		 * @return the most hands in a game.
+		 */
+		public long getMaxHands() {
+			return maxHands;
+		}
+		
+		/**
+		 * Gets how many times bots of a personality finished in a position.
+		 * @param personality the personality, 0 - 9
+		 * @param position the finishing position, 1 for the winner
+		 * @return the number of times
+		 */
+		public long getFinishes(int personality, int position) {
+			return finishes[personality][position];
+		}
+		
+		/**
+		 * Gets the average finishing position of bots of a personality.
+		 * @param personality the personality, 0 - 9
+		 * @return the average position, or 0 if there were no such bots
+		 */
+		public double getAverageFinish(int personality) {
+			long count = 0;
+			long total = 0;
+			for (int position = 1; position <= numPlayers; position++) {
+				count += finishes[personality][position];
+				total += position * finishes[personality][position];
+			}
+			return (count == 0) ? 0 : (double) total / count;
+		}
+		
+		/**
+		 * Gets the number of players who went bust at a blind level.
+		 * @param blindLevel the blind level, 0 for the first
+		 * @return the number of players
+		 */
+		public long getBusts(int blindLevel) {
+			return bustLevels[Math.min(blindLevel, MAX_BLIND_LEVEL)];
+		}
+		
+		/**
+		 * Gets the average blind level bots of a personality went bust at.
+		 * @param personality the personality, 0 - 9
+		 * @return the average blind level, or -1 if none went bust
+		 */
+		public double getAverageBustLevel(int personality) {
+			return (busts[personality] == 0) ? -1 :
+				(double) bustLevelTotals[personality] / busts[personality];
+		}
+		
+		/**
+		 * Gets a number made from every game's outcome, which is the same
+		 * for two runs exactly when they played the same games.
+		 * @return the checksum
+		 */
+		public long getChecksum() {
+			return checksum;
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			text.append(String.format("%d games (%d unfinished), hands per game %.1f " +
+					"(%d - %d), checksum %016x%n", games, unfinished, getAverageHands(),
+					minHands, maxHands, checksum));
+			text.append("personality  avg finish  wins   avg bust level\n");
+			for (int i = 0; i < NUM_PERSONALITIES; i++) {
+				text.append(String.format("%11d  %10.2f  %5.1f%%  %.2f%n", i, getAverageFinish(i),
+						100.0 * finishes[i][1] / Math.max(1, countPlayers(i)),
+						getAverageBustLevel(i)));
+			}
+			text.append("busts by blind level:");
+			for (int i = 0; i <= MAX_BLIND_LEVEL; i++) {
+				if (bustLevels[i] > 0) text.append(" ").append(i).append(":").append(bustLevels[i]);
+			}
+			return text.toString();
+		}
+		
+		private long countPlayers(int personality) {
+			long count = 0;
+			for (long finish: finishes[personality])
+				count += finish;
+			return count;
+		}
+	}
+	
+	/**
+	 * The main method is for testing purposes only.
+	 * Plays the same games on 1 thread and on every core and checks
+	 * the results match.
+	 * Arguments: [games] [players] [hands per blind level] [master seed]
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+		int players = (args.length > 1) ? Integer.parseInt(args[1]) : 6;
+		int handsPerLevel = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 2024;
+		TournamentSimulator simulator = new TournamentSimulator(seed, players, handsPerLevel);
+		int cores = Runtime.getRuntime().availableProcessors();
+		Results first = null;
+		for (int threads: new int[] {1, Math.max(4, cores)}) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			long start = System.nanoTime();
+			Results results = simulator.run(games, pool);
+			long nanos = System.nanoTime() - start;
+			pool.shutdown();
+			System.out.println(threads + " threads: " + (nanos / 1000000) + " ms, " +
+					(long) (results.getAverageHands() * games * 1e9 / nanos) + " hands a second");
+			if (first == null) {
+				first = results;
+				System.out.println(results);
+			}
+			else {
+				System.out.println("same results: " + (first.getChecksum() == results.getChecksum()));
+			}
+		}
+	}
+
+}